@@ -16,12 +16,21 @@ public abstract class AST {
     protected AST decoration;
     protected String label = "";   // label for generated code of tree
 
-    static int NodeCount = 0;
+    // a compilation makes its trees on one thread, so each thread counts
+    // the nodes of the compilation it runs
+    private static final ThreadLocal<int[]> NodeCount = ThreadLocal.withInitial(() -> new int[1]);
 
     public AST() {
         children = new ArrayList<AST>();
-        NodeCount++;
-        nodeNum = NodeCount;
+        nodeNum = ++NodeCount.get()[0];
+    }
+
+    /**
+     *  Number the next nodes made on this thread from 1 again; the Parser
+     *  calls this as it begins a program
+     */
+    public static void resetNodeCount() {
+        NodeCount.get()[0] = 0;
     }
 
     public void setDecoration(AST t) {
@@ -57,22 +57,35 @@ class Block {
 public class Codegen extends ASTVisitor {
 
   AST t;
+  Constrainer constrainer;
   Stack<Frame> frameSizes;
 
   Program program;
   int labelNum;
+  boolean eliminateTailCalls = false;
 
   /**
    *  Create a new code generator based on the given AST
    *  @param t is the AST that will be visited
+   *  @param constrainer is the Constrainer that decorated t, whose intrinsic
+   *  read and write trees the codes of read and write are generated for
    */
-  public Codegen(AST t) {
+  public Codegen(AST t, Constrainer constrainer) {
     this.t = t;
+    this.constrainer = constrainer;
     program = new Program();
     frameSizes = new Stack<Frame>();
     labelNum = 0;
   }
 
+  /**
+   *  @param value whether a return statement whose expression is a call
+   *  reuses the frame of the function it returns from
+   */
+  public void setEliminateTailCalls(boolean value) {
+    eliminateTailCalls = value;
+  }
+
   public Program execute() {
     t.accept(this);  //
     return program;
@@ -132,8 +145,8 @@ public class Codegen extends ASTVisitor {
   void genIntrinsicCodes() {
     String readLabel = "Read",
             writeLabel = "Write";
-    AST readTree = Constrainer.readTree,
-            writeTree = Constrainer.writeTree;
+    AST readTree = constrainer.getReadTree(),
+            writeTree = constrainer.getWriteTree();
     readTree.setLabel(readLabel);
     storeop(new LabelOpcode(Codes.ByteCodes.LABEL,readLabel));
     storeop(new Code(Codes.ByteCodes.READ));
@@ -237,19 +250,16 @@ public class Codegen extends ASTVisitor {
 
   @Override
   public Object visitStringTypeTree(AST t) {
-    System.out.println( String.format("visitStringTypeTree") );
     return null;
   }
 
   @Override
   public Object visitCharTypeTree(AST t) {
-    System.out.println( String.format("visitCharTypeTree") );
     return null;
   }
 
   @Override
   public Object visitStringTree(AST t) {
-    System.out.println( String.format("visitStringTree") );
     String value = ((StringTree)t).getSymbol().toString();
     storeop(new LiteralOpcode(Codes.ByteCodes.LIT,value));
     return null;
@@ -257,7 +267,6 @@ public class Codegen extends ASTVisitor {
 
   @Override
   public Object visitCharTree(AST t) {
-    System.out.println( String.format("visitCharacterTree") );
     String value = ((CharTree)t).getSymbol().toString();
     storeop(new LiteralOpcode(Codes.ByteCodes.LIT,value));
     return null;
@@ -302,30 +311,104 @@ public class Codegen extends ASTVisitor {
   }
 
   public Object visitReturnTree(AST t) {
-    t.getChild( 0 ).accept( this );
     AST fct = t.getDecoration();
+    if (eliminateTailCalls && t.getChild(0) instanceof CallTree) {
+      AST call = t.getChild(0);
+      if (((IdentifierTree)call.getChild(0)).getDecoration() == fct) {
+        genSelfTailCall(call, fct);
+      } else {
+        genTailCall(call);
+      }
+      return null;
+    }
+    t.getChild( 0 ).accept( this );
     storeop(new LabelOpcode(Codes.ByteCodes.RETURN,fct.getLabel()));
     return null;
   }
 
+  /** <pre>
+   *  Generate codes for return f(args) within f itself; the call becomes a
+   *  jump back to the start of f with the new arguments in its frame:<br><br>
+   *  &LT;codes for the args&GT;
+   *  STORE n-1 ... STORE 0  -- the formals take the arguments
+   *  POP k                  -- k is the number of locals above the formals
+   *  GOTO functionLabel
+   *  </pre>
+   */
+  void genSelfTailCall(AST call, AST fct) {
+    AST formals = fct.getChild(2);
+    int numArgs = call.getChildCount() - 1;
+    for (int child = 1; child < call.getChildCount(); child++) {
+      call.getChild(child).accept(this);
+    }
+    for (int arg = numArgs - 1; arg >= 0; arg--) {
+      IdentifierTree id = (IdentifierTree)(formals.getChild(arg).getChild(1));
+      storeop(new VarOpcode(Codes.ByteCodes.STORE,id.getFrameOffset(),id.getSymbol().toString()));
+    }
+    int locals = frameSize() - numArgs;
+    if (locals > 0) {
+      storeop(new NumOpcode(Codes.ByteCodes.POP,locals));
+    }
+    storeop(new LabelOpcode(Codes.ByteCodes.GOTO,fct.getLabel()));
+    // only this path pops the locals; the enclosing blocks still pop them
+    changeFrame(locals);
+  }
+
+  /** <pre>
+   *  Generate codes for return g(args), calling g in place of the current
+   *  function so that g returns straight to its caller:<br><br>
+   *  &LT;codes for the args&GT;
+   *  ARGS n
+   *  TAILCALL functionLabel
+   *  </pre>
+   */
+  void genTailCall(AST call) {
+    String funcName = ((IdentifierTree)call.getChild(0)).getDecoration().getLabel();
+    int numArgs = call.getChildCount() - 1;
+    for (int child = 1; child < call.getChildCount(); child++) {
+      call.getChild(child).accept(this);
+    }
+    storeop(new NumOpcode(Codes.ByteCodes.ARGS,numArgs));
+    storeop(new LabelOpcode(Codes.ByteCodes.TAILCALL,funcName));
+  }
+
+  /** <pre>
+   *  Generate codes for the switch statement:<br><br>
+   *  LOAD n id
+   *  TABLESWITCH or LOOKUPSWITCH to the case labels, or to the default label
+   *  &LT;codes for each case, ending with GOTO switchEnd&GT;
+   *  LABEL switchEnd
+   *  </pre>
+   */
   @Override
   public Object visitSwitchStatementTree(AST t) {
 
     IdentifierTree id = (IdentifierTree)t.getChild(0);
     id.accept( this );
 
-    String switchGotoLabel = String.format( "switch_case<<%s_", t.hashCode() );
-    storeop( new LabelOpcode( Codes.ByteCodes.GOTO, switchGotoLabel ) );
-
+    String switchEndLabel = newLabel( "switch_end" );
+    t.setLabel( switchEndLabel );
+    String defaultLabel = switchEndLabel;
+    TreeMap<Integer,String> caseLabels = new TreeMap<Integer,String>();
     SwitchBlockTree block = (SwitchBlockTree)t.getChild(1);
+    for ( AST caseStatement : block.getChildren() ) {
+      if ( caseStatement instanceof CaseStatementTree ) {
+        caseStatement.setLabel( newLabel( "switch_case" ) );
+        int caseValue = Integer.parseInt( ((IntTree)caseStatement.getChild(0)).getSymbol().toString() );
+        // the first of several cases with the same value is the one taken
+        caseLabels.putIfAbsent( caseValue, caseStatement.getLabel() );
+      } else {
+        caseStatement.setLabel( newLabel( "switch_default" ) );
+        defaultLabel = caseStatement.getLabel();
+      }
+    }
+    storeop( new SwitchOpcode( defaultLabel, caseLabels ) );
+
     block.setDecoration( t );
     block.accept( this );
 
-    String switchEndLabel = String.format( "switch_end<<%s>>", t.hashCode() );
     storeop( new LabelOpcode( Codes.ByteCodes.LABEL, switchEndLabel ) );
 
-    changeFrame( -1 );
-
     return null;
   }
 
@@ -344,24 +427,17 @@ public class Codegen extends ASTVisitor {
 
   @Override
   public Object visitCaseStatementTree(AST t) {
-    String switchStatementHashCode = String.valueOf( t.getDecoration().hashCode() );
-    String caseValue = ((IntTree)t.getChild(0)).getSymbol().toString();
-    String caseLabel = String.format( "switch_case<<%s_%s>>", switchStatementHashCode, caseValue );
-    storeop( new LabelOpcode( Codes.ByteCodes.LABEL, caseLabel ) );
+    storeop( new LabelOpcode( Codes.ByteCodes.LABEL, t.getLabel() ) );
     t.getChild( 1 ). accept( this );
-    String switchEndlabel = String.format( "switch_end<<%s>>", switchStatementHashCode );
-    storeop( new LabelOpcode( Codes.ByteCodes.GOTO, switchEndlabel ) );
+    storeop( new LabelOpcode( Codes.ByteCodes.GOTO, t.getDecoration().getLabel() ) );
     return null;
   }
 
   @Override
   public Object visitDefaultStatementTree(AST t) {
-    String switchStatementHashCode = String.valueOf( t.getDecoration().hashCode() );
-    String caseLabel = String.format( "switch_case<<%s_default>>", switchStatementHashCode );
-    storeop( new LabelOpcode( Codes.ByteCodes.LABEL, caseLabel ) );
+    storeop( new LabelOpcode( Codes.ByteCodes.LABEL, t.getLabel() ) );
     t.getChild( 0 ). accept( this );
-    String switchEndlabel = String.format( "switch_end<<%s>>", switchStatementHashCode );
-    storeop( new LabelOpcode( Codes.ByteCodes.GOTO, switchEndlabel ) );
+    storeop( new LabelOpcode( Codes.ByteCodes.GOTO, t.getDecoration().getLabel() ) );
     return null;
   }
 
@@ -375,7 +451,6 @@ public class Codegen extends ASTVisitor {
   }
 
   public Object visitIntTree(AST t) {
-    System.out.println("visitIntTree");
     int num = Integer.parseInt(((IntTree)t).getSymbol().toString());
     storeop(new NumOpcode(Codes.ByteCodes.LIT,num));
     return null;
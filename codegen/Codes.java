@@ -24,7 +24,8 @@ package codegen;
 public class Codes {
 	
 	public static enum ByteCodes {
-		HALT,POP,FALSEBRANCH,GOTO,STORE,LOAD,LIT,ARGS,CALL,RETURN,BOP,READ,WRITE,LABEL
+		HALT,POP,FALSEBRANCH,GOTO,STORE,LOAD,LIT,ARGS,CALL,RETURN,BOP,READ,WRITE,LABEL,
+		TABLESWITCH,LOOKUPSWITCH,TAILCALL
 	};
 	
 	/*
@@ -42,6 +43,9 @@ public class Codes {
     READ         read
     WRITE        write
     LABEL        label <label>
+    TABLESWITCH  tableswitch <default label> <low> <label for low> ... <label for high>
+    LOOKUPSWITCH lookupswitch <default label> <value> <label> ...  -- sorted by value
+    TAILCALL     tailcall <funcname>  -- call in place of the current function
 	*/
 
 public static java.util.HashMap<ByteCodes,Integer> frameChange = new java.util.HashMap<ByteCodes,Integer>();
@@ -70,6 +74,10 @@ public static final int UnknownChange = 99;
     frameChange.put(ByteCodes.READ,1);              // read in new value
     frameChange.put(ByteCodes.WRITE,0);             // write value; leave on top
     frameChange.put(ByteCodes.LABEL,0);             // branch label
+    frameChange.put(ByteCodes.TABLESWITCH,-1);      // pop switched value
+    frameChange.put(ByteCodes.LOOKUPSWITCH,-1);     // pop switched value
+    frameChange.put(ByteCodes.TAILCALL,0);          // the called function returns
+                                                    // in place of this one
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+package codegen;
+
+import java.util.*;
+
+/**
+ * The DeadCodeEliminator removes the codes no execution can reach. The
+ * codes are split into basic blocks, which start at a LABEL or after a
+ * jump, switch, CALL, TAILCALL, RETURN or HALT, and connected by the edges
+ * execution can take: falling through, branching to a label and calling a
+ * function. Every block not reachable from the first code is removed, which
+ * takes out code after a return statement, the GRATIS-RETURN-VALUE epilogue
+ * of a function that always returns and the bodies of functions that are
+ * never called, including the Read and Write stubs. Labels nothing refers
+ * to any more go as well.
+ */
+public class DeadCodeEliminator {
+
+  private ArrayList<Code> codes;
+  // the first code of each block, and the block each code belongs to
+  private ArrayList<Integer> blockStarts = new ArrayList<Integer>();
+  private int[] blockOf;
+  private HashMap<String,Integer> labelAddresses = new HashMap<String,Integer>();
+
+  /**
+   * Removes the unreachable codes of the program in place
+   * @return the number of codes removed
+   */
+  public int eliminate(Program program) {
+    codes = program.getCodes();
+    int originalSize = codes.size();
+    if (originalSize == 0) {
+      return 0;
+    }
+    findBlocks();
+    boolean[] reachable = findReachableBlocks();
+    ArrayList<Code> live = new ArrayList<Code>();
+    for (int index = 0; index < codes.size(); index++) {
+      if (reachable[blockOf[index]]) {
+        live.add(codes.get(index));
+      }
+    }
+    codes.clear();
+    codes.addAll(live);
+    removeUnusedLabels();
+    return originalSize - codes.size();
+  }
+
+  private void findBlocks() {
+    blockOf = new int[codes.size()];
+    boolean startsBlock = true;
+    for (int index = 0; index < codes.size(); index++) {
+      Code code = codes.get(index);
+      if (code.getBytecode() == Codes.ByteCodes.LABEL) {
+        labelAddresses.put(((LabelOpcode)code).label, index);
+        startsBlock = true;
+      }
+      if (startsBlock) {
+        blockStarts.add(index);
+        startsBlock = false;
+      }
+      blockOf[index] = blockStarts.size() - 1;
+      startsBlock = endsBlock(code.getBytecode());
+    }
+  }
+
+  private static boolean endsBlock(Codes.ByteCodes bytecode) {
+    switch (bytecode) {
+      case GOTO:
+      case FALSEBRANCH:
+      case TABLESWITCH:
+      case LOOKUPSWITCH:
+      case CALL:
+      case TAILCALL:
+      case RETURN:
+      case HALT:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private boolean[] findReachableBlocks() {
+    boolean[] reachable = new boolean[blockStarts.size()];
+    ArrayDeque<Integer> work = new ArrayDeque<Integer>();
+    reachable[0] = true;
+    work.push(0);
+    while (!work.isEmpty()) {
+      int block = work.pop();
+      for (int successor : successors(block)) {
+        if (!reachable[successor]) {
+          reachable[successor] = true;
+          work.push(successor);
+        }
+      }
+    }
+    return reachable;
+  }
+
+  /**
+   * A CALL block leads both to the called function and, once that returns,
+   * to the code after the CALL; a RETURN leads back to the code after some
+   * CALL, which is reachable already, and a TAILCALL only to the function.
+   */
+  private List<Integer> successors(int block) {
+    int end = block + 1 < blockStarts.size() ? blockStarts.get(block + 1) : codes.size();
+    Code last = codes.get(end - 1);
+    ArrayList<Integer> successors = new ArrayList<Integer>();
+    Codes.ByteCodes bytecode = last.getBytecode();
+    for (String label : jumpLabels(last)) {
+      successors.add(blockOf[jumpTarget(label)]);
+    }
+    if (bytecode != Codes.ByteCodes.GOTO && bytecode != Codes.ByteCodes.RETURN
+        && bytecode != Codes.ByteCodes.TAILCALL && bytecode != Codes.ByteCodes.HALT
+        && !(last instanceof SwitchOpcode) && end < codes.size()) {
+      successors.add(block + 1);
+    }
+    return successors;
+  }
+
+  /**
+   * @return the labels a GOTO, FALSEBRANCH, switch, CALL or TAILCALL refers to
+   */
+  private static Collection<String> jumpLabels(Code code) {
+    if (code instanceof SwitchOpcode) {
+      return ((SwitchOpcode)code).getLabels();
+    }
+    Codes.ByteCodes bytecode = code.getBytecode();
+    if (bytecode == Codes.ByteCodes.GOTO || bytecode == Codes.ByteCodes.FALSEBRANCH
+        || bytecode == Codes.ByteCodes.CALL || bytecode == Codes.ByteCodes.TAILCALL) {
+      return Collections.singletonList(((LabelOpcode)code).label);
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * The address a jump to label continues at; like the interpreter, a label
+   * that is not defined is taken to be the last code.
+   */
+  private int jumpTarget(String label) {
+    Integer address = labelAddresses.get(label);
+    return address == null ? codes.size() - 1 : address;
+  }
+
+  /**
+   * Removes GOTOs to the label that follows them and then the labels that no
+   * jump or CALL refers to.
+   */
+  private void removeUnusedLabels() {
+    for (int index = 0; index < codes.size(); index++) {
+      while (index < codes.size() && PeepholeOptimizer.REMOVE_JUMP_TO_NEXT.rewrite(codes, index)) {
+      }
+    }
+    HashSet<String> referenced = new HashSet<String>();
+    for (Code code : codes) {
+      referenced.addAll(jumpLabels(code));
+    }
+    Iterator<Code> iterator = codes.iterator();
+    while (iterator.hasNext()) {
+      Code code = iterator.next();
+      if (code.getBytecode() == Codes.ByteCodes.LABEL && !referenced.contains(((LabelOpcode)code).label)) {
+        iterator.remove();
+      }
+    }
+  }
+}
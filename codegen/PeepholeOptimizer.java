@@ -0,0 +1,171 @@
+package codegen;
+
+import java.util.*;
+
+/**
+ * The PeepholeOptimizer rewrites short sequences of generated bytecodes into
+ * cheaper ones. Each Rule looks at the codes starting at one position and
+ * rewrites them if they match its pattern; the rules are applied over the
+ * whole program until none of them matches any more.
+ */
+public class PeepholeOptimizer {
+
+  /**
+   * A rewrite of the codes starting at index; returns true if it changed them.
+   */
+  public interface Rule {
+    boolean rewrite(ArrayList<Code> codes, int index);
+  }
+
+  /**
+   * POP 0 pops nothing.
+   */
+  public static final Rule REMOVE_EMPTY_POP = (codes, index) -> {
+    Code code = codes.get(index);
+    if (code.getBytecode() == Codes.ByteCodes.POP && ((NumOpcode)code).getNum() == 0) {
+      codes.remove(index);
+      return true;
+    }
+    return false;
+  };
+
+  /**
+   * Nothing after a GOTO, switch, RETURN, TAILCALL or HALT runs until the
+   * next LABEL, e.g. the POP 0 after a return statement or the LIT 0
+   * GRATIS-RETURN-VALUE and RETURN ending a function whose body always
+   * returns.
+   */
+  public static final Rule REMOVE_UNREACHABLE = (codes, index) -> {
+    Codes.ByteCodes bytecode = codes.get(index).getBytecode();
+    if (bytecode != Codes.ByteCodes.GOTO && bytecode != Codes.ByteCodes.RETURN
+        && bytecode != Codes.ByteCodes.HALT && bytecode != Codes.ByteCodes.TABLESWITCH
+        && bytecode != Codes.ByteCodes.LOOKUPSWITCH && bytecode != Codes.ByteCodes.TAILCALL) {
+      return false;
+    }
+    boolean changed = false;
+    while (index + 1 < codes.size() && codes.get(index + 1).getBytecode() != Codes.ByteCodes.LABEL) {
+      codes.remove(index + 1);
+      changed = true;
+    }
+    return changed;
+  };
+
+  /**
+   * GOTO L is pointless when L labels the code that follows anyway.
+   */
+  public static final Rule REMOVE_JUMP_TO_NEXT = (codes, index) -> {
+    Code code = codes.get(index);
+    if (code.getBytecode() != Codes.ByteCodes.GOTO) {
+      return false;
+    }
+    String target = ((LabelOpcode)code).label;
+    for (int next = index + 1; next < codes.size()
+        && codes.get(next).getBytecode() == Codes.ByteCodes.LABEL; next++) {
+      if (((LabelOpcode)codes.get(next)).label.equals(target)) {
+        codes.remove(index);
+        return true;
+      }
+    }
+    return false;
+  };
+
+  /**
+   * LIT a  LIT b  BOP op  becomes  LIT (a op b), e.g. the LIT 1 LIT 1 BOP ==
+   * of while (1==1). Division by zero is left for run time.
+   */
+  public static final Rule FOLD_CONSTANTS = (codes, index) -> {
+    if (index + 2 >= codes.size() || !isIntLiteral(codes.get(index)) || !isIntLiteral(codes.get(index + 1))
+        || codes.get(index + 2).getBytecode() != Codes.ByteCodes.BOP) {
+      return false;
+    }
+    int first = ((NumOpcode)codes.get(index)).getNum(),
+        second = ((NumOpcode)codes.get(index + 1)).getNum();
+    Integer result = applyOperator(((LabelOpcode)codes.get(index + 2)).label, first, second);
+    if (result == null) {
+      return false;
+    }
+    codes.subList(index, index + 3).clear();
+    codes.add(index, new NumOpcode(Codes.ByteCodes.LIT, result));
+    return true;
+  };
+
+  /**
+   * LIT k  FALSEBRANCH L  never branches when k is true, so both go, and
+   * always branches when k is 0, so it becomes GOTO L.
+   */
+  public static final Rule FOLD_CONSTANT_BRANCH = (codes, index) -> {
+    if (index + 1 >= codes.size() || !isIntLiteral(codes.get(index))
+        || codes.get(index + 1).getBytecode() != Codes.ByteCodes.FALSEBRANCH) {
+      return false;
+    }
+    String target = ((LabelOpcode)codes.get(index + 1)).label;
+    boolean branches = ((NumOpcode)codes.get(index)).getNum() == 0;
+    codes.subList(index, index + 2).clear();
+    if (branches) {
+      codes.add(index, new LabelOpcode(Codes.ByteCodes.GOTO, target));
+    }
+    return true;
+  };
+
+  public static List<Rule> defaultRules() {
+    return Arrays.asList(REMOVE_EMPTY_POP, FOLD_CONSTANTS, FOLD_CONSTANT_BRANCH,
+        REMOVE_UNREACHABLE, REMOVE_JUMP_TO_NEXT);
+  }
+
+  private List<Rule> rules;
+
+  public PeepholeOptimizer() {
+    this(defaultRules());
+  }
+
+  public PeepholeOptimizer(List<Rule> rules) {
+    this.rules = rules;
+  }
+
+  /**
+   * Rewrites the program's codes in place
+   * @return the number of codes removed
+   */
+  public int optimize(Program program) {
+    ArrayList<Code> codes = program.getCodes();
+    int originalSize = codes.size();
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int index = 0; index < codes.size(); index++) {
+        for (Rule rule : rules) {
+          if (index < codes.size() && rule.rewrite(codes, index)) {
+            changed = true;
+          }
+        }
+      }
+    }
+    return originalSize - codes.size();
+  }
+
+  private static boolean isIntLiteral(Code code) {
+    return code.getBytecode() == Codes.ByteCodes.LIT && code.getClass() == NumOpcode.class;
+  }
+
+  /**
+   * Evaluates a BOP the way the interpreter does, or returns null if it
+   * cannot be evaluated at compile time.
+   */
+  public static Integer applyOperator(String operator, int first, int second) {
+    switch (operator) {
+      case "+": return first + second;
+      case "-": return first - second;
+      case "*": return first * second;
+      case "/": return second == 0 ? null : first / second;
+      case "==": return first == second ? 1 : 0;
+      case "!=": return first != second ? 1 : 0;
+      case ">=": return first >= second ? 1 : 0;
+      case "<=": return first <= second ? 1 : 0;
+      case ">": return first > second ? 1 : 0;
+      case "<": return first < second ? 1 : 0;
+      case "|": return (first + second) >= 1 ? 1 : 0;
+      case "&": return (first * second) >= 1 ? 1 : 0;
+      default: return null;
+    }
+  }
+}
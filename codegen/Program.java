@@ -17,23 +17,47 @@ public class Program {
         program.add(code);
     }
 
+/**
+ *  @return the bytecodes stored so far, for the optimizer to rewrite
+*/
+    ArrayList<Code> getCodes() {
+        return program;
+    }
+
 /**
  *  print all of the bytecodes that have been generated
  *  @param outFile a String indicating where to print the bytecodes
 */
-    public void printCodes( String outFile ) {
-        PrintWriter out = null;
-        try {
-             out = new PrintWriter(new FileOutputStream(outFile));
-        } catch (IOException e) {
-            System.out.println(e.toString());
-            System.exit(1);
-        }
+    public void printCodes( String outFile ) throws IOException {
+        printCodes( outFile, true );
+    }
 
+/**
+ *  print all of the bytecodes that have been generated
+ *  @param outFile a String indicating where to print the bytecodes
+ *  @param echo whether to print them on System.out as well
+*/
+    public void printCodes( String outFile, boolean echo ) throws IOException {
+        PrintWriter out = new PrintWriter(new FileOutputStream(outFile));
         for (Code nextCode : program) {
-           	System.out.println(nextCode.toString());
+            if (echo) {
+                System.out.println(nextCode.toString());
+            }
             out.println(nextCode.toString());
         }
         out.close();
     }
+
+/**
+ *  write the bytecodes in the binary form loaded by the interpreter
+ *  @param outFile a String indicating where to write the bytecodes
+ *  @see util.BinaryCodeFile
+*/
+    public void writeBinaryCodes( String outFile ) throws IOException {
+        ArrayList<String> codeLines = new ArrayList<String>();
+        for (Code nextCode : program) {
+            codeLines.add(nextCode.toString());
+        }
+        util.BinaryCodeFile.write(codeLines, outFile);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package codegen;
+
+import java.util.*;
+
+/**
+ *  SwitchOpcode class records the jump of a switch statement to its cases;
+ *  dense case values become a jump table indexed by the switched value
+ *  e.g. TABLESWITCH default<<7>> 1 case<<4>> case<<5>> default<<7>> case<<6>>
+ *  and sparse ones a list of value/label pairs sorted by value
+ *  e.g. LOOKUPSWITCH default<<7>> 1 case<<4>> 100 case<<5>>
+*/
+public class SwitchOpcode extends Code {
+    String defaultLabel;
+    TreeMap<Integer,String> caseLabels;
+
+/**
+ *  @param defaultLabel is the label jumped to when no case value matches
+ *  @param caseLabels maps each case value to the label of its case
+*/
+    public SwitchOpcode(String defaultLabel, TreeMap<Integer,String> caseLabels) {
+        super(isDense(caseLabels) ? Codes.ByteCodes.TABLESWITCH : Codes.ByteCodes.LOOKUPSWITCH);
+        this.defaultLabel = defaultLabel;
+        this.caseLabels = caseLabels;
+    }
+
+/**
+ *  a table is used when its size and a lookup for its entries cost no more
+ *  than the sorted list and a binary search through it, as javac decides
+*/
+    static boolean isDense(TreeMap<Integer,String> caseLabels) {
+        if (caseLabels.isEmpty()) {
+            return false;
+        }
+        long tableSize = (long)caseLabels.lastKey() - caseLabels.firstKey() + 1;
+        long tableCost = 4 + tableSize + 3 * 3;
+        long lookupCost = 3 + 2 * (long)caseLabels.size() + 3 * caseLabels.size();
+        return tableCost <= lookupCost;
+    }
+
+/**
+ *  @return every label this code may jump to
+*/
+    Collection<String> getLabels() {
+        ArrayList<String> labels = new ArrayList<String>(caseLabels.values());
+        labels.add(defaultLabel);
+        return labels;
+    }
+
+    public String toString() {
+        StringBuilder code = new StringBuilder(super.toString()).append(" ").append(defaultLabel);
+        if (getBytecode() == Codes.ByteCodes.TABLESWITCH) {
+            code.append(" ").append(caseLabels.firstKey());
+            for (long value = caseLabels.firstKey(); value <= caseLabels.lastKey(); value++) {
+                code.append(" ").append(caseLabels.getOrDefault((int)value, defaultLabel));
+            }
+        } else {
+            for (Map.Entry<Integer,String> caseLabel : caseLabels.entrySet()) {
+                code.append(" ").append(caseLabel.getKey()).append(" ").append(caseLabel.getValue());
+            }
+        }
+        return code.toString();
+    }
+
+    public void print() {
+        System.out.println(toString());
+    }
+}
@@ -0,0 +1,124 @@
+package codegen.ssa;
+
+import java.util.*;
+
+/**
+ * A basic block of a Function: its phis, the instructions that follow them
+ * and the terminator that ends it, which is one of
+ * <ul>
+ * <li>GOTO the only successor
+ * <li>BRANCH to the first successor if the operand is true, otherwise to
+ * the second
+ * <li>SWITCH on the operand to successor i if it equals caseValues[i], or
+ * to the last successor, the default
+ * <li>RETURN the operand
+ * <li>TAILCALL callee with the operands as arguments
+ * <li>HALT
+ * </ul>
+ */
+public class Block {
+
+  public enum Kind { GOTO, BRANCH, SWITCH, RETURN, TAILCALL, HALT }
+
+  final int id;
+  final String name;    // the construct the block comes from, for its label
+  final ArrayList<Instruction> phis = new ArrayList<Instruction>();
+  final ArrayList<Instruction> instructions = new ArrayList<Instruction>();
+  final ArrayList<Block> predecessors = new ArrayList<Block>();
+  final ArrayList<Block> successors = new ArrayList<Block>();
+  Kind kind;
+  final ArrayList<Value> operands = new ArrayList<Value>();
+  int[] caseValues;
+  Function callee;
+
+  Block(int id, String name) {
+    this.id = id;
+    this.name = name;
+  }
+
+  void addSuccessor(Block successor) {
+    successors.add(successor);
+    successor.predecessors.add(this);
+  }
+
+  /**
+   * Ends the block with a jump to successor
+   */
+  void jump(Block successor) {
+    kind = Kind.GOTO;
+    addSuccessor(successor);
+  }
+
+  /**
+   * Ends the block with a terminator that has no successors
+   */
+  void exit(Kind kind, Value... values) {
+    this.kind = kind;
+    operands.addAll(Arrays.asList(values));
+  }
+
+  /**
+   * Drops the edge from predecessor and the phi operands that come with it
+   */
+  void removePredecessor(Block predecessor) {
+    int index = predecessors.indexOf(predecessor);
+    predecessors.remove(index);
+    for (Instruction phi : phis) {
+      phi.operands.remove(index);
+    }
+  }
+
+  /**
+   * Turns the terminator into a GOTO to the successor at index, dropping
+   * the edges to the others
+   */
+  void foldTerminator(int index) {
+    Block target = successors.get(index);
+    for (int i = 0; i < successors.size(); i++) {
+      if (i != index) {
+        successors.get(i).removePredecessor(this);
+      }
+    }
+    successors.clear();
+    successors.add(target);
+    operands.clear();
+    caseValues = null;
+    kind = Kind.GOTO;
+  }
+
+  String getName() {
+    return name + "." + id;
+  }
+
+  public String toString() {
+    StringBuilder text = new StringBuilder(getName()).append(":");
+    if (!predecessors.isEmpty()) {
+      text.append("  <-");
+      for (Block predecessor : predecessors) {
+        text.append(" ").append(predecessor.getName());
+      }
+    }
+    text.append("\n");
+    for (Instruction phi : phis) {
+      text.append("  ").append(phi.describe()).append("\n");
+    }
+    for (Instruction instruction : instructions) {
+      text.append("  ").append(instruction.describe()).append("\n");
+    }
+    text.append("  ").append(kind.toString().toLowerCase());
+    if (kind == Kind.TAILCALL) {
+      text.append(" ").append(callee.name);
+    }
+    for (Value operand : operands) {
+      text.append(" ").append(operand);
+    }
+    for (int i = 0; i < successors.size(); i++) {
+      text.append(i == 0 ? " -> " : ", ");
+      if (caseValues != null) {
+        text.append(i < caseValues.length ? caseValues[i] + ": " : "default: ");
+      }
+      text.append(successors.get(i).getName());
+    }
+    return text.append("\n").toString();
+  }
+}
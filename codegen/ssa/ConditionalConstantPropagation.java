@@ -0,0 +1,224 @@
+package codegen.ssa;
+
+import java.util.*;
+import codegen.PeepholeOptimizer;
+
+/**
+ * Sparse conditional constant propagation, after Wegman and Zadeck,
+ * "Constant Propagation with Conditional Branches". Each value starts out
+ * unknown and is only ever lowered to a constant and then to varying, and
+ * blocks are only looked at once an edge into them is found to be taken,
+ * starting from the entry. A phi meets the operands of its taken edges
+ * only, so a variable that keeps its constant value around a loop stays
+ * constant, and a branch on a constant takes one edge only.
+ *
+ * Afterwards the pure instructions and phis with a constant value are
+ * replaced by it, branches and switches on a constant become GOTOs and
+ * the blocks that were never reached are removed.
+ */
+class ConditionalConstantPropagation implements Pass {
+
+  // the lattice values besides the constants: not known yet, and not constant
+  private static final Object UNKNOWN = "unknown", VARYING = "varying";
+
+  private HashMap<Value,Object> values;
+  private HashMap<Value,ArrayList<Object>> users;
+  private HashSet<Block> reachedBlocks;
+  private HashSet<List<Block>> takenEdges;
+  private ArrayDeque<Object> work;
+
+  public int run(Function function) {
+    values = new HashMap<Value,Object>();
+    users = new HashMap<Value,ArrayList<Object>>();
+    reachedBlocks = new HashSet<Block>();
+    takenEdges = new HashSet<List<Block>>();
+    work = new ArrayDeque<Object>();
+    findUsers(function);
+    reach(function.entry);
+    while (!work.isEmpty()) {
+      Object user = work.poll();
+      if (user instanceof Instruction) {
+        if (reachedBlocks.contains(((Instruction)user).block)) {
+          evaluate((Instruction)user);
+        }
+      } else if (reachedBlocks.contains(user)) {
+        evaluateTerminator((Block)user);
+      }
+    }
+    return rewrite(function);
+  }
+
+  private void findUsers(Function function) {
+    for (Block block : function.blocks) {
+      for (Instruction phi : block.phis) {
+        addUser(phi.operands, phi);
+      }
+      for (Instruction instruction : block.instructions) {
+        addUser(instruction.operands, instruction);
+      }
+      addUser(block.operands, block);
+    }
+  }
+
+  private void addUser(ArrayList<Value> operands, Object user) {
+    for (Value operand : operands) {
+      users.computeIfAbsent(operand, value -> new ArrayList<Object>()).add(user);
+    }
+  }
+
+  private Object valueOf(Value value) {
+    if (value instanceof Constant) {
+      return ((Constant)value).value;
+    }
+    if (value instanceof Parameter) {
+      return VARYING;
+    }
+    return values.getOrDefault(value, UNKNOWN);
+  }
+
+  private void reach(Block block) {
+    if (!reachedBlocks.add(block)) {
+      // only the phis depend on which edges are taken
+      for (Instruction phi : block.phis) {
+        evaluate(phi);
+      }
+      return;
+    }
+    for (Instruction phi : block.phis) {
+      evaluate(phi);
+    }
+    for (Instruction instruction : block.instructions) {
+      evaluate(instruction);
+    }
+    evaluateTerminator(block);
+  }
+
+  private void take(Block block, int successor) {
+    Block target = block.successors.get(successor);
+    if (takenEdges.add(Arrays.asList(block, target))) {
+      reach(target);
+    }
+  }
+
+  private void evaluate(Instruction instruction) {
+    Object value;
+    switch (instruction.op) {
+      case PHI:
+        value = UNKNOWN;
+        for (int i = 0; i < instruction.operands.size(); i++) {
+          if (takenEdges.contains(Arrays.asList(instruction.block.predecessors.get(i), instruction.block))) {
+            value = meet(value, valueOf(instruction.operands.get(i)));
+          }
+        }
+        break;
+      case BINARY:
+        Object first = valueOf(instruction.operands.get(0)),
+            second = valueOf(instruction.operands.get(1));
+        if (first == UNKNOWN || second == UNKNOWN) {
+          value = UNKNOWN;
+        } else if (first == VARYING || second == VARYING) {
+          value = VARYING;
+        } else {
+          Integer result = PeepholeOptimizer.applyOperator(instruction.operator, (Integer)first, (Integer)second);
+          value = result == null ? VARYING : result;
+        }
+        break;
+      default:
+        value = VARYING;
+    }
+    if (!value.equals(valueOf(instruction))) {
+      values.put(instruction, value);
+      work.addAll(users.getOrDefault(instruction, new ArrayList<Object>()));
+    }
+  }
+
+  private static Object meet(Object first, Object second) {
+    if (first == UNKNOWN) {
+      return second;
+    }
+    if (second == UNKNOWN || first.equals(second)) {
+      return first;
+    }
+    return VARYING;
+  }
+
+  private void evaluateTerminator(Block block) {
+    Object value = block.operands.isEmpty() ? null : valueOf(block.operands.get(0));
+    switch (block.kind) {
+      case GOTO:
+        take(block, 0);
+        break;
+      case BRANCH:
+        if (value == VARYING) {
+          take(block, 0);
+          take(block, 1);
+        } else if (value != UNKNOWN) {
+          take(block, (Integer)value != 0 ? 0 : 1);
+        }
+        break;
+      case SWITCH:
+        if (value == VARYING) {
+          for (int successor = 0; successor < block.successors.size(); successor++) {
+            take(block, successor);
+          }
+        } else if (value != UNKNOWN) {
+          take(block, caseIndex(block, (Integer)value));
+        }
+        break;
+      default:
+    }
+  }
+
+  /**
+   * @return the successor a SWITCH on value goes to
+   */
+  private static int caseIndex(Block block, int value) {
+    for (int i = 0; i < block.caseValues.length; i++) {
+      if (block.caseValues[i] == value) {
+        return i;
+      }
+    }
+    return block.caseValues.length;
+  }
+
+  /**
+   * @return the number of values replaced and terminators folded
+   */
+  private int rewrite(Function function) {
+    int changes = 0;
+    for (Block block : function.blocks) {
+      if (!reachedBlocks.contains(block)) {
+        continue;
+      }
+      changes += replaceConstants(function, block.phis);
+      changes += replaceConstants(function, block.instructions);
+      if (!block.operands.isEmpty() && valueOf(block.operands.get(0)) instanceof Integer) {
+        int value = (Integer)valueOf(block.operands.get(0));
+        if (block.kind == Block.Kind.BRANCH) {
+          block.foldTerminator(value != 0 ? 0 : 1);
+          changes++;
+        } else if (block.kind == Block.Kind.SWITCH) {
+          block.foldTerminator(caseIndex(block, value));
+          changes++;
+        }
+      }
+    }
+    function.removeUnreachableBlocks();
+    function.removeTrivialPhis();
+    return changes;
+  }
+
+  private int replaceConstants(Function function, ArrayList<Instruction> instructions) {
+    int replaced = 0;
+    for (Iterator<Instruction> iterator = instructions.iterator(); iterator.hasNext(); ) {
+      Instruction instruction = iterator.next();
+      if ((instruction.op == Instruction.Op.PHI || instruction.op == Instruction.Op.BINARY)
+          && valueOf(instruction) instanceof Integer) {
+        iterator.remove();
+        function.replaceAllUses(instruction, new Constant((Integer)valueOf(instruction)));
+        replaced++;
+      }
+    }
+    return replaced;
+  }
+}
@@ -0,0 +1,18 @@
+package codegen.ssa;
+
+/**
+ * An int known at compile time; lowered to LIT wherever it is used.
+ */
+public class Constant extends Value {
+
+  final int value;
+
+  Constant(int value) {
+    super(-1);
+    this.value = value;
+  }
+
+  String getName() {
+    return "#" + value;
+  }
+}
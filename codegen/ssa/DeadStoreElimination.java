@@ -0,0 +1,48 @@
+package codegen.ssa;
+
+import java.util.*;
+
+/**
+ * Removes the assignments whose values are never used. In SSA form each
+ * assignment to a variable defines a value of its own, so a store no read
+ * can see is an instruction or phi nothing uses, e.g. the a * b of
+ * x = a * b  x = c  when x is not read in between.
+ * The values needed are marked starting from the terminators and the
+ * instructions with side effects, and following operands from there, which
+ * also removes values that are only used by each other, like a variable
+ * that is only ever incremented in a loop. Calls, reads, writes and
+ * divisions that may divide by zero stay, with or without a use.
+ */
+class DeadStoreElimination implements Pass {
+
+  public int run(Function function) {
+    HashSet<Value> needed = new HashSet<Value>();
+    ArrayDeque<Value> work = new ArrayDeque<Value>();
+    for (Block block : function.blocks) {
+      for (Instruction instruction : block.instructions) {
+        if (instruction.hasSideEffects()) {
+          work.add(instruction);
+        }
+      }
+      work.addAll(block.operands);
+    }
+    while (!work.isEmpty()) {
+      Value value = work.poll();
+      if (needed.add(value) && value instanceof Instruction) {
+        work.addAll(((Instruction)value).operands);
+      }
+    }
+    int removed = 0;
+    for (Block block : function.blocks) {
+      removed += removeUnneeded(block.phis, needed);
+      removed += removeUnneeded(block.instructions, needed);
+    }
+    return removed;
+  }
+
+  private static int removeUnneeded(ArrayList<Instruction> instructions, HashSet<Value> needed) {
+    int size = instructions.size();
+    instructions.removeIf(instruction -> !needed.contains(instruction));
+    return size - instructions.size();
+  }
+}
@@ -0,0 +1,107 @@
+package codegen.ssa;
+
+import java.util.*;
+
+/**
+ * The dominator tree of a Function, found with the iterative algorithm of
+ * Cooper, Harvey and Kennedy, "A Simple, Fast Dominance Algorithm": a
+ * block's immediate dominator is where the dominator tree paths of its
+ * predecessors meet, repeated in reverse postorder until nothing changes.
+ * Only the blocks reachable from entry are included.
+ */
+class Dominators {
+
+  final ArrayList<Block> order;
+  private final HashMap<Block,Integer> orderIndex = new HashMap<Block,Integer>();
+  private final HashMap<Block,Block> immediateDominators = new HashMap<Block,Block>();
+  private final HashMap<Block,ArrayList<Block>> children = new HashMap<Block,ArrayList<Block>>();
+
+  Dominators(Function function) {
+    order = function.reversePostorder();
+    for (int i = 0; i < order.size(); i++) {
+      orderIndex.put(order.get(i), i);
+      children.put(order.get(i), new ArrayList<Block>());
+    }
+    Block entry = order.get(0);
+    immediateDominators.put(entry, entry);
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Block block : order.subList(1, order.size())) {
+        Block dominator = null;
+        for (Block predecessor : block.predecessors) {
+          if (immediateDominators.containsKey(predecessor)) {
+            dominator = dominator == null ? predecessor : intersect(predecessor, dominator);
+          }
+        }
+        if (immediateDominators.get(block) != dominator) {
+          immediateDominators.put(block, dominator);
+          changed = true;
+        }
+      }
+    }
+    for (Block block : order.subList(1, order.size())) {
+      children.get(immediateDominator(block)).add(block);
+    }
+  }
+
+  private Block intersect(Block first, Block second) {
+    while (first != second) {
+      while (orderIndex.get(first) > orderIndex.get(second)) {
+        first = immediateDominators.get(first);
+      }
+      while (orderIndex.get(second) > orderIndex.get(first)) {
+        second = immediateDominators.get(second);
+      }
+    }
+    return first;
+  }
+
+  Block immediateDominator(Block block) {
+    return immediateDominators.get(block);
+  }
+
+  /**
+   * @return the blocks block immediately dominates
+   */
+  ArrayList<Block> children(Block block) {
+    return children.get(block);
+  }
+
+  boolean dominates(Block dominator, Block block) {
+    while (block != dominator) {
+      Block next = immediateDominators.get(block);
+      if (next == block) {
+        return false;
+      }
+      block = next;
+    }
+    return true;
+  }
+
+  /**
+   * @return for the header of each natural loop, the blocks of its loops:
+   * the header and the blocks that reach an edge back to it without going
+   * through it
+   */
+  LinkedHashMap<Block,HashSet<Block>> findLoops() {
+    LinkedHashMap<Block,HashSet<Block>> loops = new LinkedHashMap<Block,HashSet<Block>>();
+    for (Block block : order) {
+      for (Block successor : block.successors) {
+        if (dominates(successor, block)) {
+          HashSet<Block> body = loops.computeIfAbsent(successor, header -> new HashSet<Block>());
+          body.add(successor);
+          ArrayDeque<Block> work = new ArrayDeque<Block>();
+          work.push(block);
+          while (!work.isEmpty()) {
+            Block member = work.pop();
+            if (body.add(member)) {
+              work.addAll(member.predecessors);
+            }
+          }
+        }
+      }
+    }
+    return loops;
+  }
+}
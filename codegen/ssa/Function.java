@@ -0,0 +1,254 @@
+package codegen.ssa;
+
+import java.util.*;
+import ast.AST;
+
+/**
+ * The SSA form of one x-lang function, or of the main program, as a
+ * control flow graph of Blocks starting at entry. The parameters are
+ * defined on entry, which no block jumps to.
+ */
+public class Function {
+
+  final String name;
+  final AST declaration;      // null for the main program
+  final ArrayList<Parameter> parameters = new ArrayList<Parameter>();
+  final ArrayList<Block> blocks = new ArrayList<Block>();
+  Block entry;
+  String label;
+  private int valueCount = 0;
+  private int blockCount = 0;
+
+  Function(String name, AST declaration) {
+    this.name = name;
+    this.declaration = declaration;
+  }
+
+  boolean isMain() {
+    return declaration == null;
+  }
+
+  Block newBlock(String name) {
+    Block block = new Block(blockCount++, name);
+    blocks.add(block);
+    return block;
+  }
+
+  Parameter newParameter(String variable) {
+    Parameter parameter = new Parameter(valueCount++, parameters.size(), variable);
+    parameters.add(parameter);
+    return parameter;
+  }
+
+  /**
+   * @return a new instruction of block, which the caller puts in place
+   */
+  Instruction newInstruction(Instruction.Op op, Block block) {
+    return new Instruction(valueCount++, op, block);
+  }
+
+  /**
+   * @return the uses of each value by instructions and terminators
+   */
+  HashMap<Value,Integer> countUses() {
+    HashMap<Value,Integer> uses = new HashMap<Value,Integer>();
+    for (Block block : blocks) {
+      for (Instruction phi : block.phis) {
+        countUses(phi.operands, uses);
+      }
+      for (Instruction instruction : block.instructions) {
+        countUses(instruction.operands, uses);
+      }
+      countUses(block.operands, uses);
+    }
+    return uses;
+  }
+
+  private static void countUses(ArrayList<Value> operands, HashMap<Value,Integer> uses) {
+    for (Value operand : operands) {
+      uses.merge(operand, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * Makes every instruction and terminator that uses from use to instead
+   */
+  void replaceAllUses(Value from, Value to) {
+    for (Block block : blocks) {
+      for (Instruction phi : block.phis) {
+        Collections.replaceAll(phi.operands, from, to);
+      }
+      for (Instruction instruction : block.instructions) {
+        Collections.replaceAll(instruction.operands, from, to);
+      }
+      Collections.replaceAll(block.operands, from, to);
+    }
+  }
+
+  /**
+   * @return the blocks reachable from entry in reverse postorder, visiting
+   * the successors of a block from the last, so that the true successor
+   * of a BRANCH comes right after the block where it can
+   */
+  ArrayList<Block> reversePostorder() {
+    ArrayList<Block> order = new ArrayList<Block>();
+    postorder(entry, new HashSet<Block>(), order);
+    Collections.reverse(order);
+    return order;
+  }
+
+  private static void postorder(Block block, HashSet<Block> visited, ArrayList<Block> order) {
+    visited.add(block);
+    for (int i = block.successors.size() - 1; i >= 0; i--) {
+      Block successor = block.successors.get(i);
+      if (!visited.contains(successor)) {
+        postorder(successor, visited, order);
+      }
+    }
+    order.add(block);
+  }
+
+  /**
+   * Removes the blocks control cannot reach from entry, and their edges
+   * into the blocks it can reach
+   * @return the number of blocks removed
+   */
+  int removeUnreachableBlocks() {
+    HashSet<Block> reachable = new HashSet<Block>(reversePostorder());
+    int removed = 0;
+    for (Iterator<Block> blocks = this.blocks.iterator(); blocks.hasNext(); ) {
+      Block block = blocks.next();
+      if (!reachable.contains(block)) {
+        for (Block successor : block.successors) {
+          if (reachable.contains(successor)) {
+            successor.removePredecessor(block);
+          }
+        }
+        blocks.remove();
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Replaces each phi whose operands are all the same value, or the phi
+   * itself, with that value, until there are no such phis left
+   */
+  void removeTrivialPhis() {
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Block block : blocks) {
+        for (Iterator<Instruction> phis = block.phis.iterator(); phis.hasNext(); ) {
+          Instruction phi = phis.next();
+          Value same = null;
+          boolean trivial = true;
+          for (Value operand : phi.operands) {
+            if (operand != phi && operand != same) {
+              if (same != null) {
+                trivial = false;
+                break;
+              }
+              same = operand;
+            }
+          }
+          if (trivial && same != null) {
+            phis.remove();
+            replaceAllUses(phi, same);
+            changed = true;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Merges each block into its predecessor when they are only connected
+   * to each other, and sends jumps to an empty block straight on to its
+   * successor, unless that would give a block two edges to the same one
+   */
+  void simplifyBlocks() {
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Block block : new ArrayList<Block>(blocks)) {
+        // blocks merged or forwarded on this pass are gone
+        if (!blocks.contains(block)) {
+          continue;
+        }
+        if (block.kind == Block.Kind.GOTO && block.successors.get(0) != block) {
+          Block successor = block.successors.get(0);
+          if (successor.predecessors.size() == 1 && successor != entry) {
+            merge(block, successor);
+            changed = true;
+          } else if (block != entry && block.phis.isEmpty() && block.instructions.isEmpty()
+              && forward(block, successor)) {
+            changed = true;
+          }
+        }
+      }
+    }
+  }
+
+  private void merge(Block block, Block successor) {
+    for (Instruction phi : successor.phis) {
+      replaceAllUses(phi, phi.operands.get(0));
+    }
+    for (Instruction instruction : successor.instructions) {
+      instruction.block = block;
+      block.instructions.add(instruction);
+    }
+    block.kind = successor.kind;
+    block.operands.clear();
+    block.operands.addAll(successor.operands);
+    block.caseValues = successor.caseValues;
+    block.callee = successor.callee;
+    block.successors.clear();
+    for (Block next : successor.successors) {
+      block.successors.add(next);
+      Collections.replaceAll(next.predecessors, successor, block);
+    }
+    blocks.remove(successor);
+  }
+
+  /**
+   * Sends the predecessors of the empty block on to its successor
+   * @return whether the block was removed
+   */
+  private boolean forward(Block block, Block successor) {
+    int index = successor.predecessors.indexOf(block);
+    boolean forwardedAll = true;
+    for (Block predecessor : new ArrayList<Block>(block.predecessors)) {
+      if (Collections.frequency(predecessor.successors, block) != 1
+          || successor.predecessors.contains(predecessor)) {
+        forwardedAll = false;
+        continue;
+      }
+      Collections.replaceAll(predecessor.successors, block, successor);
+      block.predecessors.remove(predecessor);
+      successor.predecessors.add(predecessor);
+      for (Instruction phi : successor.phis) {
+        phi.operands.add(phi.operands.get(index));
+      }
+    }
+    if (!forwardedAll) {
+      return false;
+    }
+    successor.removePredecessor(block);
+    blocks.remove(block);
+    return true;
+  }
+
+  public String toString() {
+    StringBuilder text = new StringBuilder(isMain() ? "program" : "function " + name).append("(");
+    for (int i = 0; i < parameters.size(); i++) {
+      text.append(i > 0 ? ", " : "").append(parameters.get(i));
+    }
+    text.append(")\n");
+    for (Block block : reversePostorder()) {
+      text.append(block);
+    }
+    return text.toString();
+  }
+}
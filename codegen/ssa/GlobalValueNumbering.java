@@ -0,0 +1,106 @@
+package codegen.ssa;
+
+import java.util.*;
+
+/**
+ * Dominator-based global value numbering: the blocks are visited down the
+ * dominator tree with a table of the BINARY instructions and phis seen on
+ * the way from the entry, keyed by operator and operands. An instruction
+ * that computes what a dominating one already has, e.g. the second n - 1
+ * of fib(n - 1) + n - 1, is replaced by it, as is one that adds or
+ * subtracts 0 or multiplies or divides by 1. The operands of commutative
+ * operators are put in order first, so that a * b and b * a are the same.
+ * Calls, reads and writes are never numbered.
+ */
+class GlobalValueNumbering implements Pass {
+
+  private static final Set<String> COMMUTATIVE =
+      new HashSet<String>(Arrays.asList("+", "*", "==", "!=", "|", "&"));
+
+  private Function function;
+  private Dominators dominators;
+  private HashMap<String,Value> table = new HashMap<String,Value>();
+  private int replaced;
+
+  public int run(Function function) {
+    this.function = function;
+    dominators = new Dominators(function);
+    table.clear();
+    replaced = 0;
+    number(function.entry);
+    return replaced;
+  }
+
+  private void number(Block block) {
+    ArrayList<String> added = new ArrayList<String>();
+    number(block.phis, added, "phi " + block.id);
+    number(block.instructions, added, null);
+    for (Block child : dominators.children(block)) {
+      number(child);
+    }
+    for (String key : added) {
+      table.remove(key);
+    }
+  }
+
+  private void number(ArrayList<Instruction> instructions, ArrayList<String> added, String phiKey) {
+    for (Iterator<Instruction> iterator = instructions.iterator(); iterator.hasNext(); ) {
+      Instruction instruction = iterator.next();
+      if (instruction.op != Instruction.Op.PHI && instruction.op != Instruction.Op.BINARY) {
+        continue;
+      }
+      Value same = instruction.op == Instruction.Op.BINARY ? identity(instruction) : null;
+      String key = null;
+      if (same == null) {
+        key = key(instruction, phiKey);
+        same = table.get(key);
+      }
+      if (same != null) {
+        iterator.remove();
+        function.replaceAllUses(instruction, same);
+        replaced++;
+      } else {
+        table.put(key, instruction);
+        added.add(key);
+      }
+    }
+  }
+
+  /**
+   * @return the operand a BINARY leaves unchanged, or null
+   */
+  private static Value identity(Instruction instruction) {
+    Value first = instruction.operands.get(0),
+        second = instruction.operands.get(1);
+    switch (instruction.operator) {
+      case "+":
+        return isConstant(second, 0) ? first : isConstant(first, 0) ? second : null;
+      case "-":
+        return isConstant(second, 0) ? first : null;
+      case "*":
+        return isConstant(second, 1) ? first : isConstant(first, 1) ? second : null;
+      case "/":
+        return isConstant(second, 1) ? first : null;
+      default:
+        return null;
+    }
+  }
+
+  private static boolean isConstant(Value value, int expected) {
+    return value instanceof Constant && ((Constant)value).value == expected;
+  }
+
+  private static String key(Instruction instruction, String phiKey) {
+    ArrayList<String> operands = new ArrayList<String>();
+    for (Value operand : instruction.operands) {
+      operands.add(operand instanceof Constant ? operand.getName() : "v" + operand.id);
+    }
+    if (phiKey != null) {
+      return phiKey + " " + operands;
+    }
+    if (COMMUTATIVE.contains(instruction.operator)) {
+      Collections.sort(operands);
+    }
+    return instruction.operator + " " + operands;
+  }
+}
@@ -0,0 +1,88 @@
+package codegen.ssa;
+
+import java.util.*;
+
+/**
+ * An operation of a Block, whose result is the value it defines:
+ * <ul>
+ * <li>PHI picks the operand of the predecessor control came from; the
+ * operands are in the order of the block's predecessors
+ * <li>BINARY applies a BOP operator to its two operands
+ * <li>CALL calls a function with the operands as arguments
+ * <li>READ reads a number, as the Read intrinsic does
+ * <li>WRITE writes its operand, as the Write intrinsic does; its result is
+ * its operand, so nothing uses the instruction itself
+ * </ul>
+ */
+public class Instruction extends Value {
+
+  public enum Op { PHI, BINARY, CALL, READ, WRITE }
+
+  final Op op;
+  final ArrayList<Value> operands = new ArrayList<Value>();
+  String operator;      // of a BINARY
+  Function callee;      // of a CALL
+  Block block;
+  String variable;      // the variable the value was first assigned to, if any
+
+  Instruction(int id, Op op, Block block) {
+    super(id);
+    this.op = op;
+    this.block = block;
+  }
+
+  /**
+   * @return whether the instruction does more than compute its value: a
+   * call, a READ or WRITE, or a division that may divide by zero
+   */
+  boolean hasSideEffects() {
+    switch (op) {
+      case CALL:
+      case READ:
+      case WRITE:
+        return true;
+      case BINARY:
+        if (!operator.equals("/")) {
+          return false;
+        }
+        Value divisor = operands.get(1);
+        return !(divisor instanceof Constant) || ((Constant)divisor).value == 0;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * @return whether the instruction may be computed anywhere its operands
+   * are available, or not at all if its value is not needed
+   */
+  boolean isPure() {
+    return op == Op.BINARY && !hasSideEffects();
+  }
+
+  String getName() {
+    return (variable == null ? "t" : variable) + "." + id;
+  }
+
+  /**
+   * @return the instruction as it is printed in the SSA listing
+   */
+  String describe() {
+    StringBuilder text = new StringBuilder(getName()).append(" = ");
+    switch (op) {
+      case BINARY:
+        return text.append(operands.get(0)).append(" ").append(operator).append(" ")
+            .append(operands.get(1)).toString();
+      case CALL:
+        text.append("call ").append(callee.name);
+        break;
+      default:
+        text.append(op.toString().toLowerCase());
+    }
+    text.append("(");
+    for (int i = 0; i < operands.size(); i++) {
+      text.append(i > 0 ? ", " : "").append(operands.get(i));
+    }
+    return text.append(")").toString();
+  }
+}
@@ -0,0 +1,122 @@
+package codegen.ssa;
+
+import java.util.*;
+
+/**
+ * Moves the computations whose operands do not change in a loop out of it,
+ * into the loop's preheader: the block that is the only way into the loop
+ * header from outside, which is made where there is none. Only pure
+ * instructions move, as the loop body may not run at all; a division moves
+ * only by a constant other than 0. Inner loops go first, so that what they
+ * hoist may move on out of the loops around them.
+ */
+class LoopInvariantCodeMotion implements Pass {
+
+  public int run(Function function) {
+    Dominators dominators = new Dominators(function);
+    boolean addedPreheaders = false;
+    for (Map.Entry<Block,HashSet<Block>> loop : dominators.findLoops().entrySet()) {
+      if (findPreheader(loop.getKey(), loop.getValue()) == null) {
+        addPreheader(function, loop.getKey(), loop.getValue());
+        addedPreheaders = true;
+      }
+    }
+    if (addedPreheaders) {
+      dominators = new Dominators(function);
+    }
+    ArrayList<Map.Entry<Block,HashSet<Block>>> loops =
+        new ArrayList<Map.Entry<Block,HashSet<Block>>>(dominators.findLoops().entrySet());
+    loops.sort(Comparator.comparingInt(loop -> loop.getValue().size()));
+    int hoisted = 0;
+    for (Map.Entry<Block,HashSet<Block>> loop : loops) {
+      HashSet<Block> body = loop.getValue();
+      Block preheader = findPreheader(loop.getKey(), body);
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        for (Block block : dominators.order) {
+          if (!body.contains(block)) {
+            continue;
+          }
+          for (Iterator<Instruction> iterator = block.instructions.iterator(); iterator.hasNext(); ) {
+            Instruction instruction = iterator.next();
+            if (instruction.isPure() && isInvariant(instruction, body)) {
+              iterator.remove();
+              instruction.block = preheader;
+              preheader.instructions.add(instruction);
+              hoisted++;
+              changed = true;
+            }
+          }
+        }
+      }
+    }
+    return hoisted;
+  }
+
+  private static boolean isInvariant(Instruction instruction, HashSet<Block> body) {
+    for (Value operand : instruction.operands) {
+      if (operand instanceof Instruction && body.contains(((Instruction)operand).block)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the only block outside the loop that jumps to its header, if
+   * that is all it does, or null
+   */
+  private static Block findPreheader(Block header, HashSet<Block> body) {
+    Block preheader = null;
+    for (Block predecessor : header.predecessors) {
+      if (!body.contains(predecessor)) {
+        if (preheader != null) {
+          return null;
+        }
+        preheader = predecessor;
+      }
+    }
+    return preheader != null && preheader.successors.size() == 1 ? preheader : null;
+  }
+
+  /**
+   * Puts a new block between the header and the blocks outside the loop
+   * that jump to it, with phis for the values they bring where there are
+   * several of them
+   */
+  private static void addPreheader(Function function, Block header, HashSet<Block> body) {
+    Block preheader = function.newBlock("preheader");
+    ArrayList<Block> predecessors = new ArrayList<Block>(header.predecessors);
+    ArrayList<Integer> outside = new ArrayList<Integer>();
+    for (int i = 0; i < predecessors.size(); i++) {
+      if (!body.contains(predecessors.get(i))) {
+        outside.add(i);
+        preheader.predecessors.add(predecessors.get(i));
+        Collections.replaceAll(predecessors.get(i).successors, header, preheader);
+      }
+    }
+    for (Instruction phi : header.phis) {
+      Value entering;
+      if (outside.size() == 1) {
+        entering = phi.operands.get(outside.get(0));
+      } else {
+        Instruction preheaderPhi = function.newInstruction(Instruction.Op.PHI, preheader);
+        preheaderPhi.variable = phi.variable;
+        for (int i : outside) {
+          preheaderPhi.operands.add(phi.operands.get(i));
+        }
+        preheader.phis.add(preheaderPhi);
+        entering = preheaderPhi;
+      }
+      for (int i = outside.size() - 1; i >= 0; i--) {
+        phi.operands.remove((int)outside.get(i));
+      }
+      phi.operands.add(entering);
+    }
+    for (int i = outside.size() - 1; i >= 0; i--) {
+      header.predecessors.remove((int)outside.get(i));
+    }
+    preheader.jump(header);
+  }
+}
@@ -0,0 +1,21 @@
+package codegen.ssa;
+
+/**
+ * A formal of a function, which the caller's ARGS leave in the function's
+ * frame at the offset of its index.
+ */
+public class Parameter extends Value {
+
+  final int index;
+  final String variable;
+
+  Parameter(int id, int index, String variable) {
+    super(id);
+    this.index = index;
+    this.variable = variable;
+  }
+
+  String getName() {
+    return variable + "." + id;
+  }
+}
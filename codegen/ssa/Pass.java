@@ -0,0 +1,12 @@
+package codegen.ssa;
+
+/**
+ * An optimization of a Function in SSA form, which rewrites it in place.
+ */
+interface Pass {
+
+  /**
+   * @return the number of changes made, for the compiler to report
+   */
+  int run(Function function);
+}
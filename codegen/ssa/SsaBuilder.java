@@ -0,0 +1,439 @@
+package codegen.ssa;
+
+import java.util.*;
+import ast.*;
+import constrain.Constrainer;
+import visitor.*;
+
+/**
+ * Builds the SSA form of the main program and of each function of a
+ * constrained AST, following Braun et al., "Simple and Efficient
+ * Construction of Static Single Assignment Form": the value of a variable
+ * is looked up in the block that reads it and, if the block does not assign
+ * it, in its predecessors, with a phi where several of them meet. A block
+ * whose predecessors are not all known yet, such as a while header before
+ * the end of the loop body, gets operandless phis that are completed when
+ * the block is sealed.
+ *
+ * The blocks follow the code Codegen generates:
+ * <ul>
+ * <li>an if branches to its then and else blocks; without an else, the
+ * then block ends with a HALT, as the GOTO continue Codegen generates there
+ * has no LABEL and goes to the last code, the HALT of the program
+ * <li>an unless generates no code, as in Codegen
+ * <li>a while tests its condition in a header block that the body jumps
+ * back to
+ * <li>a switch jumps to the block of the first case with the value, or the
+ * default, which all go on to the block after the switch
+ * <li>the body of a function starts in a block of its own after the entry,
+ * where return f(args) in f jumps back to with the arguments as the new
+ * values of the formals; a return of another call becomes a TAILCALL
+ * </ul>
+ * Read and write become READ and WRITE instructions. Strings, chars and
+ * variables of an enclosing function or the main program, which Codegen
+ * would load from the current frame, throw an UnsupportedTreeException.
+ *
+ * Each expression visit returns its Value.
+ */
+public class SsaBuilder extends ASTVisitor {
+
+  private final Constrainer constrainer;
+  private final ArrayList<Function> functions;
+  private final HashMap<AST,Function> functionDeclarations;
+
+  private Function function;
+  private Block current;
+  private Block bodyStart;
+  // for each variable declaration, its value at the end of each block
+  private HashMap<AST,HashMap<Block,Value>> definitions = new HashMap<AST,HashMap<Block,Value>>();
+  private HashMap<Block,LinkedHashMap<AST,Instruction>> incompletePhis = new HashMap<Block,LinkedHashMap<AST,Instruction>>();
+  private HashSet<Block> sealedBlocks = new HashSet<Block>();
+
+  /**
+   * @param constrainer the Constrainer that decorated the AST, whose read
+   * and write trees calls to read and write are decorated with
+   */
+  public SsaBuilder(Constrainer constrainer) {
+    this(constrainer, new ArrayList<Function>(), new HashMap<AST,Function>());
+  }
+
+  private SsaBuilder(Constrainer constrainer, ArrayList<Function> functions,
+                     HashMap<AST,Function> functionDeclarations) {
+    this.constrainer = constrainer;
+    this.functions = functions;
+    this.functionDeclarations = functionDeclarations;
+  }
+
+  /**
+   * @return the main program, followed by the functions in the order they
+   * are declared
+   */
+  public ArrayList<Function> execute(AST t) {
+    t.accept(this);
+    for (Function function : functions) {
+      function.removeUnreachableBlocks();
+      function.removeTrivialPhis();
+      function.simplifyBlocks();
+    }
+    return functions;
+  }
+
+  private static String variableName(AST declaration) {
+    return ((IdentifierTree)declaration.getChild(1)).getSymbol().toString();
+  }
+
+  private void sealBlock(Block block) {
+    LinkedHashMap<AST,Instruction> phis = incompletePhis.remove(block);
+    if (phis != null) {
+      for (Map.Entry<AST,Instruction> phi : phis.entrySet()) {
+        addPhiOperands(phi.getKey(), phi.getValue());
+      }
+    }
+    sealedBlocks.add(block);
+  }
+
+  private Block newSealedBlock(String name, Block predecessor) {
+    Block block = function.newBlock(name);
+    if (predecessor != null) {
+      predecessor.addSuccessor(block);
+    }
+    sealBlock(block);
+    return block;
+  }
+
+  private void writeVariable(AST declaration, Block block, Value value) {
+    definitions.get(declaration).put(block, value);
+  }
+
+  private Value readVariable(AST declaration, Block block) {
+    Value value = definitions.get(declaration).get(block);
+    if (value != null) {
+      return value;
+    }
+    if (!sealedBlocks.contains(block)) {
+      Instruction phi = newPhi(declaration, block);
+      incompletePhis.computeIfAbsent(block, b -> new LinkedHashMap<AST,Instruction>()).put(declaration, phi);
+      value = phi;
+    } else if (block.predecessors.isEmpty()) {
+      // code after a return, which is never run
+      value = new Constant(0);
+    } else if (block.predecessors.size() == 1) {
+      value = readVariable(declaration, block.predecessors.get(0));
+    } else {
+      Instruction phi = newPhi(declaration, block);
+      writeVariable(declaration, block, phi);
+      addPhiOperands(declaration, phi);
+      value = phi;
+    }
+    writeVariable(declaration, block, value);
+    return value;
+  }
+
+  private Instruction newPhi(AST declaration, Block block) {
+    Instruction phi = function.newInstruction(Instruction.Op.PHI, block);
+    phi.variable = variableName(declaration);
+    block.phis.add(phi);
+    return phi;
+  }
+
+  private void addPhiOperands(AST declaration, Instruction phi) {
+    for (Block predecessor : phi.block.predecessors) {
+      phi.operands.add(readVariable(declaration, predecessor));
+    }
+  }
+
+  private Instruction append(Instruction.Op op, Value... operands) {
+    Instruction instruction = function.newInstruction(op, current);
+    instruction.operands.addAll(Arrays.asList(operands));
+    current.instructions.add(instruction);
+    return instruction;
+  }
+
+  private void declare(AST declaration, Value value) {
+    AST type = declaration.getChild(0);
+    if (!(type instanceof IntTypeTree) && !(type instanceof BoolTypeTree)) {
+      throw new UnsupportedTreeException(declaration, "a variable that is not an int or boolean");
+    }
+    definitions.put(declaration, new HashMap<Block,Value>());
+    writeVariable(declaration, current, value);
+  }
+
+  /**
+   * Continues after a return in a block control never reaches
+   */
+  private void startUnreachableBlock() {
+    current = newSealedBlock("unreachable", null);
+  }
+
+  public Object visitProgramTree(AST t) {
+    function = new Function("program", null);
+    functions.add(function);
+    function.entry = current = newSealedBlock("start", null);
+    t.getChild(0).accept(this);
+    current.exit(Block.Kind.HALT);
+    return null;
+  }
+
+  public Object visitBlockTree(AST t) {
+    visitChildren(t);
+    return null;
+  }
+
+  /**
+   * Builds the function with a builder of its own; nothing happens where
+   * it is declared
+   */
+  public Object visitFunctionDeclarationTree(AST t) {
+    new SsaBuilder(constrainer, functions, functionDeclarations).buildFunction(t);
+    return null;
+  }
+
+  private void buildFunction(AST t) {
+    AST type = t.getChild(0);
+    if (!(type instanceof IntTypeTree) && !(type instanceof BoolTypeTree)) {
+      throw new UnsupportedTreeException(t, "a function that does not return an int or boolean");
+    }
+    function = new Function(((IdentifierTree)t.getChild(1)).getSymbol().toString(), t);
+    functions.add(function);
+    functionDeclarations.put(t, function);
+    function.entry = current = newSealedBlock("entry", null);
+    for (AST formal : t.getChild(2).getChildren()) {
+      declare(formal, function.newParameter(variableName(formal)));
+    }
+    bodyStart = function.newBlock("body");
+    current.jump(bodyStart);
+    current = bodyStart;
+    t.getChild(3).accept(this);
+    // the GRATIS-RETURN-VALUE of a function that runs off its end
+    current.exit(Block.Kind.RETURN, new Constant(0));
+    sealBlock(bodyStart);
+  }
+
+  public Object visitCallTree(AST t) {
+    AST declaration = t.getChild(0).getDecoration();
+    ArrayList<Value> arguments = new ArrayList<Value>();
+    for (int child = 1; child < t.getChildCount(); child++) {
+      arguments.add((Value)t.getChild(child).accept(this));
+    }
+    if (declaration == constrainer.getReadTree()) {
+      return append(Instruction.Op.READ);
+    }
+    if (declaration == constrainer.getWriteTree()) {
+      append(Instruction.Op.WRITE, arguments.get(0));
+      return arguments.get(0);
+    }
+    Instruction call = append(Instruction.Op.CALL, arguments.toArray(new Value[0]));
+    call.callee = functionDeclarations.get(declaration);
+    return call;
+  }
+
+  public Object visitDeclarationTree(AST t) {
+    declare(t, new Constant(0));
+    return null;
+  }
+
+  public Object visitIntTypeTree(AST t) {
+    return null;
+  }
+
+  public Object visitBoolTypeTree(AST t) {
+    return null;
+  }
+
+  public Object visitStringTypeTree(AST t) {
+    throw new UnsupportedTreeException(t, "a string");
+  }
+
+  public Object visitCharTypeTree(AST t) {
+    throw new UnsupportedTreeException(t, "a char");
+  }
+
+  public Object visitStringTree(AST t) {
+    throw new UnsupportedTreeException(t, "a string");
+  }
+
+  public Object visitCharTree(AST t) {
+    throw new UnsupportedTreeException(t, "a char");
+  }
+
+  public Object visitFormalsTree(AST t) {
+    return null;
+  }
+
+  public Object visitActualArgumentsTree(AST t) {
+    return null;
+  }
+
+  public Object visitIfTree(AST t) {
+    Value condition = (Value)t.getChild(0).accept(this);
+    Block test = current;
+    test.kind = Block.Kind.BRANCH;
+    test.operands.add(condition);
+    Block thenBlock = newSealedBlock("then", test),
+        elseBlock = newSealedBlock("else", test);
+    current = thenBlock;
+    t.getChild(1).accept(this);
+    if (t.getChildCount() > 2) {
+      Block thenEnd = current;
+      current = elseBlock;
+      t.getChild(2).accept(this);
+      Block join = function.newBlock("continue");
+      thenEnd.jump(join);
+      current.jump(join);
+      sealBlock(join);
+      current = join;
+    } else {
+      current.exit(Block.Kind.HALT);
+      current = elseBlock;
+    }
+    return null;
+  }
+
+  public Object visitUnlessTree(AST t) {
+    return null;
+  }
+
+  public Object visitWhileTree(AST t) {
+    Block header = function.newBlock("while");
+    current.jump(header);
+    current = header;
+    Value condition = (Value)t.getChild(0).accept(this);
+    current.kind = Block.Kind.BRANCH;
+    current.operands.add(condition);
+    Block body = newSealedBlock("do", current),
+        exit = newSealedBlock("continue", current);
+    current = body;
+    t.getChild(1).accept(this);
+    current.jump(header);
+    sealBlock(header);
+    current = exit;
+    return null;
+  }
+
+  public Object visitReturnTree(AST t) {
+    AST expression = t.getChild(0);
+    AST callee = expression instanceof CallTree ? expression.getChild(0).getDecoration() : null;
+    if (callee != null && callee == function.declaration) {
+      AST formals = function.declaration.getChild(2);
+      ArrayList<Value> arguments = new ArrayList<Value>();
+      for (int child = 1; child < expression.getChildCount(); child++) {
+        arguments.add((Value)expression.getChild(child).accept(this));
+      }
+      for (int formal = 0; formal < arguments.size(); formal++) {
+        writeVariable(formals.getChild(formal), current, arguments.get(formal));
+      }
+      current.jump(bodyStart);
+    } else if (functionDeclarations.containsKey(callee)) {
+      for (int child = 1; child < expression.getChildCount(); child++) {
+        current.operands.add((Value)expression.getChild(child).accept(this));
+      }
+      current.kind = Block.Kind.TAILCALL;
+      current.callee = functionDeclarations.get(callee);
+    } else {
+      current.exit(Block.Kind.RETURN, (Value)expression.accept(this));
+    }
+    startUnreachableBlock();
+    return null;
+  }
+
+  public Object visitSwitchBlockTree(AST t) {
+    return null;
+  }
+
+  public Object visitSwitchStatementTree(AST t) {
+    Value value = (Value)t.getChild(0).accept(this);
+    Block test = current;
+    test.kind = Block.Kind.SWITCH;
+    test.operands.add(value);
+    ArrayList<Integer> caseValues = new ArrayList<Integer>();
+    ArrayList<Block> caseBlocks = new ArrayList<Block>();
+    Block defaultBlock = null;
+    for (AST caseStatement : t.getChild(1).getChildren()) {
+      Block caseBlock;
+      if (caseStatement instanceof CaseStatementTree) {
+        int caseValue = Integer.parseInt(((IntTree)caseStatement.getChild(0)).getSymbol().toString());
+        // the first of several cases with the same value is the one taken
+        if (caseValues.contains(caseValue)) {
+          caseBlock = newSealedBlock("switch_case", null);
+        } else {
+          caseValues.add(caseValue);
+          caseBlock = newSealedBlock("switch_case", test);
+        }
+      } else {
+        caseBlock = defaultBlock = function.newBlock("switch_default");
+      }
+      caseBlocks.add(caseBlock);
+    }
+    Block end = function.newBlock("switch_end");
+    if (defaultBlock != null) {
+      test.addSuccessor(defaultBlock);
+      sealBlock(defaultBlock);
+    } else {
+      test.addSuccessor(end);
+    }
+    test.caseValues = caseValues.stream().mapToInt(Integer::intValue).toArray();
+    ArrayList<AST> caseStatements = t.getChild(1).getChildren();
+    for (int i = 0; i < caseStatements.size(); i++) {
+      AST caseStatement = caseStatements.get(i);
+      current = caseBlocks.get(i);
+      caseStatement.getChild(caseStatement instanceof CaseStatementTree ? 1 : 0).accept(this);
+      current.jump(end);
+    }
+    sealBlock(end);
+    current = end;
+    return null;
+  }
+
+  public Object visitCaseStatementTree(AST t) {
+    return null;
+  }
+
+  public Object visitDefaultStatementTree(AST t) {
+    return null;
+  }
+
+  public Object visitAssignTree(AST t) {
+    AST declaration = t.getChild(0).getDecoration();
+    Value value = (Value)t.getChild(1).accept(this);
+    if (!definitions.containsKey(declaration)) {
+      throw new UnsupportedTreeException(t, "a variable of an enclosing function");
+    }
+    if (value instanceof Instruction && ((Instruction)value).variable == null) {
+      ((Instruction)value).variable = variableName(declaration);
+    }
+    writeVariable(declaration, current, value);
+    return null;
+  }
+
+  public Object visitIntTree(AST t) {
+    return new Constant(Integer.parseInt(((IntTree)t).getSymbol().toString()));
+  }
+
+  public Object visitIdentifierTree(AST t) {
+    AST declaration = t.getDecoration();
+    if (!definitions.containsKey(declaration)) {
+      throw new UnsupportedTreeException(t, "a variable of an enclosing function");
+    }
+    return readVariable(declaration, current);
+  }
+
+  private Object visitOperationTree(AST t, String operator) {
+    Value left = (Value)t.getChild(0).accept(this),
+        right = (Value)t.getChild(1).accept(this);
+    Instruction instruction = append(Instruction.Op.BINARY, left, right);
+    instruction.operator = operator;
+    return instruction;
+  }
+
+  public Object visitRelationalOperationTree(AST t) {
+    return visitOperationTree(t, ((RelationalOperationTree)t).getSymbol().toString());
+  }
+
+  public Object visitAdditionOperationTree(AST t) {
+    return visitOperationTree(t, ((AdditionOperationTree)t).getSymbol().toString());
+  }
+
+  public Object visitMultiplicationOperationTree(AST t) {
+    return visitOperationTree(t, ((MultiplicationOperationTree)t).getSymbol().toString());
+  }
+}
@@ -0,0 +1,415 @@
+package codegen.ssa;
+
+import java.util.*;
+import codegen.*;
+
+/**
+ * Lowers Functions in SSA form back to the codes Codegen generates, so the
+ * interpreter and debugger run them as they are. The main program comes
+ * first and ends in HALT, and each function follows under its label.
+ *
+ * The values of a function live in the slots of its frame: the formals
+ * keep the slots the caller's ARGS leave them in, and the other slots are
+ * declared with LIT 0 on entry, as Codegen declares variables. An
+ * instruction whose value is used once, by the next instruction of its
+ * block that is left, is not given a slot but computed on the operand
+ * stack right where it is used, so that e.g. x = a * b + c becomes
+ *   LOAD 0 a  LOAD 1 b  BOP *  LOAD 2 c  BOP +  STORE 3 x
+ * as from Codegen. This keeps all side effects in order, as the only code
+ * moved is the one right before its use. The others are stored to slots
+ * found by coloring the graph of the values that are live at the same
+ * time, preferring the slot of a phi for its operands and the other way
+ * round, so that most phis need no code at all.
+ *
+ * The remaining phis are lowered to copies on each edge into their block,
+ * pushing all the operands before storing any of them; an edge from a
+ * branch or switch that needs copies gets a block of its own, placed at the
+ * end of the function.
+ */
+public class SsaLowering {
+
+  private Program program = new Program();
+  private int labelCount = 0;
+
+  private Function function;
+  private HashMap<Value,Integer> uses;
+  private HashSet<Instruction> inlined;
+  private HashMap<Block,ArrayList<Instruction>> roots;
+  private HashMap<Block,String> labels;
+  private HashMap<Value,Integer> slots;
+  private ArrayList<String> slotNames;
+
+  /**
+   * @param functions the main program followed by the functions it calls
+   */
+  public Program lower(ArrayList<Function> functions) {
+    for (Function function : functions) {
+      if (!function.isMain()) {
+        function.label = newLabel(function.name);
+        function.declaration.setLabel(function.label);
+      }
+    }
+    for (Function function : functions) {
+      lower(function);
+    }
+    return program;
+  }
+
+  private String newLabel(String label) {
+    return label + "<<" + ++labelCount + ">>";
+  }
+
+  private void lower(Function function) {
+    this.function = function;
+    ArrayList<Block> order = function.reversePostorder();
+    labels = new HashMap<Block,String>();
+    for (Block block : order) {
+      labels.put(block, newLabel(block.name));
+    }
+    uses = function.countUses();
+    inlined = new HashSet<Instruction>();
+    roots = new HashMap<Block,ArrayList<Instruction>>();
+    for (Block block : order) {
+      formTrees(block);
+    }
+    allocateSlots(order);
+
+    if (!function.isMain()) {
+      program.storeop(new LabelOpcode(Codes.ByteCodes.LABEL, function.label));
+    }
+    for (int slot = function.parameters.size(); slot < slotNames.size(); slot++) {
+      program.storeop(new VarOpcode(Codes.ByteCodes.LIT, 0, slotNames.get(slot)));
+    }
+    LinkedHashMap<String,Block[]> edges = new LinkedHashMap<String,Block[]>();
+    for (Block block : order) {
+      if (block != function.entry) {
+        program.storeop(new LabelOpcode(Codes.ByteCodes.LABEL, labels.get(block)));
+      }
+      for (Instruction root : roots.get(block)) {
+        emitTree(root);
+        if (root.op != Instruction.Op.WRITE) {
+          program.storeop(hasSlot(root) ? store(root) : new NumOpcode(Codes.ByteCodes.POP, 1));
+        }
+      }
+      emitTerminator(block, edges);
+    }
+    // the blocks of the edges with copies go last, out of the way of the
+    // blocks that fall through to each other
+    for (Map.Entry<String,Block[]> edge : edges.entrySet()) {
+      program.storeop(new LabelOpcode(Codes.ByteCodes.LABEL, edge.getKey()));
+      emitEdge(edge.getValue()[0], edge.getValue()[1]);
+    }
+  }
+
+  /**
+   * Decides which instructions of block are computed where they are used:
+   * working back from each instruction's last operand, an operand is
+   * inlined while it is used once and is the instruction left just before.
+   */
+  private void formTrees(Block block) {
+    ArrayList<Instruction> blockRoots = new ArrayList<Instruction>();
+    for (Instruction instruction : block.instructions) {
+      inlineOperands(instruction.operands, blockRoots);
+      blockRoots.add(instruction);
+    }
+    inlineOperands(block.operands, blockRoots);
+    roots.put(block, blockRoots);
+  }
+
+  private void inlineOperands(ArrayList<Value> operands, ArrayList<Instruction> blockRoots) {
+    for (int i = operands.size() - 1; i >= 0 && !blockRoots.isEmpty(); i--) {
+      Instruction last = blockRoots.get(blockRoots.size() - 1);
+      if (operands.get(i) == last && uses.get(last) == 1) {
+        blockRoots.remove(blockRoots.size() - 1);
+        inlined.add(last);
+      }
+    }
+  }
+
+  private boolean hasSlot(Value value) {
+    return value instanceof Parameter || (value instanceof Instruction
+        && !inlined.contains(value) && uses.getOrDefault(value, 0) > 0);
+  }
+
+  /**
+   * Adds the values the code for operands loads from slots to reads
+   */
+  private void addReads(List<Value> operands, Collection<Value> reads) {
+    for (Value operand : operands) {
+      if (inlined.contains(operand)) {
+        addReads(((Instruction)operand).operands, reads);
+      } else if (!(operand instanceof Constant)) {
+        reads.add(operand);
+      }
+    }
+  }
+
+  private Value phiOperand(Instruction phi, Block predecessor) {
+    return phi.operands.get(phi.block.predecessors.indexOf(predecessor));
+  }
+
+  /**
+   * @return the values live before the terminator of block: those live
+   * into its successors, the phi operands it passes on, which the copies on
+   * the edges read, and the values the terminator reads
+   */
+  private HashSet<Value> liveBeforeTerminator(Block block, HashMap<Block,HashSet<Value>> liveIn) {
+    HashSet<Value> live = new HashSet<Value>();
+    for (Block successor : block.successors) {
+      live.addAll(liveIn.getOrDefault(successor, new HashSet<Value>()));
+      for (Instruction phi : successor.phis) {
+        Value operand = phiOperand(phi, block);
+        if (!(operand instanceof Constant)) {
+          live.add(operand);
+        }
+      }
+    }
+    addReads(block.operands, live);
+    return live;
+  }
+
+  /**
+   * Walks block back from its end, telling interferences each value
+   * defined and the values live after it
+   * @return the values live at the start of block, not counting its phis
+   */
+  private HashSet<Value> walkBack(Block block, HashSet<Value> live, HashMap<Value,HashSet<Value>> interferences) {
+    ArrayList<Instruction> blockRoots = roots.get(block);
+    for (int i = blockRoots.size() - 1; i >= 0; i--) {
+      Instruction root = blockRoots.get(i);
+      if (interferences != null && hasSlot(root)) {
+        interfere(root, live, interferences);
+      }
+      live.remove(root);
+      addReads(root.operands, live);
+    }
+    live.removeAll(block.phis);
+    if (interferences != null) {
+      for (Instruction phi : block.phis) {
+        interfere(phi, live, interferences);
+        interfere(phi, block.phis, interferences);
+      }
+    }
+    return live;
+  }
+
+  private static void interfere(Value value, Collection<? extends Value> live, HashMap<Value,HashSet<Value>> interferences) {
+    for (Value other : live) {
+      if (other != value) {
+        interferences.computeIfAbsent(value, v -> new HashSet<Value>()).add(other);
+        interferences.computeIfAbsent(other, v -> new HashSet<Value>()).add(value);
+      }
+    }
+  }
+
+  private void allocateSlots(ArrayList<Block> order) {
+    HashMap<Block,HashSet<Value>> liveIn = new HashMap<Block,HashSet<Value>>();
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int i = order.size() - 1; i >= 0; i--) {
+        Block block = order.get(i);
+        HashSet<Value> live = walkBack(block, liveBeforeTerminator(block, liveIn), null);
+        if (!live.equals(liveIn.get(block))) {
+          liveIn.put(block, live);
+          changed = true;
+        }
+      }
+    }
+    HashMap<Value,HashSet<Value>> interferences = new HashMap<Value,HashSet<Value>>();
+    HashMap<Value,ArrayList<Instruction>> phiUsers = new HashMap<Value,ArrayList<Instruction>>();
+    // the values in the order they get their slots: the phis of a block
+    // with an operand that has one already go first, to get its slot before
+    // another phi of the block can take it
+    ArrayList<Value> values = new ArrayList<Value>(function.parameters);
+    HashSet<Value> listed = new HashSet<Value>(values);
+    for (Block block : order) {
+      walkBack(block, liveBeforeTerminator(block, liveIn), interferences);
+      ArrayList<Instruction> laterPhis = new ArrayList<Instruction>();
+      for (Instruction phi : block.phis) {
+        boolean hasSlottedOperand = false;
+        for (Value operand : phi.operands) {
+          phiUsers.computeIfAbsent(operand, v -> new ArrayList<Instruction>()).add(phi);
+          hasSlottedOperand |= listed.contains(operand);
+        }
+        if (hasSlottedOperand) {
+          values.add(phi);
+        } else {
+          laterPhis.add(phi);
+        }
+      }
+      values.addAll(laterPhis);
+      for (Instruction root : roots.get(block)) {
+        if (hasSlot(root)) {
+          values.add(root);
+        }
+      }
+      listed.addAll(block.phis);
+      listed.addAll(roots.get(block));
+    }
+
+    slots = new HashMap<Value,Integer>();
+    slotNames = new ArrayList<String>();
+    for (Parameter parameter : function.parameters) {
+      slots.put(parameter, parameter.index);
+      slotNames.add(parameter.variable);
+    }
+    for (Value value : values.subList(function.parameters.size(), values.size())) {
+      HashSet<Integer> taken = new HashSet<Integer>();
+      for (Value other : interferences.getOrDefault(value, new HashSet<Value>())) {
+        if (slots.containsKey(other)) {
+          taken.add(slots.get(other));
+        }
+      }
+      ArrayList<Value> related = new ArrayList<Value>(phiUsers.getOrDefault(value, new ArrayList<Instruction>()));
+      if (value instanceof Instruction && ((Instruction)value).op == Instruction.Op.PHI) {
+        related.addAll(((Instruction)value).operands);
+      }
+      Integer slot = null;
+      for (Value other : related) {
+        if (slots.containsKey(other) && !taken.contains(slots.get(other))) {
+          slot = slots.get(other);
+          break;
+        }
+      }
+      if (slot == null) {
+        for (slot = 0; taken.contains(slot); slot++) {
+        }
+      }
+      slots.put(value, slot);
+      if (slot == slotNames.size()) {
+        slotNames.add(nameOf(value));
+      }
+    }
+  }
+
+  private static String nameOf(Value value) {
+    if (value instanceof Parameter) {
+      return ((Parameter)value).variable;
+    }
+    String variable = ((Instruction)value).variable;
+    return variable == null ? "temp" : variable;
+  }
+
+  private Code store(Value value) {
+    return new VarOpcode(Codes.ByteCodes.STORE, slots.get(value), nameOf(value));
+  }
+
+  private void emitValue(Value value) {
+    if (value instanceof Constant) {
+      program.storeop(new NumOpcode(Codes.ByteCodes.LIT, ((Constant)value).value));
+    } else if (inlined.contains(value)) {
+      emitTree((Instruction)value);
+    } else {
+      program.storeop(new VarOpcode(Codes.ByteCodes.LOAD, slots.get(value), nameOf(value)));
+    }
+  }
+
+  private void emitValues(List<Value> values) {
+    for (Value value : values) {
+      emitValue(value);
+    }
+  }
+
+  /**
+   * Generates the codes that leave the value of instruction on the stack,
+   * or for a WRITE, write it
+   */
+  private void emitTree(Instruction instruction) {
+    emitValues(instruction.operands);
+    switch (instruction.op) {
+      case BINARY:
+        program.storeop(new LabelOpcode(Codes.ByteCodes.BOP, instruction.operator));
+        break;
+      case CALL:
+        program.storeop(new NumOpcode(Codes.ByteCodes.ARGS, instruction.operands.size()));
+        program.storeop(new LabelOpcode(Codes.ByteCodes.CALL, instruction.callee.label));
+        break;
+      case READ:
+        program.storeop(new Code(Codes.ByteCodes.READ));
+        break;
+      case WRITE:
+        program.storeop(new Code(Codes.ByteCodes.WRITE));
+        break;
+      default:
+        throw new IllegalStateException("phi " + instruction + " in an expression");
+    }
+  }
+
+  /**
+   * @return the phis of successor whose operand from block is not already
+   * in the phi's slot
+   */
+  private ArrayList<Instruction> copiedPhis(Block block, Block successor) {
+    ArrayList<Instruction> copied = new ArrayList<Instruction>();
+    for (Instruction phi : successor.phis) {
+      Value operand = phiOperand(phi, block);
+      if (operand instanceof Constant || !slots.get(operand).equals(slots.get(phi))) {
+        copied.add(phi);
+      }
+    }
+    return copied;
+  }
+
+  /**
+   * Generates the copies for the edge from block to successor and the jump
+   * along it
+   */
+  private void emitEdge(Block block, Block successor) {
+    ArrayList<Instruction> copied = copiedPhis(block, successor);
+    for (Instruction phi : copied) {
+      emitValue(phiOperand(phi, block));
+    }
+    for (int i = copied.size() - 1; i >= 0; i--) {
+      program.storeop(store(copied.get(i)));
+    }
+    program.storeop(new LabelOpcode(Codes.ByteCodes.GOTO, labels.get(successor)));
+  }
+
+  /**
+   * @return the label a branch from block to successor jumps to: the
+   * successor's, or that of a block of its own for the copies, which is
+   * added to edges
+   */
+  private String edgeLabel(Block block, Block successor, LinkedHashMap<String,Block[]> edges) {
+    if (copiedPhis(block, successor).isEmpty()) {
+      return labels.get(successor);
+    }
+    String label = newLabel("edge");
+    edges.put(label, new Block[] { block, successor });
+    return label;
+  }
+
+  private void emitTerminator(Block block, LinkedHashMap<String,Block[]> edges) {
+    emitValues(block.operands);
+    switch (block.kind) {
+      case GOTO:
+        emitEdge(block, block.successors.get(0));
+        break;
+      case BRANCH:
+        program.storeop(new LabelOpcode(Codes.ByteCodes.FALSEBRANCH,
+            edgeLabel(block, block.successors.get(1), edges)));
+        emitEdge(block, block.successors.get(0));
+        break;
+      case SWITCH: {
+        TreeMap<Integer,String> caseLabels = new TreeMap<Integer,String>();
+        for (int i = 0; i < block.caseValues.length; i++) {
+          caseLabels.put(block.caseValues[i], edgeLabel(block, block.successors.get(i), edges));
+        }
+        Block defaultBlock = block.successors.get(block.caseValues.length);
+        program.storeop(new SwitchOpcode(edgeLabel(block, defaultBlock, edges), caseLabels));
+        break;
+      }
+      case RETURN:
+        program.storeop(new LabelOpcode(Codes.ByteCodes.RETURN, function.label));
+        break;
+      case TAILCALL:
+        program.storeop(new NumOpcode(Codes.ByteCodes.ARGS, block.operands.size()));
+        program.storeop(new LabelOpcode(Codes.ByteCodes.TAILCALL, block.callee.label));
+        break;
+      case HALT:
+        program.storeop(new Code(Codes.ByteCodes.HALT));
+        break;
+    }
+  }
+}
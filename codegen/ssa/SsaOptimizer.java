@@ -0,0 +1,101 @@
+package codegen.ssa;
+
+import java.util.*;
+import ast.AST;
+import codegen.Program;
+import constrain.Constrainer;
+
+/**
+ * Generates the codes of a constrained AST through its SSA form, in place
+ * of Codegen: the SsaBuilder builds the form of the main program and each
+ * function, which is optimized by
+ * <ol>
+ * <li>sparse conditional constant propagation,
+ * <li>global value numbering,
+ * <li>loop-invariant code motion and
+ * <li>dead store elimination
+ * </ol>
+ * and lowered to the same bytecodes by SsaLowering.
+ */
+public class SsaOptimizer {
+
+  private AST t;
+  private Constrainer constrainer;
+  private ArrayList<Function> functions;
+  private String unsupportedReason;
+  private int propagatedCount = 0, numberedCount = 0, hoistedCount = 0, removedCount = 0;
+
+  /**
+   * @param t the constrained AST of the program
+   * @param constrainer the Constrainer that decorated it
+   */
+  public SsaOptimizer(AST t, Constrainer constrainer) {
+    this.t = t;
+    this.constrainer = constrainer;
+  }
+
+  /**
+   * @return the generated program, or null if the program uses what the
+   * SSA form cannot express, for which see getUnsupportedReason
+   */
+  public Program execute() {
+    try {
+      functions = new SsaBuilder(constrainer).execute(t);
+    } catch (UnsupportedTreeException e) {
+      unsupportedReason = e.getMessage();
+      return null;
+    }
+    for (Function function : functions) {
+      propagatedCount += new ConditionalConstantPropagation().run(function);
+      numberedCount += new GlobalValueNumbering().run(function);
+      hoistedCount += new LoopInvariantCodeMotion().run(function);
+      removedCount += new DeadStoreElimination().run(function);
+      function.simplifyBlocks();
+    }
+    return new SsaLowering().lower(functions);
+  }
+
+  public String getUnsupportedReason() {
+    return unsupportedReason;
+  }
+
+  /**
+   * @return the number of values replaced by constants and branches on
+   * constants taken out
+   */
+  public int getPropagatedCount() {
+    return propagatedCount;
+  }
+
+  /**
+   * @return the number of instructions replaced by an equal value
+   */
+  public int getNumberedCount() {
+    return numberedCount;
+  }
+
+  /**
+   * @return the number of instructions moved out of loops
+   */
+  public int getHoistedCount() {
+    return hoistedCount;
+  }
+
+  /**
+   * @return the number of unused values removed
+   */
+  public int getRemovedCount() {
+    return removedCount;
+  }
+
+  /**
+   * @return the listing of the optimized SSA form
+   */
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    for (Function function : functions) {
+      text.append(function);
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,16 @@
+package codegen.ssa;
+
+import ast.AST;
+
+/**
+ * Thrown by SsaBuilder for a tree the SSA form has no translation of; the
+ * program is then generated by Codegen instead.
+ */
+class UnsupportedTreeException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  UnsupportedTreeException(AST t, String reason) {
+    super(String.format("%s at node %d", reason, t.getNodeNum()));
+  }
+}
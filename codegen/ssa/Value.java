@@ -0,0 +1,25 @@
+package codegen.ssa;
+
+/**
+ * A value of the SSA form: a Constant, a Parameter of its function or the
+ * result of an Instruction. Each value is defined exactly once, so a value
+ * that is used stands for that one definition wherever it is used.
+ */
+public abstract class Value {
+
+  // numbers the values of a function in the order they are created
+  final int id;
+
+  Value(int id) {
+    this.id = id;
+  }
+
+  /**
+   * @return the name the value is printed with in the SSA listing
+   */
+  abstract String getName();
+
+  public String toString() {
+    return getName();
+  }
+}
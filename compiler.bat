@@ -1,6 +1,6 @@
 @echo off
 IF [%1]==[] (
-  java -cp %cd%\out\production\x-lang compiler.Compiler sample_files\simple.x
+  java -cp %cd%\out\production\x-lang compiler.CompileClient sample_files\simple.x
 )  ELSE  (
-  java -cp %cd%\out\production\x-lang compiler.Compiler %1
+  java -cp %cd%\out\production\x-lang compiler.CompileClient %*
 )
\ No newline at end of file
@@ -0,0 +1,102 @@
+package compiler;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Compiles through a running CompileServer, taking the same arguments as
+ * the Compiler:
+ *   java compiler.CompileClient [-socket path] [-O] [-headless|-debug <option,...>] <file>
+ *   java compiler.CompileClient [-socket path] -stop
+ *
+ * It prints what the server answers and exits with the compilation's
+ * status. When no server is listening the program is compiled in this JVM
+ * instead, so the client can always stand in for the Compiler. A -batch
+ * compilation of a directory is always made in this JVM, which compiles
+ * its files in parallel itself.
+ */
+public class CompileClient {
+
+  /**
+   * @return a connection to the server, or null if none is listening
+   */
+  static SocketChannel connect(Path socketPath) {
+    try {
+      SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+      try {
+        channel.connect(UnixDomainSocketAddress.of(socketPath));
+        return channel;
+      } catch (IOException e) {
+        channel.close();
+        return null;
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the status the server answered with
+   */
+  static int request(SocketChannel connection, String args[]) throws IOException {
+    try (SocketChannel channel = connection) {
+      PrintStream request = new PrintStream(
+          new BufferedOutputStream(Channels.newOutputStream(channel)), false, StandardCharsets.UTF_8);
+      for (String arg : args) {
+        request.println(arg);
+      }
+      request.println();
+      request.flush();
+      BufferedReader answer = new BufferedReader(
+          new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+      String line, last = null;
+      // the last line is the status, so each line is printed once the next is read
+      while ((line = answer.readLine()) != null) {
+        if (last != null) {
+          System.out.println(last);
+        }
+        last = line;
+      }
+      if (last == null || !last.startsWith(CompileServer.EXIT)) {
+        throw new EOFException("the server did not finish its answer");
+      }
+      return Integer.parseInt(last.substring(CompileServer.EXIT.length()));
+    }
+  }
+
+  public static void main(String args[]) throws Exception {
+    Path socketPath = CompileServer.defaultSocketPath();
+    int first = 0;
+    if (args.length >= 2 && args[0].equals("-socket")) {
+      socketPath = Path.of(args[1]);
+      first = 2;
+    }
+    String compilerArgs[] = new String[args.length - first];
+    System.arraycopy(args, first, compilerArgs, 0, compilerArgs.length);
+    int last = compilerArgs.length - 1;
+    if (Arrays.asList(compilerArgs).contains("-batch")) {
+      Compiler.main(compilerArgs);
+      return;
+    }
+    SocketChannel channel = connect(socketPath);
+    if (channel != null) {
+      String requestArgs[] = compilerArgs.clone();
+      // the server resolves the file against its own directory
+      if (last >= 0 && !requestArgs[last].startsWith("-")) {
+        requestArgs[last] = new File(requestArgs[last]).getAbsolutePath();
+      }
+      System.exit(request(channel, requestArgs));
+    }
+    if (last == 0 && compilerArgs[0].equals(CompileServer.STOP)) {
+      System.out.println("*** No compile server is listening on " + socketPath);
+      System.exit(1);
+    }
+    Compiler.main(compilerArgs);
+  }
+}
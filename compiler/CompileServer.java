@@ -0,0 +1,193 @@
+package compiler;
+
+import util.DebugOptions.Options;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A compiler that stays running, so a build compiling many files pays for
+ * starting the JVM and loading the compiler once:
+ *   java compiler.CompileServer [-socket path] [-workers n]
+ *
+ * It listens on a Unix domain socket, by default x-lang-compiler.sock in
+ * the user's $XDG_RUNTIME_DIR, or else in a directory of the user's own,
+ * x-lang-compiler-<user>, in the temporary directory. Only the user may
+ * enter that directory or connect to the socket, so other users can
+ * neither have files written as this user nor stand in for the server. It
+ * hands each connection to a pool of workers. A connection carries one
+ * request: the arguments of a Compiler command line, one per line, ending
+ * with an empty line. The server answers with everything the compilation
+ * printed, its diagnostics and errors, followed by a last line EXIT and
+ * the status: 0 if the program compiled, 1 if it did not and 2 for a bad
+ * command line. The request -stop shuts the server down. The .cod and .xbc
+ * files are written next to the source, as the Compiler does, so the file
+ * should be given as an absolute path; CompileClient sends it that way.
+ * The AST is never rendered for a request, even if asked for: the server
+ * has no business opening windows on its own desktop for a client.
+ *
+ * The workers compile side by side, each printing only into its own
+ * answer, see Compiler.compileProgram.
+ */
+public class CompileServer {
+
+  public static final String EXIT = "EXIT ";
+  public static final String STOP = "-stop";
+
+  // whether files have owner, group and other permissions, as not on Windows
+  private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+  private final Path socketPath;
+  private final ExecutorService workers;
+  private ServerSocketChannel server;
+
+  public CompileServer(Path socketPath, int workerCount) {
+    this.socketPath = socketPath;
+    workers = Executors.newFixedThreadPool(workerCount);
+  }
+
+  /**
+   * @return the socket the server listens on unless told otherwise
+   */
+  public static Path defaultSocketPath() {
+    String runtimeDirectory = System.getenv("XDG_RUNTIME_DIR");
+    Path directory = runtimeDirectory != null && !runtimeDirectory.isEmpty() ? Path.of(runtimeDirectory)
+        : Path.of(System.getProperty("java.io.tmpdir"), "x-lang-compiler-" + System.getProperty("user.name"));
+    return directory.resolve("x-lang-compiler.sock");
+  }
+
+  /**
+   * Makes the directory of the socket, open to its owner only, if it does
+   * not exist. The default directory must belong to the user and be closed
+   * to everyone else, as whoever can write to it can replace the socket.
+   * Windows keeps the temporary directory per user anyway.
+   */
+  private void prepareDirectory() throws IOException {
+    Path directory = socketPath.toAbsolutePath().getParent();
+    if (!POSIX) {
+      Files.createDirectories(directory);
+      return;
+    }
+    if (Files.notExists(directory)) {
+      Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+    } else if (directory.equals(defaultSocketPath().getParent())
+        && (!Files.getOwner(directory).getName().equals(System.getProperty("user.name"))
+            || !PosixFilePermissions.toString(Files.getPosixFilePermissions(directory)).endsWith("------"))) {
+      throw new IOException(directory + " must belong to " + System.getProperty("user.name")
+          + " and be closed to other users");
+    }
+  }
+
+  /**
+   * Accepts requests until one asks the server to stop
+   */
+  public void run() throws IOException {
+    prepareDirectory();
+    // a socket file left by a server that did not stop
+    Files.deleteIfExists(socketPath);
+    server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    server.bind(UnixDomainSocketAddress.of(socketPath));
+    // connecting takes write permission on the socket file
+    if (POSIX) {
+      Files.setPosixFilePermissions(socketPath, PosixFilePermissions.fromString("rw-------"));
+    }
+    System.err.println("Compile server listening on " + socketPath);
+    try {
+      while (true) {
+        SocketChannel connection = server.accept();
+        workers.execute(() -> serve(connection));
+      }
+    } catch (AsynchronousCloseException e) {
+      /* stopped */
+    } finally {
+      workers.shutdown();
+      try {
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      Files.deleteIfExists(socketPath);
+    }
+  }
+
+  private void serve(SocketChannel connection) {
+    try (SocketChannel channel = connection;
+         BufferedReader request = new BufferedReader(
+             new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+         PrintStream answer = new PrintStream(
+             new BufferedOutputStream(Channels.newOutputStream(channel)), false, StandardCharsets.UTF_8)) {
+      ArrayList<String> args = new ArrayList<String>();
+      String line;
+      while ((line = request.readLine()) != null && !line.isEmpty()) {
+        args.add(line);
+      }
+      answer.println(EXIT + compile(args.toArray(new String[0]), answer));
+      answer.flush();
+    } catch (IOException e) {
+      System.err.println("*** Request failed: " + e);
+    }
+  }
+
+  /**
+   * @return the status to answer with
+   */
+  private int compile(String args[], PrintStream answer) throws IOException {
+    if (args.length == 1 && args[0].equals(STOP)) {
+      server.close();
+      return 0;
+    }
+    Compiler compiler = Compiler.fromArguments(args);
+    if (compiler == null) {
+      answer.println("***Incorrect usage, try: [-O] [-headless|-debug <option,...>] <file>");
+      return 2;
+    }
+    compiler.setDebugOptions(compiler.debugOptions.without(Options.RENDER));
+    try {
+      return compiler.compileProgram(answer) ? 0 : 1;
+    } catch (RuntimeException e) {
+      // a failure of the compiler itself must not stop the server
+      answer.println("*** " + e);
+      return 1;
+    }
+  }
+
+  public static void main(String args[]) throws IOException {
+    Path socketPath = defaultSocketPath();
+    int workerCount = Runtime.getRuntime().availableProcessors();
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "-socket":
+            socketPath = Path.of(args[++i]);
+            break;
+          case "-workers":
+            workerCount = Integer.parseInt(args[++i]);
+            break;
+          default:
+            throw new IllegalArgumentException();
+        }
+      }
+      if (workerCount < 1) {
+        throw new IllegalArgumentException();
+      }
+    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+      System.out.println("***Incorrect usage, try: java compiler.CompileServer [-socket path] [-workers n]");
+      System.exit(1);
+    }
+    new CompileServer(socketPath, workerCount).run();
+  }
+}
@@ -4,17 +4,26 @@ import ast.*;
 import lexer.LexicalException;
 import parser.Parser;
 import parser.SyntaxException;
+import util.BinaryCodeFile;
 import util.DebugOptions;
 import util.DebugOptions.Options;
+import constrain.ConstraintException;
 import constrain.Constrainer;
 import codegen.*;
+import codegen.ssa.SsaOptimizer;
 import visitor.*;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * The Compiler class contains the main program for compiling a source program
@@ -26,63 +35,278 @@ public class Compiler {
    * The Compiler class reads and compiles a source program
    */
 
+  /**
+   * The diagnostics compileProgram produces unless told otherwise: all of
+   * them except the tokens
+   */
+  public static final DebugOptions ALL_DIAGNOSTICS = new DebugOptions( Options.SOURCECODE, Options.AST,
+      Options.RENDER, Options.DECORATED_AST, Options.OPTIMIZATIONS, Options.CODEGEN_AST, Options.INTRINSICS,
+      Options.BYTECODE );
+
   String sourceFile;
+  boolean optimize = false;
+  DebugOptions debugOptions = ALL_DIAGNOSTICS;
 
   public Compiler(String sourceFile) {
     this.sourceFile = sourceFile;
   }
 
-  void compileProgram() {
+  /**
+   * @param value whether to simplify the constrained AST with the
+   * InliningVisitor and ConstantFoldingVisitor, generate the codes through
+   * the optimized SSA form of the SsaOptimizer, or with tail calls by
+   * Codegen where the SSA form does not support the program, run the
+   * PeepholeOptimizer over them and remove the unreachable ones with the
+   * DeadCodeEliminator
+   */
+  public void setOptimize(boolean value) {
+    optimize = value;
+  }
+
+  /**
+   * @param debugOptions the diagnostics to produce along the way; with none
+   * the compiler only lexes, parses, constrains, generates and writes the
+   * codes, and never touches the display
+   */
+  public void setDebugOptions(DebugOptions debugOptions) {
+    this.debugOptions = debugOptions;
+  }
+
+  /**
+   * @return whether the program compiled; the errors are printed
+   */
+  boolean compileProgram() {
     try {
-      Parser parser = new Parser(sourceFile, new DebugOptions( Options.SOURCECODE, Options.AST ) );
+      Parser parser = new Parser(sourceFile, debugOptions);
       AST t = parser.execute();
-      //System.out.println("---------------AST-------------");
       PrintVisitor pv = new PrintVisitor();
-      //t.accept(pv);
-
-      CountVisitor countVisitor = new CountVisitor();
-      OffsetVisitor offsetVisitor = new OffsetVisitor();
-      countVisitor.visitProgramTree( t );
-      int[] treeDepthCount = countVisitor.getCount();
-      offsetVisitor.visitProgramTree( t );
-      DrawOffsetVisitor drawOffsetVisitor = new DrawOffsetVisitor( treeDepthCount, offsetVisitor.getOffsetHashMap() );
-      drawOffsetVisitor.visitProgramTree( t );
-      String name = String.format( "%s_ASTRender.png", sourceFile.substring( sourceFile.indexOf('\\') + 1 ) );
-      File renderFile = new File( name );
-      ImageIO.write( drawOffsetVisitor.getImage(), "png", renderFile );
-      Desktop.getDesktop().open( renderFile );
+      if (debugOptions.contains(Options.RENDER)) {
+        renderTree(t);
+      }
 
       /* COMMENT CODE FROM HERE UNTIL THE CATCH CLAUSE WHEN TESTING PARSER */
       Constrainer con = new Constrainer(t, parser);
       con.execute();
-      System.out.println("---------------DECORATED AST-------------");
-      t.accept(pv);
+      if (debugOptions.contains(Options.DECORATED_AST)) {
+        System.out.println("---------------DECORATED AST-------------");
+        t.accept(pv);
+      }
+      boolean report = debugOptions.contains(Options.OPTIMIZATIONS);
+      if (optimize) {
+        InliningVisitor inliner = new InliningVisitor();
+        t.accept(inliner);
+        ConstantFoldingVisitor folder = new ConstantFoldingVisitor();
+        t.accept(folder);
+        if (report) {
+          System.out.println(String.format("Inlining replaced %d calls", inliner.getInlinedCount()));
+          System.out.println(String.format("Constant folding simplified %d trees", folder.getSimplifiedCount()));
+        }
+      }
       /* COMMENT CODE FROM HERE UNTIL THE CATCH CLAUSE WHEN TESTING CONSTRAINER */
-      Codegen generator = new Codegen(t);
-      Program program = generator.execute();
-      System.out.println("---------------AST AFTER CODEGEN-------------");
-      t.accept(pv);
-      System.out.println("---------------INTRINSIC TREES-------------");
-      System.out.println("---------------READ/WRITE TREES-------------");
-      Constrainer.readTree.accept(pv);
-      Constrainer.writeTree.accept(pv);
-      System.out.println("---------------INT/BOOL TREES-------------");
-      Constrainer.intTree.accept(pv);
-      Constrainer.boolTree.accept(pv);
-      System.out.println();
-      System.out.println("---------------BYTE CODE-------------");
-      program.printCodes(sourceFile + ".cod");
+      Program program = null;
+      if (optimize) {
+        SsaOptimizer ssa = new SsaOptimizer(t, con);
+        program = ssa.execute();
+        if (program != null && report) {
+          System.out.println("---------------SSA-------------");
+          System.out.print(ssa);
+          System.out.println(String.format("Constant propagation simplified %d values, " +
+              "value numbering replaced %d, code motion hoisted %d and dead store elimination removed %d",
+              ssa.getPropagatedCount(), ssa.getNumberedCount(), ssa.getHoistedCount(), ssa.getRemovedCount()));
+        } else if (program == null && report) {
+          System.out.println(String.format("The SSA form does not support %s, using Codegen",
+              ssa.getUnsupportedReason()));
+        }
+      }
+      if (program == null) {
+        Codegen generator = new Codegen(t, con);
+        generator.setEliminateTailCalls(optimize);
+        program = generator.execute();
+      }
+      if (optimize) {
+        int peepholeRemoved = new PeepholeOptimizer().optimize(program);
+        int deadRemoved = new DeadCodeEliminator().eliminate(program);
+        if (report) {
+          System.out.println(String.format("Peephole optimizer removed %d instructions", peepholeRemoved));
+          System.out.println(String.format("Dead code elimination removed %d instructions", deadRemoved));
+        }
+      }
+      if (debugOptions.contains(Options.CODEGEN_AST)) {
+        System.out.println("---------------AST AFTER CODEGEN-------------");
+        t.accept(pv);
+      }
+      if (debugOptions.contains(Options.INTRINSICS)) {
+        System.out.println("---------------INTRINSIC TREES-------------");
+        System.out.println("---------------READ/WRITE TREES-------------");
+        con.getReadTree().accept(pv);
+        con.getWriteTree().accept(pv);
+        System.out.println("---------------INT/BOOL TREES-------------");
+        con.getIntTree().accept(pv);
+        con.getBoolTree().accept(pv);
+        System.out.println();
+      }
+      boolean echo = debugOptions.contains(Options.BYTECODE);
+      if (echo) {
+        System.out.println("---------------BYTE CODE-------------");
+      }
+      program.printCodes(sourceFile + ".cod", echo);
       // if the source file is "abc" print bytecodes to abc.cod
+      program.writeBinaryCodes(sourceFile + BinaryCodeFile.EXTENSION);
+      // and write their binary form to abc.xbc
+      return true;
       } catch ( IOException | LexicalException | SyntaxException e ) {
         System.out.println( e );
-      };
+      } catch ( ConstraintException e ) {
+        /* the Constrainer has printed the error */
+      }
+      return false;
+  }
+
+  /**
+   * Compiles the program with everything the compilation prints going to
+   * out, for CompileServer and compileDirectory. Each compilation keeps its
+   * state to itself and what it prints on System.out goes to the out of its
+   * thread, see ThreadOutput, so compilations made this way run side by side.
+   * @return whether the program compiled
+   */
+  public boolean compileProgram(PrintStream out) {
+    ThreadOutput output = ThreadOutput.install();
+    output.setTarget(out);
+    try {
+      return compileProgram();
+    } finally {
+      System.out.flush();
+      output.setTarget(null);
+    }
+  }
+
+  /**
+   * Compiles every .x file of the directory named as the source file, set
+   * up as this compiler is, on a ForkJoinPool with a worker per processor.
+   * What each compilation prints is kept apart and printed under the name
+   * of its file, in the order of the names, as soon as the files before it
+   * are done.
+   * @return the number of programs that did not compile
+   */
+  int compileDirectory() {
+    File files[] = new File(sourceFile).listFiles((directory, name) -> name.endsWith(".x"));
+    if (files == null) {
+      System.out.println("*** " + sourceFile + " is not a directory");
+      return 1;
+    }
+    Arrays.sort(files);
+    long start = System.currentTimeMillis();
+    ForkJoinPool pool = new ForkJoinPool();
+    ByteArrayOutputStream outputs[] = new ByteArrayOutputStream[files.length];
+    ArrayList<ForkJoinTask<Boolean>> compilations = new ArrayList<ForkJoinTask<Boolean>>();
+    for (int i = 0; i < files.length; i++) {
+      Compiler compiler = new Compiler(files[i].getPath());
+      compiler.setOptimize(optimize);
+      compiler.setDebugOptions(debugOptions);
+      ByteArrayOutputStream buffer = outputs[i] = new ByteArrayOutputStream();
+      compilations.add(pool.submit(() -> {
+        PrintStream out = new PrintStream(buffer, true);
+        try {
+          return compiler.compileProgram(out);
+        } catch (RuntimeException e) {
+          // a failure of the compiler itself must not stop the others
+          out.println("*** " + e);
+          return false;
+        }
+      }));
+    }
+    int failed = 0;
+    for (int i = 0; i < files.length; i++) {
+      boolean compiled = compilations.get(i).join();
+      System.out.println(String.format("---------------%s: %s-------------",
+          files[i].getName(), compiled ? "compiled" : "failed"));
+      System.out.print(outputs[i].toString());
+      failed += compiled ? 0 : 1;
+    }
+    pool.shutdown();
+    System.out.println(String.format("Compiled %d of %d programs in %d ms",
+        files.length - failed, files.length, System.currentTimeMillis() - start));
+    return failed;
+  }
+
+  /**
+   * Draws the tree into <source file name>_ASTRender.png in the working
+   * directory and opens it where there is a desktop to open it on
+   */
+  private void renderTree(AST t) throws IOException {
+    CountVisitor countVisitor = new CountVisitor();
+    OffsetVisitor offsetVisitor = new OffsetVisitor();
+    countVisitor.visitProgramTree( t );
+    int[] treeDepthCount = countVisitor.getCount();
+    offsetVisitor.visitProgramTree( t );
+    DrawOffsetVisitor drawOffsetVisitor = new DrawOffsetVisitor( treeDepthCount, offsetVisitor.getOffsetHashMap() );
+    drawOffsetVisitor.visitProgramTree( t );
+    String name = String.format( "%s_ASTRender.png", new File( sourceFile ).getName() );
+    File renderFile = new File( name );
+    ImageIO.write( drawOffsetVisitor.getImage(), "png", renderFile );
+    if (!GraphicsEnvironment.isHeadless() && Desktop.isDesktopSupported()) {
+      Desktop.getDesktop().open( renderFile );
+    }
   }
 
+  /**
+   * @param args the command line of the compiler
+   * @return a compiler set up as args ask, or null if they are not
+   * [-O] [-headless|-debug <option,...>] <file>
+   */
+  public static Compiler fromArguments(String args[]) {
+    boolean optimize = false;
+    DebugOptions debugOptions = ALL_DIAGNOSTICS;
+    try {
+      for (int i = 0; i < args.length - 1; i++) {
+        switch (args[i]) {
+          // -O simplifies the AST and optimizes the generated codes
+          case "-O":
+            optimize = true;
+            break;
+          // -headless produces nothing but the codes
+          case "-headless":
+            debugOptions = new DebugOptions();
+            break;
+          // -debug produces only the diagnostics listed, see DebugOptions
+          case "-debug":
+            if (++i == args.length - 1) {
+              return null;
+            }
+            debugOptions = DebugOptions.parse(args[i]);
+            break;
+          default:
+            return null;
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    if (args.length == 0 || args[args.length - 1].startsWith("-")) {
+      return null;
+    }
+    Compiler compiler = new Compiler(args[args.length - 1]);
+    compiler.setOptimize(optimize);
+    compiler.setDebugOptions(debugOptions);
+    return compiler;
+  }
+
+  /**
+   * java compiler.Compiler [-O] [-headless|-debug <option,...>] <file>
+   * compiles the file; with -batch in the options it compiles every .x file
+   * of the directory given in its place, see compileDirectory
+   */
   public static void main(String args[]) throws Exception {
-    if (args.length == 0) {
-      System.out.println("***Incorrect usage, try: java compiler.Compiler <file>");
+    ArrayList<String> compilerArgs = new ArrayList<String>(Arrays.asList(args));
+    boolean batch = compilerArgs.remove("-batch");
+    Compiler compiler = fromArguments(compilerArgs.toArray(new String[0]));
+    if (compiler == null) {
+      System.out.println("***Incorrect usage, try: java compiler.Compiler [-batch] [-O] [-headless|-debug <option,...>] " +
+          "<file or directory>");
+      System.exit(1);
+    }
+    if (batch ? compiler.compileDirectory() > 0 : !compiler.compileProgram()) {
       System.exit(1);
     }
-    (new Compiler(args[0])).compileProgram();
   }
 }
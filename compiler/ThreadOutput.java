@@ -0,0 +1,68 @@
+package compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * The stream under System.out while compilations print into streams of
+ * their own: what a thread prints goes to the stream it set as its target,
+ * or to the console System.out was before, if it set none. The compiler
+ * prints its diagnostics and errors on System.out, so this keeps apart
+ * what compilations running side by side print.
+ */
+class ThreadOutput extends OutputStream {
+
+  private static ThreadOutput installed;
+
+  private final OutputStream console;
+  private final ThreadLocal<OutputStream> targets = new ThreadLocal<OutputStream>();
+
+  private ThreadOutput(OutputStream console) {
+    this.console = console;
+  }
+
+  /**
+   * @return the stream under System.out, which replaces System.out the
+   * first time
+   */
+  static synchronized ThreadOutput install() {
+    if (installed == null) {
+      installed = new ThreadOutput(System.out);
+      System.setOut(new PrintStream(installed, true));
+    }
+    return installed;
+  }
+
+  /**
+   * @param target where what the current thread prints goes, or null for
+   * the console
+   */
+  void setTarget(OutputStream target) {
+    if (target == null) {
+      targets.remove();
+    } else {
+      targets.set(target);
+    }
+  }
+
+  private OutputStream target() {
+    OutputStream target = targets.get();
+    return target == null ? console : target;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    target().write(b);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    target().write(bytes, offset, length);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    target().flush();
+  }
+}
@@ -0,0 +1,2 @@
+@echo off
+java -cp %cd%\out\production\x-lang compiler.CompileServer %*
\ No newline at end of file
@@ -40,9 +40,10 @@ public class Constrainer extends ASTVisitor {
    * readTree, writeTree, intTree, boolTree,falseTree, trueTree are AST's that
    * will be constructed (intrinsic trees) for every program. They are constructed
    * in the same fashion as source program trees to ensure consisten processing of
-   * functions, etc.
+   * functions, etc. Each constrainer builds its own, so programs can be
+   * constrained on several threads at once.
    */
-  public static AST readTree, writeTree, intTree, boolTree, charTree, stringTree, falseTree, trueTree, readId, writeId;
+  private AST readTree, writeTree, intTree, boolTree, charTree, stringTree, falseTree, trueTree, readId, writeId;
 
   public Constrainer(AST t, Parser parser) {
     this.t = t;
@@ -54,6 +55,29 @@ public class Constrainer extends ASTVisitor {
     t.accept(this);
   }
 
+  /**
+   * @return the declaration of the intrinsic read function, which calls to
+   * read are decorated with
+   */
+  public AST getReadTree() {
+    return readTree;
+  }
+
+  /**
+   * @return the declaration of the intrinsic write function
+   */
+  public AST getWriteTree() {
+    return writeTree;
+  }
+
+  public AST getIntTree() {
+    return intTree;
+  }
+
+  public AST getBoolTree() {
+    return boolTree;
+  }
+
   /**
    * t is an IdTree; retrieve the pointer to its declaration
    */
@@ -329,7 +353,6 @@ public class Constrainer extends ASTVisitor {
 
   @Override
   public Object visitSwitchStatementTree(AST t) {
-    System.out.println( "visitSwitchStatementTree" );
     AST idType = lookup( t.getChild(0) ).getChild(1).getDecoration().getChild(0);
     if( idType!= intTree.getChild(0) ) {
       constraintError( ConstrainerErrors.ActualFormalTypeMismatch, t );
@@ -344,7 +367,6 @@ public class Constrainer extends ASTVisitor {
 
   @Override
   public Object visitSwitchBlockTree(AST t) {
-    System.out.println( "visitSwitchBlockTree" );
     ArrayList<AST> caseStatements = t.getChildren();
     for ( AST child : caseStatements ) {
       decorate( child, t.getDecoration() );
@@ -355,7 +377,6 @@ public class Constrainer extends ASTVisitor {
 
   @Override
   public Object visitCaseStatementTree(AST t) {
-    System.out.println( "visitCaseStatementTree" );
     AST switcherandDeclaration = lookup( t.getDecoration() ).getChild(0);
     Class expectedLiteralType = getLiteralTypeFromType( switcherandDeclaration );
     Class literalType = t.getChild(0).getClass();
@@ -369,7 +390,6 @@ public class Constrainer extends ASTVisitor {
 
   @Override
   public Object visitDefaultStatementTree(AST t) {
-    System.out.println( "visitDefaultStatementTree" );
     AST block = t.getChild( 0 );
     block.accept( this );
     return null;
@@ -499,8 +519,7 @@ public class Constrainer extends ASTVisitor {
     PrintVisitor v1 = new PrintVisitor();
     System.out.println( "****CONSTRAINER ERROR: " + err + "   ****" );
     tree.accept( v1 );
-    System.exit(1);
-    return;
+    throw new ConstraintException( err );
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package constrain;
+
+/**
+ * Thrown by the Constrainer at the first constraint error, once it has
+ * printed the error and the offending tree; unchecked, as the visit methods
+ * cannot declare it
+ */
+public class ConstraintException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public ConstraintException( Constrainer.ConstrainerErrors error ) {
+    super( "CONSTRAINER ERROR: " + error );
+  }
+
+}
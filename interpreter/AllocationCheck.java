@@ -0,0 +1,131 @@
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Checks that the allocation-free mode allocates nothing, by default on the
+ * .cod files in sample_files:
+ *   java interpreter.AllocationCheck [-n runs] [-input value] [-reads count] [file|directory]...
+ *
+ * Each program is first run once in VirtualMachine with CodeTable's codes.
+ * It is then loaded with AllocationFreeCodeTable, fused and run in
+ * SwitchVirtualMachine as often as runs, to warm up, and then once more
+ * while the thread's allocated bytes are counted. Every READ is given value
+ * and a run ends after count reads, as in Benchmark. Only executeProgram is
+ * counted: making the engine and its stack is not execution. DUMP codes
+ * are ignored, as in Benchmark. A program fails if the counted run allocated
+ * anything or a run in the allocation-free mode ended in an exception other
+ * than running out of input; programs that are not int-only or that crash
+ * in VirtualMachine as well are skipped. The exit status is the number of
+ * programs that failed.
+ */
+public class AllocationCheck extends ProgramHarness {
+
+  private static final Function<String,Supplier<ByteCode>> CODES = harnessCodes( AllocationFreeCodeTable::get );
+  private static final Function<String,Supplier<ByteCode>> STANDARD_CODES = harnessCodes( CodeTable::get );
+
+  private final com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  /**
+   * Runs the program once in a new engine.
+   * @return the bytes allocated while it executed
+   */
+  private long run( Program program ) {
+    VirtualMachine vm = new SwitchVirtualMachine( program );
+    inputNumbers.rewind();
+    long start = threads.getCurrentThreadAllocatedBytes();
+    try {
+      vm.executeProgram();
+    } catch ( InputExhaustedException e ) {
+      /* the run ends after its last number */
+    }
+    return threads.getCurrentThreadAllocatedBytes() - start;
+  }
+
+  /**
+   * Runs the program once in VirtualMachine, loaded with CodeTable's codes.
+   * @return the exception it crashed with, or null if it ran to its end
+   */
+  private RuntimeException runStandard( Program program ) {
+    VirtualMachine vm = new VirtualMachine( program );
+    inputNumbers.rewind();
+    try {
+      vm.executeProgram();
+    } catch ( InputExhaustedException e ) {
+      /* the run ends after its last number */
+    } catch ( RuntimeException e ) {
+      return e;
+    }
+    return null;
+  }
+
+  /**
+   * @return whether the program passed or was skipped
+   */
+  private boolean check( String file ) {
+    Program program, standardProgram;
+    try {
+      program = new ByteCodeLoader( file, CODES ).loadCodes();
+      AllocationFreeCodeTable.verify( program );
+      standardProgram = new ByteCodeLoader( file, STANDARD_CODES ).loadCodes();
+    } catch ( IOException | UnsupportedCodeException e ) {
+      REPORT.printf( "%-36s skipped: %s%n", file, e.getMessage() );
+      return true;
+    }
+    new SuperinstructionFuser().fuse( program );
+    System.setIn( inputNumbers );
+    System.setOut( new PrintStream( OutputStream.nullOutputStream() ) );
+    long allocated, overhead;
+    try {
+      // a program that crashes without the allocation-free mode says nothing about it
+      RuntimeException crash = runStandard( standardProgram );
+      if( crash != null ) {
+        REPORT.printf( "%-36s skipped: crashes in VirtualMachine: %s%n", file, crash );
+        return true;
+      }
+      for( int i = 0; i < runs; i++ ) {
+        run( program );
+      }
+      // what counting itself allocates
+      long start = threads.getCurrentThreadAllocatedBytes();
+      overhead = threads.getCurrentThreadAllocatedBytes() - start;
+      allocated = run( program ) - overhead;
+    } catch ( RuntimeException e ) {
+      REPORT.printf( "%-36s FAILED: %s%n", file, e );
+      return false;
+    } finally {
+      System.setOut( REPORT );
+      System.setIn( KEYBOARD );
+    }
+    REPORT.printf( "%-36s %10d %s%n", file, allocated, allocated > 0 ? "FAILED" : "ok" );
+    return allocated <= 0;
+  }
+
+  public static void main( String args[] ) {
+    AllocationCheck check = new AllocationCheck();
+    ArrayList<String> files = check.parseArguments( args, "interpreter.AllocationCheck" );
+    if( !check.threads.isThreadAllocatedMemorySupported() ) {
+      System.out.println( "*** This JVM cannot count the bytes a thread allocates" );
+      System.exit(1);
+    }
+    check.threads.setThreadAllocatedMemoryEnabled( true );
+    System.out.printf( "%-36s %10s%n", "program", "allocated" );
+    int failed = 0;
+    for( String file : files ) {
+      if( !check.check( file ) ) {
+        failed++;
+      }
+    }
+    System.exit( failed );
+  }
+
+}
@@ -0,0 +1,59 @@
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.Dump;
+import interpreter.bytecode.Lit;
+import interpreter.bytecode.Write;
+
+import java.util.function.Supplier;
+
+/**
+ * The codes of the allocation-free mode, java interpreter.Interpreter -a:
+ * CodeTable's codes, except that WRITE formats an int into the OutputSink
+ * without making a String; READ already parses its number in the buffer of
+ * the InputSource. Together with the flat loop of SwitchVirtualMachine,
+ * whose stack, frames and return addresses are all int arrays, a program
+ * then allocates nothing once its stack has grown to its deepest, provided
+ * it only ever handles ints, which verify checks. AllocationCheck measures
+ * that it does not.
+ */
+public class AllocationFreeCodeTable {
+
+  /**
+   * WRITE that formats an int straight into the VM's output buffer.
+   */
+  static class IntWrite extends Write {
+
+    @Override
+    public void execute( VirtualMachine vm ) {
+      vm.writeOutput( vm.popIntStack() );
+    }
+
+  }
+
+  public static Supplier<ByteCode> get( String code ) {
+    switch( code ) {
+      case "WRITE":
+        return IntWrite::new;
+      default:
+        return CodeTable.get( code );
+    }
+  }
+
+  /**
+   * Checks that the program only handles ints and never dumps, as the
+   * codes that push a String or Character and the dump output allocate.
+   */
+  static void verify( Program program ) throws UnsupportedCodeException {
+    for( int pc = 0; pc < program.size(); pc++ ) {
+      ByteCode code = program.getCode( pc );
+      if( code instanceof Lit && code.getOpcode() != FlatProgram.LIT ) {
+        throw new UnsupportedCodeException( pc, "a string or char literal is not an int" );
+      }
+      if( code instanceof Dump && code.getOperand() != 0 ) {
+        throw new UnsupportedCodeException( pc, "dumping allocates" );
+      }
+    }
+  }
+
+}
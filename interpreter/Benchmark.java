@@ -0,0 +1,104 @@
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Times VirtualMachine, SwitchVirtualMachine, SwitchVirtualMachine on the
+ * codes fused by SuperinstructionFuser and RegisterVirtualMachine on the
+ * same programs, by default the .cod files in sample_files:
+ *   java interpreter.Benchmark [-n runs] [-input value] [-reads count] [file|directory]...
+ *
+ * Every READ of a run is given value; a program that reads more than count
+ * numbers, such as factorial's endless loop, ends its run there. The output
+ * of each engine is checked against VirtualMachine's and otherwise thrown
+ * away, HALT only stops the engine rather than the benchmark, and DUMP codes
+ * are ignored as dumping is not what is measured. Programs the
+ * RegisterCompiler cannot lower are skipped.
+ */
+public class Benchmark extends ProgramHarness {
+
+  private static final Function<String,Supplier<ByteCode>> CODES = harnessCodes( CodeTable::get );
+
+  /**
+   * Runs the program once with the benchmark's input, returning what it
+   * wrote if keepOutput is set.
+   */
+  private String run( Runnable program, boolean keepOutput ) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    inputNumbers.rewind();
+    System.setIn( inputNumbers );
+    System.setOut( new PrintStream( keepOutput ? output : OutputStream.nullOutputStream() ) );
+    try {
+      program.run();
+    } catch ( InputExhaustedException e ) {
+      /* the run ends after its last number */
+    } finally {
+      System.setOut( REPORT );
+      System.setIn( KEYBOARD );
+    }
+    return output.toString();
+  }
+
+  /**
+   * @return the average time of a run in milliseconds, after as many runs
+   * to warm up
+   */
+  private double time( Runnable program ) {
+    for( int i = 0; i < runs; i++ ) {
+      run( program, false );
+    }
+    long start = System.nanoTime();
+    for( int i = 0; i < runs; i++ ) {
+      run( program, false );
+    }
+    return ( System.nanoTime() - start ) / 1e6 / runs;
+  }
+
+  private void benchmark( String file ) {
+    Program program, fusedProgram;
+    RegisterProgram registerProgram;
+    try {
+      program = new ByteCodeLoader( file, CODES ).loadCodes();
+      registerProgram = RegisterCompiler.lower( new FlatProgram( program ) );
+      fusedProgram = new ByteCodeLoader( file, CODES ).loadCodes();
+      new SuperinstructionFuser().fuse( fusedProgram );
+    } catch ( IOException | UnsupportedCodeException e ) {
+      REPORT.printf( "%-36s skipped: %s%n", file, e.getMessage() );
+      return;
+    }
+    Runnable stack = () -> new VirtualMachine( program ).executeProgram();
+    Runnable switchDispatch = () -> new SwitchVirtualMachine( program ).executeProgram();
+    Runnable fused = () -> new SwitchVirtualMachine( fusedProgram ).executeProgram();
+    Runnable registers = () -> new RegisterVirtualMachine( registerProgram ).executeProgram();
+    String expected = run( stack, true );
+    if( !run( switchDispatch, true ).equals( expected ) || !run( fused, true ).equals( expected )
+        || !run( registers, true ).equals( expected ) ) {
+      REPORT.printf( "%-36s skipped: the engines' outputs differ%n", file );
+      return;
+    }
+    double stackTime = time( stack ), switchTime = time( switchDispatch ), fusedTime = time( fused ),
+        registerTime = time( registers );
+    REPORT.printf( "%-36s %6d %6d %6d %10.3f %10.3f %10.3f %10.3f %8.2fx%n", file, program.size(),
+        fusedProgram.size(), registerProgram.size(), stackTime, switchTime, fusedTime, registerTime,
+        switchTime / registerTime );
+  }
+
+  public static void main( String args[] ) {
+    Benchmark benchmark = new Benchmark();
+    ArrayList<String> files = benchmark.parseArguments( args, "interpreter.Benchmark" );
+    System.out.printf( "%-36s %6s %6s %6s %10s %10s %10s %10s %9s%n", "program", "codes", "fused", "instrs",
+        "stack ms", "switch ms", "fused ms", "reg ms", "speedup" );
+    for( String file : files ) {
+      benchmark.benchmark( file );
+    }
+  }
+
+}
@@ -1,57 +1,124 @@
 package interpreter;
 
 import interpreter.bytecode.ByteCode;
-import interpreter.debugger.DebuggerCodeTable;
+import util.BinaryCodeFile;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class ByteCodeLoader {
 
-  FileReader fileReader;
-  BufferedReader codeReader;
+  Path byteCodeFile;
+  Function<String,Supplier<ByteCode>> codeTable;
 
   public ByteCodeLoader( String byteCodeFile ) throws IOException {
-    fileReader = new FileReader( byteCodeFile );
-    codeReader = new BufferedReader( fileReader );
+    this( byteCodeFile, CodeTable::get );
   }
 
+  /**
+   * @param codeTable maps each code name to the factory for its ByteCode,
+   *                  e.g. DebuggerCodeTable::get for the debugger's codes
+   */
+  public ByteCodeLoader( String byteCodeFile, Function<String,Supplier<ByteCode>> codeTable ) throws IOException {
+    this.byteCodeFile = Paths.get( byteCodeFile );
+    this.codeTable = codeTable;
+    if( !this.byteCodeFile.toFile().isFile() ) {
+      throw new NoSuchFileException( byteCodeFile );
+    }
+  }
+
+  /**
+   * Loads a text .cod file, or a binary file written by util.BinaryCodeFile,
+   * which is recognised by its magic number.
+   */
   public Program loadCodes() throws IOException {
+    Program program;
+    try( FileChannel channel = FileChannel.open( byteCodeFile, StandardOpenOption.READ ) ) {
+      ByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+      if( BinaryCodeFile.isBinary( buffer ) ) {
+        program = loadBinaryCodes( buffer );
+      } else {
+        program = loadTextCodes();
+      }
+    }
+    program.resolveAddresses();
+    return program;
+  }
+
+  private Program loadTextCodes() throws IOException {
     Program program = new Program();
     String codeLine;
     StringTokenizer tokenizer;
-    while( ( codeLine = codeReader.readLine() ) != null ) {
-      tokenizer = new StringTokenizer( codeLine );
-      ByteCode code;
-      Vector<String> args = new Vector<>();
-      if( tokenizer.hasMoreTokens() ) {
-        String codeString = tokenizer.nextToken().toUpperCase();
-        code = instantiateByteCode( codeString );
-        args.add( codeLine );
-        while( tokenizer.hasMoreTokens() ) {
-          args.add( tokenizer.nextToken() );
+    try( BufferedReader codeReader = new BufferedReader( new FileReader( byteCodeFile.toFile() ) ) ) {
+      while( ( codeLine = codeReader.readLine() ) != null ) {
+        tokenizer = new StringTokenizer( codeLine );
+        ByteCode code;
+        Vector<String> args = new Vector<>();
+        if( tokenizer.hasMoreTokens() ) {
+          String codeString = tokenizer.nextToken().toUpperCase();
+          code = getFactory( codeString ).get();
+          args.add( codeLine );
+          while( tokenizer.hasMoreTokens() ) {
+            args.add( tokenizer.nextToken() );
+          }
+          program.addByteCode( code, args );
         }
-        program.addByteCode( code, args );
       }
     }
     return program;
   }
 
-  private ByteCode instantiateByteCode( String code ) {
-    String className = DebuggerCodeTable.get( code );
-    try {
-      Class<?> byteCodeType = Class.forName( className );
-      Constructor<?> constructor = byteCodeType.getConstructor();
-      return ( ByteCode ) constructor.newInstance();
-    } catch ( ClassNotFoundException | NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
-      System.out.println( String.format( "No class file found for ByteCode %s. Recompile?", code ) );
+  private Program loadBinaryCodes( ByteBuffer buffer ) throws IOException {
+    Program program = new Program();
+    buffer.position( 4 );
+    int version = buffer.getShort();
+    if( version != BinaryCodeFile.VERSION ) {
+      throw new IOException( String.format( "Unsupported version %d of %s", version, byteCodeFile ) );
+    }
+    String[] constants = new String[ (int) BinaryCodeFile.readVar( buffer ) ];
+    for( int i = 0; i < constants.length; i++ ) {
+      constants[ i ] = BinaryCodeFile.readConstant( buffer );
+    }
+    // the factory for each opcode is looked up once, on its first use
+    ArrayList<Supplier<ByteCode>> factories = new ArrayList<>( Collections.nCopies( constants.length, null ) );
+    long codeCount = BinaryCodeFile.readVar( buffer );
+    for( int i = 0; i < codeCount; i++ ) {
+      int opcode = (int) BinaryCodeFile.readVar( buffer );
+      String codeString = constants[ opcode ];
+      if( factories.get( opcode ) == null ) {
+        factories.set( opcode, getFactory( codeString ) );
+      }
+      // the operands go to the code decoded, ints as ints
+      Object[] operands = new Object[ (int) BinaryCodeFile.readVar( buffer ) ];
+      for( int j = 0; j < operands.length; j++ ) {
+        long encodedOperand = BinaryCodeFile.readVar( buffer );
+        int value = BinaryCodeFile.operandValue( encodedOperand );
+        operands[ j ] = BinaryCodeFile.isConstant( encodedOperand ) ? constants[ value ] : Integer.valueOf( value );
+      }
+      program.addByteCode( factories.get( opcode ).get(), codeString, operands );
+    }
+    return program;
+  }
+
+  private Supplier<ByteCode> getFactory( String code ) throws IOException {
+    Supplier<ByteCode> factory = codeTable.apply( code );
+    if( factory == null ) {
+      throw new IOException( String.format( "Unknown ByteCode %s in %s", code, byteCodeFile ) );
     }
-    return null;
+    return factory;
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,212 @@
+package interpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Just enough of the JVM class file format for JitCompiler: a constant
+ * pool, static fields, static methods with a Code attribute and nothing
+ * else. Classes are written as version 49 (Java 5) class files, which are
+ * still verified by type inference and so do not need StackMapTable
+ * attributes.
+ */
+public class ClassFileWriter {
+
+  public static final int ACC_PUBLIC = 0x0001;
+  public static final int ACC_STATIC = 0x0008;
+  public static final int ACC_FINAL = 0x0010;
+  public static final int ACC_SUPER = 0x0020;
+
+  private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+  private static final int MAJOR_VERSION = 49;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_FIELDREF = 9;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+  private ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+  private DataOutputStream constantPool = new DataOutputStream( constantPoolBytes );
+  private HashMap<String,Integer> constantIndexes = new HashMap<>();
+  private int constantCount = 1;
+  private ArrayList<byte[]> fields = new ArrayList<>();
+  private ArrayList<byte[]> methods = new ArrayList<>();
+  private int thisClass;
+  private int superClass;
+
+  public ClassFileWriter( String className, String superClassName ) {
+    thisClass = classConstant( className );
+    superClass = classConstant( superClassName );
+  }
+
+  public int getThisClass() {
+    return thisClass;
+  }
+
+  public int utf8Constant( String value ) {
+    String key = "Utf8 " + value;
+    Integer index = constantIndexes.get( key );
+    if( index == null ) {
+      try {
+        constantPool.writeByte( CONSTANT_UTF8 );
+        constantPool.writeUTF( value );
+      } catch ( IOException e ) {
+        throw new IllegalStateException( e );
+      }
+      index = addConstant( key );
+    }
+    return index;
+  }
+
+  public int integerConstant( int value ) {
+    String key = "Integer " + value;
+    Integer index = constantIndexes.get( key );
+    if( index == null ) {
+      writeConstant( CONSTANT_INTEGER, value >>> 16, value & 0xFFFF );
+      index = addConstant( key );
+    }
+    return index;
+  }
+
+  public int classConstant( String internalName ) {
+    String key = "Class " + internalName;
+    Integer index = constantIndexes.get( key );
+    if( index == null ) {
+      int name = utf8Constant( internalName );
+      writeConstant( CONSTANT_CLASS, name );
+      index = addConstant( key );
+    }
+    return index;
+  }
+
+  public int fieldConstant( String owner, String name, String descriptor ) {
+    return memberConstant( CONSTANT_FIELDREF, owner, name, descriptor );
+  }
+
+  public int methodConstant( String owner, String name, String descriptor ) {
+    return memberConstant( CONSTANT_METHODREF, owner, name, descriptor );
+  }
+
+  private int memberConstant( int tag, String owner, String name, String descriptor ) {
+    String key = String.format( "%d %s.%s%s", tag, owner, name, descriptor );
+    Integer index = constantIndexes.get( key );
+    if( index == null ) {
+      int ownerClass = classConstant( owner );
+      int nameAndType = nameAndTypeConstant( name, descriptor );
+      writeConstant( tag, ownerClass, nameAndType );
+      index = addConstant( key );
+    }
+    return index;
+  }
+
+  private int nameAndTypeConstant( String name, String descriptor ) {
+    String key = "NameAndType " + name + descriptor;
+    Integer index = constantIndexes.get( key );
+    if( index == null ) {
+      int nameIndex = utf8Constant( name );
+      int descriptorIndex = utf8Constant( descriptor );
+      writeConstant( CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex );
+      index = addConstant( key );
+    }
+    return index;
+  }
+
+  private void writeConstant( int tag, int... shorts ) {
+    try {
+      constantPool.writeByte( tag );
+      for( int value : shorts ) {
+        constantPool.writeShort( value );
+      }
+    } catch ( IOException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  private int addConstant( String key ) {
+    int index = constantCount++;
+    constantIndexes.put( key, index );
+    return index;
+  }
+
+  /**
+   * Adds a field without attributes.
+   */
+  public void addField( int access, String name, String descriptor ) {
+    ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+    DataOutputStream field = new DataOutputStream( fieldBytes );
+    try {
+      field.writeShort( access );
+      field.writeShort( utf8Constant( name ) );
+      field.writeShort( utf8Constant( descriptor ) );
+      field.writeShort( 0 );
+    } catch ( IOException e ) {
+      throw new IllegalStateException( e );
+    }
+    fields.add( fieldBytes.toByteArray() );
+  }
+
+  /**
+   * Adds a method whose body is the given JVM code.
+   */
+  public void addMethod( int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code ) {
+    int nameIndex = utf8Constant( name );
+    int descriptorIndex = utf8Constant( descriptor );
+    int codeAttribute = utf8Constant( "Code" );
+    ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    DataOutputStream method = new DataOutputStream( methodBytes );
+    try {
+      method.writeShort( access );
+      method.writeShort( nameIndex );
+      method.writeShort( descriptorIndex );
+      method.writeShort( 1 );
+      method.writeShort( codeAttribute );
+      // max_stack, max_locals, code_length, code, empty exception table and attributes
+      method.writeInt( 2 + 2 + 4 + code.length + 2 + 2 );
+      method.writeShort( maxStack );
+      method.writeShort( maxLocals );
+      method.writeInt( code.length );
+      method.write( code );
+      method.writeShort( 0 );
+      method.writeShort( 0 );
+    } catch ( IOException e ) {
+      throw new IllegalStateException( e );
+    }
+    methods.add( methodBytes.toByteArray() );
+  }
+
+  public byte[] toByteArray() {
+    ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+    DataOutputStream classFile = new DataOutputStream( classBytes );
+    try {
+      classFile.writeInt( CLASS_FILE_MAGIC );
+      classFile.writeShort( 0 );
+      classFile.writeShort( MAJOR_VERSION );
+      classFile.writeShort( constantCount );
+      classFile.write( constantPoolBytes.toByteArray() );
+      classFile.writeShort( ACC_PUBLIC | ACC_FINAL | ACC_SUPER );
+      classFile.writeShort( thisClass );
+      classFile.writeShort( superClass );
+      // no interfaces
+      classFile.writeShort( 0 );
+      classFile.writeShort( fields.size() );
+      for( byte[] field : fields ) {
+        classFile.write( field );
+      }
+      classFile.writeShort( methods.size() );
+      for( byte[] method : methods ) {
+        classFile.write( method );
+      }
+      // no class attributes
+      classFile.writeShort( 0 );
+    } catch ( IOException e ) {
+      throw new IllegalStateException( e );
+    }
+    return classBytes.toByteArray();
+  }
+
+}
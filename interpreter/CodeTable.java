@@ -1,45 +1,52 @@
 package interpreter;
 
 import interpreter.bytecode.*;
+import interpreter.bytecode.debuggercodes.Formal;
+import interpreter.bytecode.debuggercodes.Function;
+import interpreter.bytecode.debuggercodes.Line;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
+import java.util.function.Supplier;
 
-@SuppressWarnings("all")
+/**
+ * Maps each code name to a factory for its ByteCode, so loading a program
+ * creates codes without any reflection.
+ */
 public class CodeTable {
 
-  static HashMap<String,Class> codeTable = new HashMap<>();
+  private static HashMap<String,Supplier<ByteCode>> codeTable = new HashMap<>();
 
   static {
-    codeTable.put( "ARGS", Args.class );
-    codeTable.put( "BOP", Bop.class );
-    codeTable.put( "CALL", Call.class );
-    codeTable.put( "DUMP", Dump.class );
-    codeTable.put( "FALSEBRANCH", FalseBranch.class );
-    codeTable.put( "GOTO", GoTo.class );
-    codeTable.put( "HALT", Halt.class );
-    codeTable.put( "LABEL", Label.class );
-    codeTable.put( "LIT", Lit.class );
-    codeTable.put( "LOAD", Load.class );
-    codeTable.put( "POP", Pop.class );
-    codeTable.put( "PUSH", Push.class );
-    codeTable.put( "READ", Read.class );
-    codeTable.put( "RETURN", Return.class );
-    codeTable.put( "STORE", Store.class );
-    codeTable.put( "WRITE", Write.class );
+    codeTable.put( "ARGS", Args::new );
+    codeTable.put( "BOP", Bop::new );
+    codeTable.put( "CALL", Call::new );
+    codeTable.put( "DUMP", Dump::new );
+    codeTable.put( "FALSEBRANCH", FalseBranch::new );
+    codeTable.put( "GOTO", GoTo::new );
+    codeTable.put( "HALT", Halt::new );
+    codeTable.put( "LABEL", Label::new );
+    codeTable.put( "LIT", Lit::new );
+    codeTable.put( "LOAD", Load::new );
+    codeTable.put( "LOOKUPSWITCH", LookupSwitch::new );
+    codeTable.put( "POP", Pop::new );
+    codeTable.put( "PUSH", Push::new );
+    codeTable.put( "READ", Read::new );
+    codeTable.put( "RETURN", Return::new );
+    codeTable.put( "STORE", Store::new );
+    codeTable.put( "TABLESWITCH", TableSwitch::new );
+    codeTable.put( "TAILCALL", TailCall::new );
+    codeTable.put( "WRITE", Write::new );
+    // debugging information, which only the debugger acts on
+    codeTable.put( "FORMAL", Formal::new );
+    codeTable.put( "FUNCTION", Function::new );
+    codeTable.put( "LINE", Line::new );
   }
 
-  public static String get( String code ) {
-    return codeTable.get( code ).getName();
-    //    try {
-//      Class<?> byteCodeType = codeTable.get( code );
-//      Constructor<?> c = byteCodeType.getConstructor();
-//      return ( ByteCode ) c.newInstance();
-//    } catch ( NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
-//      System.out.println( String.format( "No class file found for ByteCode %s. Recompile?", code ) );
-//    }
-//    return null;
+  /**
+   * Returns the factory for the named code, or null if there is no such code.
+   */
+  public static Supplier<ByteCode> get( String code ) {
+    return codeTable.get( code );
   }
 
-}
\ No newline at end of file
+}
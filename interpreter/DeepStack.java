@@ -0,0 +1,47 @@
+package interpreter;
+
+/**
+ * Runs compiled code on a thread with a large stack. Compiled x-lang calls
+ * are nested JVM calls, while the interpreters keep their frames on the
+ * heap in RunTimeStack, so on the stack of an ordinary thread a recursion
+ * the interpreters run would overflow. The stack is only reserved; the
+ * memory is taken as the recursion gets there.
+ */
+class DeepStack {
+
+  static final long STACK_SIZE = 1L << 30;
+
+  /**
+   * Runs the task on a thread with a stack of STACK_SIZE bytes and waits for
+   * it; what the task throws is thrown again here.
+   */
+  static void run( Runnable task ) {
+    Throwable[] thrown = new Throwable[ 1 ];
+    Thread thread = new Thread( null, () -> {
+      try {
+        task.run();
+      } catch ( Throwable e ) {
+        thrown[ 0 ] = e;
+      }
+    }, "x-lang", STACK_SIZE );
+    thread.start();
+    boolean interrupted = false;
+    while( thread.isAlive() ) {
+      try {
+        thread.join();
+      } catch ( InterruptedException e ) {
+        interrupted = true;
+      }
+    }
+    if( interrupted ) {
+      Thread.currentThread().interrupt();
+    }
+    if( thrown[ 0 ] instanceof RuntimeException ) {
+      throw (RuntimeException) thrown[ 0 ];
+    }
+    if( thrown[ 0 ] instanceof Error ) {
+      throw (Error) thrown[ 0 ];
+    }
+  }
+
+}
@@ -0,0 +1,74 @@
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+
+/**
+ * A loaded Program flattened into parallel opcode and operand arrays for the
+ * switch dispatch loop in SwitchVirtualMachine. Every ByteCode reports the
+ * opcode it flattens to; codes that have no dedicated opcode (switch GOTOs,
+ * string literals, ...) are flattened to EXECUTE and still run through their
+ * execute method, which is why the codes themselves are kept as well.
+ * READ, WRITE, HALT, DUMP and SWITCH (TABLESWITCH and LOOKUPSWITCH) have
+ * opcodes so that JitCompiler can recognise them, but SwitchVirtualMachine
+ * leaves them to execute() too. The superinstructions LOAD_LIT_BOP and
+ * CMP_BRANCH have up to three operands, kept in the further arrays.
+ */
+public class FlatProgram {
+
+  public static final int EXECUTE = 0;
+  public static final int NOP = 1;
+  public static final int LIT = 2;
+  public static final int LOAD = 3;
+  public static final int STORE = 4;
+  public static final int POP = 5;
+  public static final int ARGS = 6;
+  public static final int CALL = 7;
+  public static final int RETURN = 8;
+  public static final int GOTO = 9;
+  public static final int FALSEBRANCH = 10;
+  public static final int ADD = 11;
+  public static final int SUB = 12;
+  public static final int MUL = 13;
+  public static final int DIV = 14;
+  public static final int EQ = 15;
+  public static final int GE = 16;
+  public static final int LE = 17;
+  public static final int GT = 18;
+  public static final int LT = 19;
+  public static final int OR = 20;
+  public static final int AND = 21;
+  public static final int NE = 22;
+  public static final int READ = 23;
+  public static final int WRITE = 24;
+  public static final int HALT = 25;
+  public static final int DUMP = 26;
+  public static final int SWITCH = 27;
+  public static final int TAILCALL = 28;
+  // superinstructions, see SuperinstructionFuser
+  public static final int LOAD_LIT_BOP = 29;
+  public static final int CMP_BRANCH = 30;
+
+  final int[] opcodes;
+  final int[] operands;
+  final int[] secondOperands;
+  final int[] thirdOperands;
+  final ByteCode[] codes;
+
+  public FlatProgram( Program program ) {
+    int size = program.size();
+    opcodes = new int[ size ];
+    operands = new int[ size ];
+    secondOperands = new int[ size ];
+    thirdOperands = new int[ size ];
+    codes = new ByteCode[ size ];
+    for( int i = 0; i < size; i++ ) {
+      ByteCode code = program.getCode( i );
+      codes[ i ] = code;
+      opcodes[ i ] = code.getOpcode();
+      operands[ i ] = code.getOperand();
+      secondOperands[ i ] = code.getSecondOperand();
+      thirdOperands[ i ] = code.getThirdOperand();
+    }
+  }
+
+}
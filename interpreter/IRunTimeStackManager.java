@@ -2,12 +2,18 @@ package interpreter;
 
 public interface IRunTimeStackManager {
 
-    public Object loadStack( int offset );
+    public int loadStack( int offset );
+    public int loadIntStack( int offset );
     public void newStackFrameAt( int offset );
     public Object peekStack();
+    public int peekIntStack();
     public Object popStack();
-    public void popStackFrame();
+    public int popIntStack();
+    public void callStackFrame( int returnAddress, int functionAddress );
+    public int popStackFrame();
+    public void replaceStackFrame( int functionAddress );
     public Object pushStack( Object value );
-    public Object storeStack( int offset );
+    public int pushStack( int value );
+    public int storeStack( int offset );
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,141 @@
+package interpreter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * Where the READs of a program get their numbers, one per line, from
+ * System.in or a file. The input is read into one byte buffer, whose bytes
+ * are parsed straight into the int without making a String, and what one
+ * READ leaves in the buffer is there for the next; a read from the stream
+ * only waits for the bytes that are available, so a number typed at the
+ * console is read as soon as its line ends. Like Read, a READ prompts before
+ * each line and again after a line that is not a number, unless the source
+ * is quiet. At the end of the input a READ throws NoSuchElementException.
+ * Reading a number allocates nothing.
+ */
+public class InputSource {
+
+  public static final int DEFAULT_CAPACITY = 8192;
+
+  private static final byte[] PROMPT = "Please enter a number: ".getBytes( StandardCharsets.US_ASCII );
+
+  private final InputStream stream;
+  private final boolean closeStream;
+  private final ByteBuffer buffer;
+  private final PrintStream prompt;
+  private boolean quiet = false;
+
+  /**
+   * @param stream e.g. System.in, which is not closed with the source
+   * @param prompt where the prompts go
+   */
+  public InputSource( InputStream stream, PrintStream prompt, int capacity ) {
+    this( stream, prompt, capacity, false );
+  }
+
+  private InputSource( InputStream stream, PrintStream prompt, int capacity, boolean closeStream ) {
+    this.stream = stream;
+    this.prompt = prompt;
+    this.closeStream = closeStream;
+    buffer = ByteBuffer.allocate( capacity );
+    buffer.flip();
+  }
+
+  /**
+   * A source reading System.in as it is now, prompting on System.out.
+   */
+  public static InputSource fromConsole() {
+    return new InputSource( System.in, System.out, DEFAULT_CAPACITY );
+  }
+
+  /**
+   * A source reading the file; close() closes it.
+   */
+  public static InputSource fromFile( String fileName ) throws IOException {
+    return new InputSource( new FileInputStream( fileName ), System.out, DEFAULT_CAPACITY, true );
+  }
+
+  /**
+   * @param value whether READ reads without prompting
+   */
+  public void setQuiet( boolean value ) {
+    quiet = value;
+  }
+
+  /**
+   * Reads lines until one holds a number.
+   */
+  public int readInt() {
+    while( true ) {
+      if( !quiet ) {
+        prompt.write( PROMPT, 0, PROMPT.length );
+      }
+      long value = 0;
+      boolean negative = false, hasDigits = false, invalid = false;
+      int count = 0;
+      int c;
+      while( ( c = nextByte() ) != -1 && c != '\n' ) {
+        if( ( c == '-' || c == '+' ) && count == 0 ) {
+          negative = c == '-';
+        } else if( c >= '0' && c <= '9' && !invalid ) {
+          value = value * 10 + ( c - '0' );
+          // beyond any int, and kept from overflowing the long
+          invalid = value > (long) Integer.MAX_VALUE + 1;
+          hasDigits = true;
+        } else if( c != '\r' ) {
+          invalid = true;
+        }
+        count++;
+      }
+      if( c == -1 && count == 0 ) {
+        throw new NoSuchElementException( "no number left to read" );
+      }
+      value = negative ? -value : value;
+      if( hasDigits && !invalid && value <= Integer.MAX_VALUE ) {
+        return (int) value;
+      }
+    }
+  }
+
+  /**
+   * @return the next byte of the input, or -1 at its end
+   */
+  private int nextByte() {
+    if( !buffer.hasRemaining() && !fill() ) {
+      return -1;
+    }
+    return buffer.get() & 0xFF;
+  }
+
+  private boolean fill() {
+    try {
+      int length = stream.read( buffer.array(), 0, buffer.capacity() );
+      buffer.clear();
+      buffer.limit( Math.max( length, 0 ) );
+      return length > 0;
+    } catch ( IOException e ) {
+      throw new UncheckedIOException( e );
+    }
+  }
+
+  /**
+   * Closes the file read from if the source opened it.
+   */
+  public void close() {
+    if( closeStream ) {
+      try {
+        stream.close();
+      } catch ( IOException e ) {
+        throw new UncheckedIOException( e );
+      }
+    }
+  }
+
+}
@@ -1,42 +1,238 @@
 package interpreter;
 
 import java.io.*;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import interpreter.bytecode.ByteCode;
 import interpreter.debugger.Debugger;
 
 public class Interpreter {
 
   protected ByteCodeLoader byteCodeLoader;
   protected VirtualMachine vm;
+  protected boolean useSwitchDispatch = false;
+  protected boolean useJit = false;
+  protected boolean useTiers = false;
+  protected boolean useRegisters = false;
+  protected boolean useAllocationFree = false;
+  protected String outputFile;
+  protected long flushInterval = 0;
+  protected String inputFile;
+  protected boolean quiet = false;
 
   public Interpreter( String codeFile ) {
+    this( codeFile, CodeTable::get );
+  }
+
+  protected Interpreter( String codeFile, Function<String,Supplier<ByteCode>> codeTable ) {
     try {
-      byteCodeLoader = new ByteCodeLoader( codeFile );
+      byteCodeLoader = new ByteCodeLoader( codeFile, codeTable );
     } catch ( IOException e ) {
       System.out.println( "**** " + e );
     }
   }
 
+  public void setUseSwitchDispatch( boolean value ) {
+    useSwitchDispatch = value;
+  }
+
+  public void setUseJit( boolean value ) {
+    useJit = value;
+  }
+
+  public void setUseTiers( boolean value ) {
+    useTiers = value;
+  }
+
+  public void setUseRegisters( boolean value ) {
+    useRegisters = value;
+  }
+
+  /**
+   * Runs the program in SwitchVirtualMachine, allocation-free if it only
+   * handles ints; the interpreter has to be made with AllocationFreeCodeTable.
+   */
+  public void setUseAllocationFree( boolean value ) {
+    useAllocationFree = value;
+  }
+
+  /**
+   * Writes the program's output to the file instead of System.out.
+   */
+  public void setOutputFile( String fileName ) {
+    outputFile = fileName;
+  }
+
+  /**
+   * Also flushes the output every this many milliseconds, from a timer,
+   * besides when its buffer is full, a READ prompts or the program ends;
+   * 0 turns this off.
+   */
+  public void setFlushInterval( long milliseconds ) {
+    flushInterval = milliseconds;
+  }
+
+  /**
+   * Reads the program's input from the file instead of System.in.
+   */
+  public void setInputFile( String fileName ) {
+    inputFile = fileName;
+  }
+
+  /**
+   * @param value whether READ reads without prompting
+   */
+  public void setQuiet( boolean value ) {
+    quiet = value;
+  }
+
   void run() throws IOException {
     Program program = byteCodeLoader.loadCodes();
-    vm = new VirtualMachine( program );
+    InputSource input = inputFile == null ? InputSource.fromConsole() : InputSource.fromFile( inputFile );
+    input.setQuiet( quiet );
+    try {
+      OutputSink output = outputFile == null ? OutputSink.toConsole()
+          : OutputSink.toFile( outputFile, OutputSink.DEFAULT_THRESHOLD );
+      output.setInterval( flushInterval );
+      try {
+        run( program, input, output );
+      } finally {
+        output.close();
+      }
+    } catch ( NoSuchElementException e ) {
+      // a program reading past the end of its input stops there
+      System.err.println( "*** End of input, " + e.getMessage() );
+    } finally {
+      input.close();
+    }
+  }
+
+  private void run( Program program, InputSource input, OutputSink output ) {
+    if( useJit ) {
+      Runnable compiledProgram = JitCompiler.compile( program, output, input );
+      if( compiledProgram != null ) {
+        compiledProgram.run();
+        return;
+      }
+    }
+    if( useRegisters ) {
+      RegisterProgram registerProgram = RegisterCompiler.compile( program );
+      if( registerProgram != null ) {
+        RegisterVirtualMachine registerVm = new RegisterVirtualMachine( registerProgram );
+        registerVm.setInput( input );
+        registerVm.setOutput( output );
+        registerVm.executeProgram();
+        return;
+      }
+    }
+    if( useAllocationFree ) {
+      try {
+        AllocationFreeCodeTable.verify( program );
+      } catch ( UnsupportedCodeException e ) {
+        System.out.println( "**** Not allocation-free, " + e.getMessage() );
+      }
+    }
+    if( useTiers ) {
+      vm = new TieredVirtualMachine( program );
+    } else {
+      // the tiers compile the codes as loaded, so only these two engines fuse them
+      SuperinstructionFuser fuser = new SuperinstructionFuser();
+      fuser.fuse( program );
+      vm = useSwitchDispatch || useAllocationFree ? new SwitchVirtualMachine( program ) : new VirtualMachine( program );
+      vm.setFusionReport( fuser.getReport() );
+    }
+    vm.setInput( input );
+    vm.setOutput( output );
     vm.executeProgram();
   }
 
-  public static void main( String args[] ) throws IOException {
-    if ( args.length == 0 || args.length > 2 ) {
-      System.out.println( "*** Incorrect usage, try: java interpreter.Interpreter <file>" );
-      System.exit(1);
+  /**
+   * @return the value of the option before i, which cannot be the file to run
+   */
+  private static String optionValue( String args[], int i ) {
+    if( i >= args.length - 1 ) {
+      throw new IllegalArgumentException();
     }
+    return args[i];
+  }
 
-    if( args.length == 2 && !args[0].equals("-d") ) {
-      System.out.println( "*** Incorrect usage, try: java interpreter.Interpreter -d <basefilename>" );
+  public static void main( String args[] ) throws IOException {
+    String mode = null, outputFile = null, inputFile = null;
+    long flushInterval = 0;
+    boolean quiet = false;
+    try {
+      for( int i = 0; i < args.length - 1; i++ ) {
+        switch( args[i] ) {
+          case "-d":
+          case "-s":
+          case "-t":
+          case "-r":
+          case "-a":
+          case "--jit":
+            if( mode != null ) {
+              throw new IllegalArgumentException();
+            }
+            mode = args[i];
+            break;
+          // -o writes the program's output to a file, see OutputSink
+          case "-o":
+            outputFile = optionValue( args, ++i );
+            break;
+          // -flush also flushes the output every so many milliseconds
+          case "-flush":
+            flushInterval = Long.parseLong( optionValue( args, ++i ) );
+            break;
+          // -i reads the program's input from a file, see InputSource
+          case "-i":
+            inputFile = optionValue( args, ++i );
+            break;
+          // -q reads without prompting
+          case "-q":
+            quiet = true;
+            break;
+          default:
+            throw new IllegalArgumentException();
+        }
+      }
+    } catch ( IllegalArgumentException e ) {
+      mode = "?";
+    }
+    if( args.length == 0 || args[args.length - 1].startsWith( "-" ) || "?".equals( mode ) ) {
+      System.out.println( "*** Incorrect usage, try: java interpreter.Interpreter [-s|-t|-r|-a|--jit] [-i <inputfile>] [-q] [-o <outputfile>] [-flush <milliseconds>] <file>" );
       System.exit(1);
     }
 
-    if( args.length == 2 && args[0].equals("-d") ) {
-      ( new Debugger(args[1]) ).run();
+    String file = args[args.length - 1];
+    if( "-d".equals( mode ) ) {
+      if( outputFile != null || flushInterval != 0 || inputFile != null || quiet ) {
+        System.out.println( "*** Incorrect usage, try: java interpreter.Interpreter -d <basefilename>" );
+        System.exit(1);
+      }
+      ( new Debugger( file ) ).run();
+      return;
+    }
+    Interpreter interpreter;
+    if( "-a".equals( mode ) ) {
+      // -a runs an int-only program without allocating, see AllocationFreeCodeTable
+      interpreter = new Interpreter( file, AllocationFreeCodeTable::get );
+      interpreter.setUseAllocationFree( true );
     } else {
-      ( new Interpreter(args[0]) ).run();
+      interpreter = new Interpreter( file );
+      // -s runs the program in the switch dispatch loop of SwitchVirtualMachine
+      interpreter.setUseSwitchDispatch( "-s".equals( mode ) );
+      // -t starts out in the switch loop and compiles hot code, see TieredVirtualMachine
+      interpreter.setUseTiers( "-t".equals( mode ) );
+      // -r lowers the program to registers for RegisterVirtualMachine, see RegisterCompiler
+      interpreter.setUseRegisters( "-r".equals( mode ) );
+      // --jit compiles the program to a JVM class, see JitCompiler
+      interpreter.setUseJit( "--jit".equals( mode ) );
     }
+    interpreter.setInputFile( inputFile );
+    interpreter.setQuiet( quiet );
+    interpreter.setOutputFile( outputFile );
+    interpreter.setFlushInterval( flushInterval );
+    interpreter.run();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,565 @@
+package interpreter;
+
+import interpreter.bytecode.SwitchByteCode;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * Translates a loaded Program into a JVM class, defined as a hidden class,
+ * with one static method per x-lang function label and a run() method for
+ * the main program.
+ *
+ * Within a function the height of the runtime stack, counted from the start
+ * of its frame, is the same every time a given code is reached. The compiler
+ * works that height out for every code, which lets it map each slot of the
+ * frame onto a JVM local: LOAD/STORE offsets become local indexes, and a
+ * code that pushes a value stores it into the local for the slot it lands in.
+ * ARGS/CALL pass the top slots as the arguments of the called method and
+ * RETURN returns the top slot. A TAILCALL of the function's own method
+ * stores the arguments into its first locals and jumps back to its start;
+ * any other TAILCALL is compiled as a call followed by a return.
+ * TABLESWITCH and LOOKUPSWITCH both become a lookupswitch, which the JVM
+ * turns into a table itself when that pays.
+ * Compiled calls nest on the JVM stack, so compiled code runs on a
+ * DeepStack.
+ *
+ * READ, WRITE and HALT call the static methods of the same name below with
+ * the OutputSink and InputSource the class was compiled for, which it keeps
+ * in static fields, so compiled code shares them with the engine that runs
+ * it.
+ *
+ * Programs using anything without a direct translation (string literals,
+ * switch GOTOs, DUMP ON, ...) are not compiled; compile() returns null and
+ * the caller interprets them instead.
+ */
+public class JitCompiler {
+
+  private static final String CLASS_NAME = "interpreter/CompiledProgram";
+  private static final String MAIN_METHOD = "run";
+  private static final String LOOP_METHOD = "loop";
+  private static final int MAIN_ADDRESS = 0;
+
+  // the JVM instructions used by the compiled code
+  private static final int ICONST_0 = 0x03;
+  private static final int ICONST_1 = 0x04;
+  private static final int BIPUSH = 0x10;
+  private static final int SIPUSH = 0x11;
+  private static final int LDC_W = 0x13;
+  private static final int ILOAD = 0x15;
+  private static final int ALOAD_0 = 0x2A;
+  private static final int IALOAD = 0x2E;
+  private static final int ISTORE = 0x36;
+  private static final int IADD = 0x60;
+  private static final int ISUB = 0x64;
+  private static final int IMUL = 0x68;
+  private static final int IDIV = 0x6C;
+  private static final int IFEQ = 0x99;
+  private static final int IF_ICMPEQ = 0x9F;
+  private static final int IF_ICMPNE = 0xA0;
+  private static final int IF_ICMPLT = 0xA1;
+  private static final int IF_ICMPGE = 0xA2;
+  private static final int IF_ICMPGT = 0xA3;
+  private static final int IF_ICMPLE = 0xA4;
+  private static final int GOTO = 0xA7;
+  private static final int LOOKUPSWITCH = 0xAB;
+  private static final int IRETURN = 0xAC;
+  private static final int RETURN = 0xB1;
+  private static final int GETSTATIC = 0xB2;
+  private static final int INVOKESTATIC = 0xB8;
+  private static final int WIDE = 0xC4;
+
+  private static final int MAX_CODE_LENGTH = 65535;
+
+  // the static fields of the compiled class holding its sink and source
+  private static final String OUTPUT_FIELD = "output";
+  private static final String OUTPUT_DESCRIPTOR = "Linterpreter/OutputSink;";
+  private static final String INPUT_FIELD = "input";
+  private static final String INPUT_DESCRIPTOR = "Linterpreter/InputSource;";
+
+  private FlatProgram flatProgram;
+  // where the WRITEs of the compiled code go and its READs read from
+  private OutputSink output;
+  private InputSource input;
+  private ClassFileWriter classFile;
+  // entry address (the function's LABEL) -> number of arguments
+  private HashMap<Integer,Integer> functions = new HashMap<>();
+  private ArrayDeque<Integer> uncompiledFunctions = new ArrayDeque<>();
+
+  private JitCompiler( FlatProgram flatProgram, OutputSink output, InputSource input ) {
+    this.flatProgram = flatProgram;
+    this.output = output;
+    this.input = input;
+    classFile = new ClassFileWriter( CLASS_NAME, "java/lang/Object" );
+    classFile.addField( ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, OUTPUT_FIELD, OUTPUT_DESCRIPTOR );
+    classFile.addField( ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, INPUT_FIELD, INPUT_DESCRIPTOR );
+  }
+
+  /**
+   * Compiles the program, returning a Runnable that executes it on a
+   * DeepStack, writing to output and reading from input, or null when the
+   * program uses a construct the compiler does not support.
+   */
+  public static Runnable compile( Program program, OutputSink output, InputSource input ) {
+    try {
+      JitCompiler compiler = new JitCompiler( new FlatProgram( program ), output, input );
+      compiler.compileMethod( MAIN_METHOD, "()V", MAIN_ADDRESS, 0, true, false );
+      MethodHandle main = compiler.defineClass( MAIN_METHOD, MethodType.methodType( void.class ) );
+      return () -> DeepStack.run( () -> {
+        try {
+          main.invokeExact();
+        } catch ( RuntimeException | Error e ) {
+          throw e;
+        } catch ( Throwable e ) {
+          throw new IllegalStateException( e );
+        } finally {
+          output.flush();
+        }
+      } );
+    } catch ( UnsupportedCodeException e ) {
+      System.err.println( "*** Not compiled, interpreting instead: " + e.getMessage() );
+    } catch ( ReflectiveOperationException e ) {
+      System.err.println( "*** Compiled class could not be loaded, interpreting instead: " + e );
+    }
+    return null;
+  }
+
+  /**
+   * WRITE of compiled code.
+   */
+  public static void write( OutputSink output, int value ) {
+    output.write( value );
+  }
+
+  /**
+   * READ of compiled code.
+   */
+  public static int read( OutputSink output, InputSource input ) {
+    output.beforeRead();
+    return input.readInt();
+  }
+
+  /**
+   * HALT of compiled code.
+   */
+  public static void halt( OutputSink output ) {
+    output.flush();
+    System.exit( 0 );
+  }
+
+  /**
+   * Compiles the function entered at address, together with the functions
+   * it calls, for TieredVirtualMachine. The handle takes the arguments as an
+   * int[] and returns the function's result; null is returned when the
+   * function cannot be compiled.
+   */
+  public static MethodHandle compileFunction( FlatProgram flatProgram, int address, int numArgs,
+                                              OutputSink output, InputSource input ) {
+    try {
+      JitCompiler compiler = new JitCompiler( flatProgram, output, input );
+      compiler.functions.put( address, numArgs );
+      compiler.compileMethod( methodName( address ), methodDescriptor( numArgs ), address, numArgs, false, false );
+      MethodType type = MethodType.fromMethodDescriptorString( methodDescriptor( numArgs ), null );
+      return compiler.defineClass( methodName( address ), type ).asSpreader( int[].class, numArgs );
+    } catch ( UnsupportedCodeException | ReflectiveOperationException e ) {
+      return null;
+    }
+  }
+
+  /**
+   * Compiles the main program from the loop header at address onwards, for
+   * on-stack replacement by TieredVirtualMachine. The handle takes the
+   * values of the main frame, height of them, and runs the rest of the
+   * program; null is returned when that part cannot be compiled.
+   */
+  public static MethodHandle compileLoop( FlatProgram flatProgram, int address, int height,
+                                          OutputSink output, InputSource input ) {
+    try {
+      JitCompiler compiler = new JitCompiler( flatProgram, output, input );
+      compiler.compileMethod( LOOP_METHOD, "([I)V", address, height, true, true );
+      return compiler.defineClass( LOOP_METHOD, MethodType.methodType( void.class, int[].class ) );
+    } catch ( UnsupportedCodeException | ReflectiveOperationException e ) {
+      return null;
+    }
+  }
+
+  /**
+   * Compiles the functions called by the methods compiled so far, defines
+   * the class and sets its sink and source, returning the named method.
+   */
+  private MethodHandle defineClass( String name, MethodType type ) throws UnsupportedCodeException, ReflectiveOperationException {
+    // compiling a function registers the functions it calls
+    while( !uncompiledFunctions.isEmpty() ) {
+      int address = uncompiledFunctions.pop();
+      int numArgs = functions.get( address );
+      compileMethod( methodName( address ), methodDescriptor( numArgs ), address, numArgs, false, false );
+    }
+    MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass( classFile.toByteArray(), true );
+    Class<?> compiledClass = lookup.lookupClass();
+    try {
+      lookup.findStaticSetter( compiledClass, OUTPUT_FIELD, OutputSink.class ).invoke( output );
+      lookup.findStaticSetter( compiledClass, INPUT_FIELD, InputSource.class ).invoke( input );
+    } catch ( ReflectiveOperationException | RuntimeException | Error e ) {
+      throw e;
+    } catch ( Throwable e ) {
+      throw new IllegalStateException( e );
+    }
+    return lookup.findStatic( compiledClass, name, type );
+  }
+
+  private static String methodName( int address ) {
+    return address == MAIN_ADDRESS ? MAIN_METHOD : "function" + address;
+  }
+
+  private static String methodDescriptor( int numArgs ) {
+    String descriptor = "(";
+    for( int i = 0; i < numArgs; i++ ) {
+      descriptor += "I";
+    }
+    return descriptor + ")I";
+  }
+
+  /**
+   * Compiles the codes reachable from address into a static method, given
+   * the stack height at address. Main program methods return void; when
+   * loadsFrame is set the method's only argument is an int[] holding the
+   * initial frame slots.
+   */
+  private void compileMethod( String name, String descriptor, int address, int height, boolean isMain, boolean loadsFrame ) throws UnsupportedCodeException {
+    int[] heights = StackHeights.compute( flatProgram, address, height, isMain, functions, uncompiledFunctions );
+    int maxHeight = 0;
+    for( int codeHeight : heights ) {
+      maxHeight = Math.max( maxHeight, codeHeight );
+    }
+    MethodCode code = new MethodCode( flatProgram.opcodes.length );
+    if( loadsFrame ) {
+      // in reverse, so the array in local 0 is overwritten last
+      for( int slot = height - 1; slot >= 0; slot-- ) {
+        code.instruction( ALOAD_0 );
+        code.pushInt( slot );
+        code.instruction( IALOAD );
+        code.local( ISTORE, slot );
+      }
+    }
+    int firstAddress = 0;
+    while( heights[ firstAddress ] < 0 ) {
+      firstAddress++;
+    }
+    if( firstAddress != address ) {
+      code.jump( GOTO, address );
+    }
+    int maxStack = 4;
+    for( int pc = firstAddress; pc < heights.length; pc++ ) {
+      if( heights[ pc ] >= 0 ) {
+        code.markAddress( pc );
+        maxStack = Math.max( maxStack, compileCode( code, pc, heights[ pc ], address, isMain ) );
+      }
+    }
+    classFile.addMethod( ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, name, descriptor,
+        maxStack, maxHeight + 1, code.toByteArray() );
+  }
+
+  /**
+   * Emits the JVM code for the code at pc, given the stack height before it
+   * and the address the method starts at, and returns the JVM operand stack
+   * depth it needs.
+   */
+  private int compileCode( MethodCode code, int pc, int height, int address, boolean isMain ) {
+    int operand = flatProgram.operands[ pc ];
+    switch( flatProgram.opcodes[ pc ] ) {
+      case FlatProgram.LIT:
+        if( operand >= Short.MIN_VALUE && operand <= Short.MAX_VALUE ) {
+          code.pushInt( operand );
+        } else {
+          code.instruction( LDC_W );
+          code.u2( classFile.integerConstant( operand ) );
+        }
+        code.local( ISTORE, height );
+        break;
+      case FlatProgram.LOAD:
+        code.local( ILOAD, operand );
+        code.local( ISTORE, height );
+        break;
+      case FlatProgram.STORE:
+        code.local( ILOAD, height - 1 );
+        code.local( ISTORE, operand );
+        break;
+      case FlatProgram.CALL: {
+        int numArgs = functions.get( operand );
+        int frameStart = height - numArgs;
+        for( int slot = frameStart; slot < height; slot++ ) {
+          code.local( ILOAD, slot );
+        }
+        code.instruction( INVOKESTATIC );
+        code.u2( classFile.methodConstant( CLASS_NAME, methodName( operand ), methodDescriptor( numArgs ) ) );
+        code.local( ISTORE, frameStart );
+        return numArgs;
+      }
+      case FlatProgram.RETURN:
+        code.local( ILOAD, height - 1 );
+        code.instruction( IRETURN );
+        break;
+      case FlatProgram.TAILCALL: {
+        int numArgs = functions.get( operand );
+        int frameStart = height - numArgs;
+        for( int slot = frameStart; slot < height; slot++ ) {
+          code.local( ILOAD, slot );
+        }
+        if( operand == address ) {
+          for( int slot = numArgs - 1; slot >= 0; slot-- ) {
+            code.local( ISTORE, slot );
+          }
+          code.jump( GOTO, address + 1 );
+        } else {
+          code.instruction( INVOKESTATIC );
+          code.u2( classFile.methodConstant( CLASS_NAME, methodName( operand ), methodDescriptor( numArgs ) ) );
+          code.instruction( IRETURN );
+        }
+        return numArgs;
+      }
+      case FlatProgram.GOTO:
+        code.jump( GOTO, operand + 1 );
+        break;
+      case FlatProgram.FALSEBRANCH:
+        code.local( ILOAD, height - 1 );
+        code.jump( IFEQ, operand + 1 );
+        break;
+      case FlatProgram.SWITCH: {
+        SwitchByteCode switchCode = (SwitchByteCode) flatProgram.codes[ pc ];
+        int[] caseAddresses = switchCode.getCaseAddresses();
+        int[] targets = new int[ caseAddresses.length ];
+        for( int i = 0; i < targets.length; i++ ) {
+          targets[ i ] = caseAddresses[ i ] + 1;
+        }
+        code.local( ILOAD, height - 1 );
+        code.lookupSwitch( switchCode.getDefaultAddress() + 1, switchCode.getCaseValues(), targets );
+        return 1;
+      }
+      case FlatProgram.ADD:
+        compileArithmetic( code, height, IADD );
+        break;
+      case FlatProgram.SUB:
+        compileArithmetic( code, height, ISUB );
+        break;
+      case FlatProgram.MUL:
+        compileArithmetic( code, height, IMUL );
+        break;
+      case FlatProgram.DIV:
+        compileArithmetic( code, height, IDIV );
+        break;
+      case FlatProgram.EQ:
+        compileComparison( code, height, -1, IF_ICMPEQ );
+        break;
+      case FlatProgram.NE:
+        compileComparison( code, height, -1, IF_ICMPNE );
+        break;
+      case FlatProgram.GE:
+        compileComparison( code, height, -1, IF_ICMPGE );
+        break;
+      case FlatProgram.LE:
+        compileComparison( code, height, -1, IF_ICMPLE );
+        break;
+      case FlatProgram.GT:
+        compileComparison( code, height, -1, IF_ICMPGT );
+        break;
+      case FlatProgram.LT:
+        compileComparison( code, height, -1, IF_ICMPLT );
+        break;
+      case FlatProgram.OR:
+        compileComparison( code, height, IADD, IF_ICMPGE );
+        break;
+      case FlatProgram.AND:
+        compileComparison( code, height, IMUL, IF_ICMPGE );
+        break;
+      case FlatProgram.READ:
+        getStatic( code, OUTPUT_FIELD, OUTPUT_DESCRIPTOR );
+        getStatic( code, INPUT_FIELD, INPUT_DESCRIPTOR );
+        code.instruction( INVOKESTATIC );
+        code.u2( classFile.methodConstant( "interpreter/JitCompiler", "read", "(" + OUTPUT_DESCRIPTOR + INPUT_DESCRIPTOR + ")I" ) );
+        code.local( ISTORE, height );
+        break;
+      case FlatProgram.WRITE:
+        getStatic( code, OUTPUT_FIELD, OUTPUT_DESCRIPTOR );
+        code.local( ILOAD, height - 1 );
+        code.instruction( INVOKESTATIC );
+        code.u2( classFile.methodConstant( "interpreter/JitCompiler", "write", "(" + OUTPUT_DESCRIPTOR + "I)V" ) );
+        break;
+      case FlatProgram.HALT:
+        getStatic( code, OUTPUT_FIELD, OUTPUT_DESCRIPTOR );
+        code.instruction( INVOKESTATIC );
+        code.u2( classFile.methodConstant( "interpreter/JitCompiler", "halt", "(" + OUTPUT_DESCRIPTOR + ")V" ) );
+        if( isMain ) {
+          code.instruction( RETURN );
+        } else {
+          code.instruction( ICONST_0 );
+          code.instruction( IRETURN );
+        }
+        break;
+      default:
+        // NOP, POP, ARGS and DUMP OFF leave nothing to do at run time
+        break;
+    }
+    return 0;
+  }
+
+  private void getStatic( MethodCode code, String field, String descriptor ) {
+    code.instruction( GETSTATIC );
+    code.u2( classFile.fieldConstant( CLASS_NAME, field, descriptor ) );
+  }
+
+  private void compileArithmetic( MethodCode code, int height, int instruction ) {
+    code.local( ILOAD, height - 2 );
+    code.local( ILOAD, height - 1 );
+    code.instruction( instruction );
+    code.local( ISTORE, height - 2 );
+  }
+
+  /**
+   * Compares the two top slots, or for OR/AND the result of combining them
+   * with 1, and stores 1 or 0 in their place.
+   */
+  private void compileComparison( MethodCode code, int height, int combine, int branch ) {
+    code.local( ILOAD, height - 2 );
+    code.local( ILOAD, height - 1 );
+    if( combine >= 0 ) {
+      code.instruction( combine );
+      code.instruction( ICONST_1 );
+    }
+    // branch +7 skips "iconst_0; goto +4" to reach iconst_1
+    code.instruction( branch );
+    code.u2( 7 );
+    code.instruction( ICONST_0 );
+    code.instruction( GOTO );
+    code.u2( 4 );
+    code.instruction( ICONST_1 );
+    code.local( ISTORE, height - 2 );
+  }
+
+  /**
+   * The JVM code of one method, with the jumps between x-lang addresses
+   * patched once every address has been placed.
+   */
+  private static class MethodCode {
+
+    private byte[] bytes = new byte[ 256 ];
+    private int length = 0;
+    private int[] offsets;
+    // jump instruction offset -> x-lang address it jumps to
+    private TreeMap<Integer,Integer> jumps = new TreeMap<>();
+    // offset of a lookupswitch target -> offset of the lookupswitch and the
+    // x-lang address it jumps to
+    private TreeMap<Integer,int[]> switchTargets = new TreeMap<>();
+
+    MethodCode( int programSize ) {
+      offsets = new int[ programSize ];
+      Arrays.fill( offsets, -1 );
+    }
+
+    void markAddress( int pc ) {
+      offsets[ pc ] = length;
+    }
+
+    void u1( int value ) {
+      if( length == bytes.length ) {
+        bytes = Arrays.copyOf( bytes, length * 2 );
+      }
+      bytes[ length++ ] = (byte) value;
+    }
+
+    void u2( int value ) {
+      u1( value >> 8 );
+      u1( value );
+    }
+
+    void u4( int value ) {
+      u2( value >> 16 );
+      u2( value );
+    }
+
+    void instruction( int opcode ) {
+      u1( opcode );
+    }
+
+    void local( int opcode, int index ) {
+      if( index > 255 ) {
+        u1( WIDE );
+        u1( opcode );
+        u2( index );
+      } else {
+        u1( opcode );
+        u1( index );
+      }
+    }
+
+    /**
+     * Pushes a constant that fits in a short.
+     */
+    void pushInt( int value ) {
+      if( value >= -1 && value <= 5 ) {
+        u1( ICONST_0 + value );
+      } else if( value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ) {
+        u1( BIPUSH );
+        u1( value );
+      } else {
+        u1( SIPUSH );
+        u2( value );
+      }
+    }
+
+    void jump( int opcode, int pc ) {
+      jumps.put( length, pc );
+      u1( opcode );
+      u2( 0 );
+    }
+
+    /**
+     * Switches on the int on top of the operand stack; keys must be sorted,
+     * as the JVM requires, and pcs holds the x-lang address for each key.
+     */
+    void lookupSwitch( int defaultPc, int[] keys, int[] pcs ) {
+      int instruction = length;
+      u1( LOOKUPSWITCH );
+      // the operands are aligned to a multiple of four from the method start
+      while( length % 4 != 0 ) {
+        u1( 0 );
+      }
+      switchTargets.put( length, new int[] { instruction, defaultPc } );
+      u4( 0 );
+      u4( keys.length );
+      for( int i = 0; i < keys.length; i++ ) {
+        u4( keys[ i ] );
+        switchTargets.put( length, new int[] { instruction, pcs[ i ] } );
+        u4( 0 );
+      }
+    }
+
+    byte[] toByteArray() throws UnsupportedCodeException {
+      if( length > MAX_CODE_LENGTH ) {
+        throw new UnsupportedCodeException( 0, "function too large for a JVM method" );
+      }
+      for( Integer jump : jumps.keySet() ) {
+        int offset = offsets[ jumps.get( jump ) ] - jump;
+        if( offset < Short.MIN_VALUE || offset > Short.MAX_VALUE ) {
+          throw new UnsupportedCodeException( jumps.get( jump ), "jump too far for a JVM branch" );
+        }
+        bytes[ jump + 1 ] = (byte) ( offset >> 8 );
+        bytes[ jump + 2 ] = (byte) offset;
+      }
+      for( Integer target : switchTargets.keySet() ) {
+        int[] instructionAndPc = switchTargets.get( target );
+        int offset = offsets[ instructionAndPc[ 1 ] ] - instructionAndPc[ 0 ];
+        for( int i = 0; i < 4; i++ ) {
+          bytes[ target + i ] = (byte) ( offset >> ( 24 - 8 * i ) );
+        }
+      }
+      return Arrays.copyOf( bytes, length );
+    }
+
+  }
+
+}
@@ -0,0 +1,191 @@
+package interpreter;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Where the WRITEs of a program go. Each value is appended to a byte buffer
+ * as a line of text, and the buffer goes to the stream in one write when it
+ * is flushed:
+ * <ul>
+ * <li>when the next line might not fit, i.e. at the size threshold,
+ * <li>every interval, if one is set, from a timer thread, so a program
+ * that writes and then computes for a long time still shows its output,
+ * <li>before a READ prompts, so the output asked about is on screen,
+ * <li>on HALT, before dumping, and when the program ends otherwise.
+ * </ul>
+ * Writing an int allocates nothing, so AllocationFreeCodeTable writes
+ * through a sink too. The buffer is only touched holding the sink's lock,
+ * as the timer flushes it from its own thread.
+ */
+public class OutputSink {
+
+  public static final int DEFAULT_THRESHOLD = 8192;
+
+  private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes( StandardCharsets.US_ASCII );
+  // the digits of Integer.MIN_VALUE and its sign
+  private static final int MAX_INT_LENGTH = 11;
+
+  private final OutputStream stream;
+  private final boolean closeStream;
+  private final byte[] buffer;
+  private int count = 0;
+  private Timer timer;
+
+  /**
+   * @param stream    e.g. System.out, which is not closed with the sink
+   * @param threshold the number of bytes kept before they are written
+   */
+  public OutputSink( OutputStream stream, int threshold ) {
+    this( stream, threshold, false );
+  }
+
+  private OutputSink( OutputStream stream, int threshold, boolean closeStream ) {
+    this.stream = stream;
+    this.closeStream = closeStream;
+    buffer = new byte[ Math.max( threshold, MAX_INT_LENGTH + LINE_SEPARATOR.length ) ];
+  }
+
+  /**
+   * A sink writing to System.out as it is now.
+   */
+  public static OutputSink toConsole() {
+    return new OutputSink( System.out, DEFAULT_THRESHOLD );
+  }
+
+  /**
+   * A sink writing to the file, replacing what it held; close() closes it.
+   */
+  public static OutputSink toFile( String fileName, int threshold ) throws IOException {
+    return new OutputSink( new FileOutputStream( fileName ), threshold, true );
+  }
+
+  /**
+   * @param milliseconds how long a WRITE may wait in the buffer for later
+   *                     WRITEs, or 0 to wait for the threshold
+   */
+  public synchronized void setInterval( long milliseconds ) {
+    stopTimer();
+    if( milliseconds > 0 ) {
+      timer = new Timer( "output flush", true );
+      timer.schedule( new TimerTask() {
+        @Override
+        public void run() {
+          try {
+            flush();
+          } catch ( UncheckedIOException e ) {
+            // the program's own next flush reports it
+            cancel();
+          }
+        }
+      }, milliseconds, milliseconds );
+    }
+  }
+
+  private void stopTimer() {
+    if( timer != null ) {
+      timer.cancel();
+      timer = null;
+    }
+  }
+
+  public synchronized void write( int value ) {
+    if( count + MAX_INT_LENGTH + LINE_SEPARATOR.length > buffer.length ) {
+      flush();
+    }
+    int start = count;
+    // digits are taken off a negative value, as -Integer.MIN_VALUE is no int
+    int remaining = value < 0 ? value : -value;
+    do {
+      buffer[ count++ ] = (byte) ( '0' - remaining % 10 );
+      remaining /= 10;
+    } while( remaining != 0 );
+    if( value < 0 ) {
+      buffer[ count++ ] = '-';
+    }
+    for( int i = start, j = count - 1; i < j; i++, j-- ) {
+      byte digit = buffer[ i ];
+      buffer[ i ] = buffer[ j ];
+      buffer[ j ] = digit;
+    }
+    endLine();
+  }
+
+  /**
+   * Writes a value that may not be an int, e.g. a string literal, as
+   * println would.
+   */
+  public synchronized void write( Object value ) {
+    if( value instanceof Integer ) {
+      write( ( (Integer) value ).intValue() );
+      return;
+    }
+    byte[] bytes = String.valueOf( value ).getBytes();
+    if( count + bytes.length + LINE_SEPARATOR.length > buffer.length ) {
+      flush();
+    }
+    if( bytes.length + LINE_SEPARATOR.length > buffer.length ) {
+      writeStream( bytes, bytes.length );
+    } else {
+      System.arraycopy( bytes, 0, buffer, count, bytes.length );
+      count += bytes.length;
+    }
+    endLine();
+  }
+
+  private void endLine() {
+    if( count + LINE_SEPARATOR.length > buffer.length ) {
+      flush();
+    }
+    System.arraycopy( LINE_SEPARATOR, 0, buffer, count, LINE_SEPARATOR.length );
+    count += LINE_SEPARATOR.length;
+  }
+
+  /**
+   * Called before a READ prompts for input.
+   */
+  public void beforeRead() {
+    flush();
+  }
+
+  public synchronized void flush() {
+    if( count > 0 ) {
+      writeStream( buffer, count );
+      count = 0;
+    }
+  }
+
+  private void writeStream( byte[] bytes, int length ) {
+    try {
+      stream.write( bytes, 0, length );
+      if( !( stream instanceof PrintStream ) ) {
+        stream.flush();
+      }
+    } catch ( IOException e ) {
+      throw new UncheckedIOException( e );
+    }
+  }
+
+  /**
+   * Stops the timer and flushes the sink, closing the file it writes to if
+   * it made it.
+   */
+  public synchronized void close() {
+    stopTimer();
+    flush();
+    if( closeStream ) {
+      try {
+        stream.close();
+      } catch ( IOException e ) {
+        throw new UncheckedIOException( e );
+      }
+    }
+  }
+
+}
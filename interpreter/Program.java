@@ -4,6 +4,8 @@ import interpreter.bytecode.ByteCode;
 import interpreter.bytecode.Label;
 
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.Vector;
 
 public class Program {
@@ -14,17 +16,70 @@ public class Program {
   public void addByteCode( ByteCode code, Vector<String> args ) {
     code.init( args );
     codes.add( code );
-    if( code instanceof Label || code instanceof interpreter.bytecode.debuggercodes.Label ) {
+    if( isLabel( code ) ) {
       jumpLabels.put( args.get( 1 ), codes.size() - 1 );
     }
   }
 
+  /**
+   * Adds a code loaded from a binary file, see ByteCode.init(String, Object[]).
+   */
+  public void addByteCode( ByteCode code, String name, Object[] operands ) {
+    code.init( name, operands );
+    codes.add( code );
+    if( isLabel( code ) ) {
+      jumpLabels.put( operands[ 0 ].toString(), codes.size() - 1 );
+    }
+  }
+
+  private static boolean isLabel( ByteCode code ) {
+    return code instanceof Label || code instanceof interpreter.bytecode.debuggercodes.Label;
+  }
+
+  /**
+   * Link phase: once every code is loaded, let each code bind the labels it
+   * refers to so execution never has to look a label up by name.
+   */
+  public void resolveAddresses() {
+    for( ByteCode code : codes ) {
+      code.resolveAddresses( this );
+    }
+  }
+
+  /**
+   * Replaces the codes, e.g. with the superinstructions some of them were
+   * fused into, where newAddresses maps the old address of each code to
+   * the address of what replaces it. The addresses have to be resolved
+   * again afterwards.
+   */
+  public void replaceCodes( Vector<ByteCode> codes, int[] newAddresses ) {
+    this.codes = codes;
+    jumpLabels.replaceAll( ( label, address ) -> newAddresses[ address ] );
+  }
+
+  /**
+   * @return the label at address, or null if there is none, e.g. to name
+   * the function a call went to
+   */
+  public String getLabel( int address ) {
+    for( Map.Entry<String,Integer> jumpLabel : jumpLabels.entrySet() ) {
+      if( jumpLabel.getValue() == address ) {
+        return jumpLabel.getKey();
+      }
+    }
+    return null;
+  }
+
   public int getJumpAddress( String label ) {
     String newLabel = "";
     if( jumpLabels.containsKey( label ) ) {
       newLabel = label;
     } else if( label.startsWith( "switch_case") ) {
+      String switchId = label.substring( "switch_case<<".length(), label.lastIndexOf('_') );
       newLabel = label.substring( 0,label.lastIndexOf('_') + 1 ) + "default>>";
+      if( !jumpLabels.containsKey( newLabel ) ) {
+        newLabel = String.format( "switch_end<<%s>>", switchId );
+      }
     } else {
       return codes.size()-1;
     }
@@ -32,9 +87,34 @@ public class Program {
     return jumpAddress;
   }
 
+  /**
+   * Collects the case labels emitted for a switch statement, e.g.
+   * switch_case<<42_3>> for the GOTO target switch_case<<42_, keyed by their
+   * case value.
+   */
+  public TreeMap<Integer,Integer> getSwitchCaseAddresses( String switchLabel ) {
+    TreeMap<Integer,Integer> caseAddresses = new TreeMap<>();
+    for( Map.Entry<String,Integer> jumpLabel : jumpLabels.entrySet() ) {
+      String label = jumpLabel.getKey();
+      if( label.startsWith( switchLabel ) && label.endsWith( ">>" ) ) {
+        try {
+          int caseValue = Integer.parseInt( label.substring( switchLabel.length(), label.length() - 2 ) );
+          caseAddresses.put( caseValue, jumpLabel.getValue() );
+        } catch ( NumberFormatException e ) {
+          /* default>> label */
+        }
+      }
+    }
+    return caseAddresses;
+  }
+
+  public int size() {
+    return codes.size();
+  }
+
   public ByteCode getCode( int programCounter ) {
     ByteCode code = codes.elementAt( programCounter );
     return codes.elementAt( programCounter );
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,184 @@
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.Dump;
+import interpreter.bytecode.Halt;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Vector;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * What Benchmark and AllocationCheck share to run programs over and over:
+ * the options [-n runs] [-input value] [-reads count] [file|directory]...,
+ * by default the .cod files in sample_files, an input that gives every READ
+ * value and ends the run after count reads, and codes where HALT only stops
+ * the engine rather than the driver and DUMP never turns dumping on.
+ */
+abstract class ProgramHarness {
+
+  static final PrintStream REPORT = System.out;
+  static final InputStream KEYBOARD = System.in;
+
+  int runs = 20;
+  int input = 10;
+  int reads = 1000;
+
+  final InputNumbers inputNumbers = new InputNumbers();
+
+  /**
+   * Ends a run by being thrown from the READ after the last number; there
+   * is only the one, as making it would allocate.
+   */
+  static class InputExhaustedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final InputExhaustedException INSTANCE = new InputExhaustedException();
+
+    private InputExhaustedException() {
+      super( null, null, false, false );
+    }
+
+  }
+
+  /**
+   * Supplies the input numbers, at most one line for each read, so the
+   * run ends at the READ after the last number rather than when the
+   * InputSource fills its buffer. rewind starts it over for the next run.
+   */
+  class InputNumbers extends InputStream {
+
+    private byte[] line;
+    private int remaining;
+    private int position;
+
+    void rewind() {
+      if( line == null ) {
+        line = ( input + "\n" ).getBytes( StandardCharsets.US_ASCII );
+      }
+      remaining = reads;
+      position = 0;
+    }
+
+    @Override
+    public int read() {
+      if( position == 0 ) {
+        if( remaining == 0 ) {
+          throw InputExhaustedException.INSTANCE;
+        }
+        remaining--;
+      }
+      int b = line[ position ];
+      position = ( position + 1 ) % line.length;
+      return b;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) {
+      int length = 0;
+      do {
+        b[ off + length++ ] = (byte) read();
+      } while( length < len && position != 0 );
+      return length;
+    }
+
+  }
+
+  /**
+   * HALT ends the program by ending the engine's loop.
+   */
+  static class StoppingHalt extends Halt {
+
+    @Override
+    public void execute( VirtualMachine vm ) {
+      vm.isRunning = false;
+    }
+
+  }
+
+  /**
+   * DUMP that never turns dumping on.
+   */
+  static class IgnoredDump extends Dump {
+
+    @Override
+    public void init( Vector<String> args ) {
+      Vector<String> off = new Vector<>( args );
+      if( off.size() > 1 ) {
+        off.set( 1, "OFF" );
+      }
+      super.init( off );
+    }
+
+  }
+
+  /**
+   * @return codeTable with HALT and DUMP replaced by the harness's
+   */
+  static Function<String,Supplier<ByteCode>> harnessCodes( Function<String,Supplier<ByteCode>> codeTable ) {
+    return code -> {
+      switch( code ) {
+        case "HALT":
+          return StoppingHalt::new;
+        case "DUMP":
+          return IgnoredDump::new;
+        default:
+          return codeTable.apply( code );
+      }
+    };
+  }
+
+  private static void addFiles( File file, ArrayList<String> files ) {
+    if( file.isDirectory() ) {
+      File[] children = file.listFiles( ( directory, name ) -> name.endsWith( ".cod" ) || name.endsWith( ".xbc" ) );
+      Arrays.sort( children );
+      for( File child : children ) {
+        files.add( child.getPath() );
+      }
+    } else {
+      files.add( file.getPath() );
+    }
+  }
+
+  /**
+   * Sets the options from the command line, exiting with the usage if it
+   * is wrong.
+   * @param driver the class name shown in the usage
+   * @return the files to run
+   */
+  ArrayList<String> parseArguments( String args[], String driver ) {
+    ArrayList<String> files = new ArrayList<>();
+    try {
+      for( int i = 0; i < args.length; i++ ) {
+        switch( args[i] ) {
+          case "-n":
+            runs = Integer.parseInt( args[++i] );
+            break;
+          case "-input":
+            input = Integer.parseInt( args[++i] );
+            break;
+          case "-reads":
+            reads = Integer.parseInt( args[++i] );
+            break;
+          default:
+            addFiles( new File( args[i] ), files );
+        }
+      }
+    } catch ( ArrayIndexOutOfBoundsException | NumberFormatException e ) {
+      System.out.println( "*** Incorrect usage, try: java " + driver + " [-n runs] [-input value] [-reads count] [file|directory]..." );
+      System.exit(1);
+    }
+    if( files.isEmpty() ) {
+      addFiles( new File( "sample_files" ), files );
+    }
+    return files;
+  }
+
+}
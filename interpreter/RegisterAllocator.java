@@ -0,0 +1,311 @@
+package interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Linear scan register allocation for one function lowered by
+ * RegisterCompiler, whose virtual registers are its frame offsets.
+ *
+ * Liveness is solved over the function's basic blocks, and the live
+ * interval of each virtual register runs from the first to the last
+ * instruction at which it is live or written. The intervals are visited in
+ * order of their start; each takes the lowest register not held by an
+ * interval that is still active, and hands it back once the scan has
+ * passed its end. The arguments arrive in the first registers of the
+ * frame: the formals' intervals start before the first instruction, so
+ * formal i is the i-th interval visited and keeps register i.
+ *
+ * MOVEs into registers that are not live afterwards, e.g. those of
+ * variables initialised but never read, and MOVEs between two virtual
+ * registers that end up in the same register are marked REMOVED. The
+ * instructions are rewritten in place.
+ */
+class RegisterAllocator {
+
+  // the position of the function's entry, before its first instruction
+  private static final int ENTRY = -1;
+
+  private final int[] opcodes;
+  private final int[] a;
+  private final int[] b;
+  private final int[] c;
+  private final ArrayList<RegisterProgram.CallSite> callSites;
+  private final ArrayList<RegisterProgram.SwitchTable> switchTables;
+  private final int start;
+  private final int end;
+  private final int numRegisters;
+  private final int numArgs;
+
+  // the first instruction of each block, and the block of each instruction
+  private ArrayList<Integer> blockStarts = new ArrayList<>();
+  private int[] blockOf;
+  private int[] intervalStarts;
+  private int[] intervalEnds;
+
+  /**
+   * @param start the first instruction of the function
+   * @param end the instruction after its last one
+   * @param numRegisters the number of virtual registers it uses
+   * @param numArgs the number of its formals, in its first registers
+   */
+  RegisterAllocator( int[] opcodes, int[] a, int[] b, int[] c, ArrayList<RegisterProgram.CallSite> callSites,
+      ArrayList<RegisterProgram.SwitchTable> switchTables, int start, int end, int numRegisters, int numArgs ) {
+    this.opcodes = opcodes;
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    this.callSites = callSites;
+    this.switchTables = switchTables;
+    this.start = start;
+    this.end = end;
+    this.numRegisters = numRegisters;
+    this.numArgs = numArgs;
+  }
+
+  /**
+   * @return the number of registers the function's frame needs
+   */
+  int allocate() {
+    findBlocks();
+    BitSet[] liveOut = computeLiveOut();
+    while( removeDeadMoves( liveOut ) ) {
+      liveOut = computeLiveOut();
+    }
+    computeIntervals( liveOut );
+    int[] assignment = new int[ numRegisters ];
+    int frameSize = Math.max( numArgs, scan( assignment ) );
+    for( int instruction = start; instruction < end; instruction++ ) {
+      int opcode = opcodes[ instruction ];
+      if( opcode == RegisterProgram.MOVE && b[ instruction ] >= 0
+          && assignment[ a[ instruction ] ] == assignment[ b[ instruction ] ] ) {
+        opcodes[ instruction ] = RegisterCompiler.REMOVED;
+        continue;
+      }
+      if( RegisterCompiler.writesRegister( opcode ) ) {
+        a[ instruction ] = assignment[ a[ instruction ] ];
+      }
+      if( readsB( opcode ) ) {
+        b[ instruction ] = rename( b[ instruction ], assignment );
+      }
+      if( readsC( opcode ) ) {
+        c[ instruction ] = rename( c[ instruction ], assignment );
+      }
+      if( isCall( opcode ) ) {
+        int[] arguments = callSites.get( b[ instruction ] ).arguments;
+        for( int i = 0; i < arguments.length; i++ ) {
+          arguments[ i ] = rename( arguments[ i ], assignment );
+        }
+      }
+    }
+    return frameSize;
+  }
+
+  private static int rename( int operand, int[] assignment ) {
+    return operand >= 0 ? assignment[ operand ] : operand;
+  }
+
+  private static boolean readsB( int opcode ) {
+    return opcode <= RegisterProgram.AND || opcode == RegisterProgram.JUMPF || opcode == RegisterProgram.SWITCH
+        || opcode == RegisterProgram.RET || opcode == RegisterProgram.WRITE;
+  }
+
+  private static boolean readsC( int opcode ) {
+    return opcode >= RegisterProgram.ADD && opcode <= RegisterProgram.AND;
+  }
+
+  private static boolean isCall( int opcode ) {
+    return opcode == RegisterProgram.CALL || opcode == RegisterProgram.TAILCALL;
+  }
+
+  /**
+   * @return the instructions execution can continue at after instruction
+   */
+  private int[] successors( int instruction ) {
+    switch( opcodes[ instruction ] ) {
+      case RegisterProgram.JUMP:
+        return new int[] { a[ instruction ] };
+      case RegisterProgram.JUMPF:
+        return new int[] { a[ instruction ], instruction + 1 };
+      case RegisterProgram.SWITCH: {
+        RegisterProgram.SwitchTable table = switchTables.get( a[ instruction ] );
+        int[] targets = Arrays.copyOf( table.caseAddresses, table.caseAddresses.length + 1 );
+        targets[ table.caseAddresses.length ] = table.defaultAddress;
+        return targets;
+      }
+      case RegisterProgram.TAILCALL:
+      case RegisterProgram.RET:
+      case RegisterProgram.HALT:
+        return new int[ 0 ];
+      default:
+        return instruction + 1 < end ? new int[] { instruction + 1 } : new int[ 0 ];
+    }
+  }
+
+  /**
+   * A block starts at the entry, at every jump target and after every
+   * instruction that does not just continue with the next one.
+   */
+  private void findBlocks() {
+    boolean[] startsBlock = new boolean[ end - start + 1 ];
+    startsBlock[ 0 ] = true;
+    for( int instruction = start; instruction < end; instruction++ ) {
+      int[] successors = successors( instruction );
+      if( successors.length != 1 || successors[ 0 ] != instruction + 1 ) {
+        startsBlock[ instruction + 1 - start ] = true;
+        for( int successor : successors ) {
+          startsBlock[ successor - start ] = true;
+        }
+      }
+    }
+    blockOf = new int[ end - start ];
+    for( int instruction = start; instruction < end; instruction++ ) {
+      if( startsBlock[ instruction - start ] ) {
+        blockStarts.add( instruction );
+      }
+      blockOf[ instruction - start ] = blockStarts.size() - 1;
+    }
+  }
+
+  private int blockEnd( int block ) {
+    return block + 1 < blockStarts.size() ? blockStarts.get( block + 1 ) : end;
+  }
+
+  /**
+   * Solves the backward liveness equations by iterating to a fixed point.
+   * @return the registers live at the end of each block
+   */
+  private BitSet[] computeLiveOut() {
+    int numBlocks = blockStarts.size();
+    BitSet[] liveIn = new BitSet[ numBlocks ];
+    BitSet[] liveOut = new BitSet[ numBlocks ];
+    for( int block = 0; block < numBlocks; block++ ) {
+      liveIn[ block ] = new BitSet( numRegisters );
+      liveOut[ block ] = new BitSet( numRegisters );
+    }
+    boolean changed = true;
+    while( changed ) {
+      changed = false;
+      for( int block = numBlocks - 1; block >= 0; block-- ) {
+        BitSet live = new BitSet( numRegisters );
+        for( int successor : successors( blockEnd( block ) - 1 ) ) {
+          live.or( liveIn[ blockOf[ successor - start ] ] );
+        }
+        liveOut[ block ] = (BitSet) live.clone();
+        for( int instruction = blockEnd( block ) - 1; instruction >= blockStarts.get( block ); instruction-- ) {
+          transfer( instruction, live );
+        }
+        if( !live.equals( liveIn[ block ] ) ) {
+          liveIn[ block ] = live;
+          changed = true;
+        }
+      }
+    }
+    return liveOut;
+  }
+
+  /**
+   * Marks the MOVEs whose destination is not live after them REMOVED.
+   * @return whether any was found, as their sources may now be dead too
+   */
+  private boolean removeDeadMoves( BitSet[] liveOut ) {
+    boolean removed = false;
+    for( int block = 0; block < blockStarts.size(); block++ ) {
+      BitSet live = (BitSet) liveOut[ block ].clone();
+      for( int instruction = blockEnd( block ) - 1; instruction >= blockStarts.get( block ); instruction-- ) {
+        if( opcodes[ instruction ] == RegisterProgram.MOVE && !live.get( a[ instruction ] ) ) {
+          opcodes[ instruction ] = RegisterCompiler.REMOVED;
+          removed = true;
+        }
+        transfer( instruction, live );
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Turns the registers live after instruction into those live before it.
+   */
+  private void transfer( int instruction, BitSet live ) {
+    int opcode = opcodes[ instruction ];
+    if( RegisterCompiler.writesRegister( opcode ) ) {
+      live.clear( a[ instruction ] );
+    }
+    if( readsB( opcode ) && b[ instruction ] >= 0 ) {
+      live.set( b[ instruction ] );
+    }
+    if( readsC( opcode ) && c[ instruction ] >= 0 ) {
+      live.set( c[ instruction ] );
+    }
+    if( isCall( opcode ) ) {
+      for( int argument : callSites.get( b[ instruction ] ).arguments ) {
+        if( argument >= 0 ) {
+          live.set( argument );
+        }
+      }
+    }
+  }
+
+  private void computeIntervals( BitSet[] liveOut ) {
+    intervalStarts = new int[ numRegisters ];
+    intervalEnds = new int[ numRegisters ];
+    Arrays.fill( intervalStarts, Integer.MAX_VALUE );
+    Arrays.fill( intervalEnds, Integer.MIN_VALUE );
+    for( int formal = 0; formal < numArgs; formal++ ) {
+      extend( formal, ENTRY );
+    }
+    for( int block = 0; block < blockStarts.size(); block++ ) {
+      BitSet live = (BitSet) liveOut[ block ].clone();
+      for( int instruction = blockEnd( block ) - 1; instruction >= blockStarts.get( block ); instruction-- ) {
+        // live after the instruction, written by it and read by it
+        extendAll( live, instruction );
+        if( RegisterCompiler.writesRegister( opcodes[ instruction ] ) ) {
+          extend( a[ instruction ], instruction );
+        }
+        transfer( instruction, live );
+        extendAll( live, instruction );
+      }
+    }
+  }
+
+  private void extendAll( BitSet live, int instruction ) {
+    for( int register = live.nextSetBit( 0 ); register >= 0; register = live.nextSetBit( register + 1 ) ) {
+      extend( register, instruction );
+    }
+  }
+
+  private void extend( int register, int instruction ) {
+    intervalStarts[ register ] = Math.min( intervalStarts[ register ], instruction );
+    intervalEnds[ register ] = Math.max( intervalEnds[ register ], instruction );
+  }
+
+  /**
+   * Assigns a register to each virtual register with an interval.
+   * @return the number of registers used
+   */
+  private int scan( int[] assignment ) {
+    ArrayList<Integer> intervals = new ArrayList<>();
+    for( int register = 0; register < numRegisters; register++ ) {
+      if( intervalStarts[ register ] != Integer.MAX_VALUE ) {
+        intervals.add( register );
+      }
+    }
+    intervals.sort( Comparator.comparingInt( ( Integer register ) -> intervalStarts[ register ] )
+        .thenComparingInt( register -> register ) );
+    PriorityQueue<Integer> active = new PriorityQueue<>( Comparator.comparingInt( register -> intervalEnds[ register ] ) );
+    PriorityQueue<Integer> free = new PriorityQueue<>();
+    int used = 0;
+    for( int register : intervals ) {
+      while( !active.isEmpty() && intervalEnds[ active.peek() ] < intervalStarts[ register ] ) {
+        free.add( assignment[ active.poll() ] );
+      }
+      assignment[ register ] = free.isEmpty() ? used++ : free.poll();
+      active.add( register );
+    }
+    return used;
+  }
+
+}
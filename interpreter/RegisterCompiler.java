@@ -0,0 +1,422 @@
+package interpreter;
+
+import interpreter.bytecode.SwitchByteCode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Lowers a loaded Program into a RegisterProgram for RegisterVirtualMachine.
+ *
+ * As in JitCompiler, StackHeights gives the height of the stack before each
+ * code of a function, so every frame slot can be named by its offset: slot
+ * s becomes virtual register s. The codes of each function are then walked
+ * in order while keeping track of the operand that holds the value of each
+ * slot. LIT and LOAD emit nothing but make their slot refer to the constant
+ * or to the loaded register, so
+ *   LOAD 0 n / LIT 1 / BOP - / STORE 1 m
+ * becomes the single SUB r1, r0, #1: BOP reads its operands from where they
+ * are and writes its slot's register, and STORE renames the destination of
+ * the instruction that computed the value when it can. Values still only
+ * referred to are moved into their slots' registers before any jump or
+ * label, so every path reaches a label with the frame in its registers, and
+ * before a STORE overwrites a register they refer to. Arguments are passed
+ * as operands of the CALL, so they need no moves at all.
+ *
+ * Finally RegisterAllocator packs the virtual registers of each function
+ * into as few registers as their live ranges allow, and the instructions
+ * it found to be useless are left out together with jumps to the next
+ * instruction.
+ *
+ * Programs using anything without a direct translation (string literals,
+ * switch GOTOs, DUMP ON, ...) are not compiled; compile() returns null and
+ * the caller interprets them instead.
+ */
+public class RegisterCompiler {
+
+  private static final int MAIN_ADDRESS = 0;
+  // marks an instruction to be left out of the program
+  static final int REMOVED = Integer.MAX_VALUE;
+
+  private FlatProgram flatProgram;
+  // entry address (the function's LABEL) -> number of arguments
+  private HashMap<Integer,Integer> functions = new HashMap<>();
+  private ArrayDeque<Integer> unloweredFunctions = new ArrayDeque<>();
+  // entry address -> frame size, once the function has been allocated
+  private HashMap<Integer,Integer> frameSizes = new HashMap<>();
+
+  // the instructions lowered so far
+  private int size = 0;
+  private int[] opcodes = new int[ 64 ];
+  private int[] a = new int[ 64 ];
+  private int[] b = new int[ 64 ];
+  private int[] c = new int[ 64 ];
+  private ArrayList<Integer> constants = new ArrayList<>();
+  private HashMap<Integer,Integer> constantOperands = new HashMap<>();
+  private ArrayList<RegisterProgram.CallSite> callSites = new ArrayList<>();
+  private ArrayList<RegisterProgram.SwitchTable> switchTables = new ArrayList<>();
+
+  // code address -> address of the first instruction lowered from it or after it
+  private int[] addresses;
+  // the operand holding the value of each slot of the function being lowered
+  private int[] slots;
+  // address of the first instruction after the last label
+  private int blockStart;
+
+  private RegisterCompiler( FlatProgram flatProgram ) {
+    this.flatProgram = flatProgram;
+    addresses = new int[ flatProgram.opcodes.length + 1 ];
+  }
+
+  /**
+   * Lowers the program, returning null when it uses a construct the
+   * compiler does not support.
+   */
+  public static RegisterProgram compile( Program program ) {
+    try {
+      return lower( new FlatProgram( program ) );
+    } catch ( UnsupportedCodeException e ) {
+      System.err.println( "*** Not compiled to registers, interpreting instead: " + e.getMessage() );
+    }
+    return null;
+  }
+
+  static RegisterProgram lower( FlatProgram flatProgram ) throws UnsupportedCodeException {
+    RegisterCompiler compiler = new RegisterCompiler( flatProgram );
+    int mainFrameSize = compiler.lowerFunction( MAIN_ADDRESS, 0, true );
+    // lowering a function registers the functions it calls
+    while( !compiler.unloweredFunctions.isEmpty() ) {
+      int address = compiler.unloweredFunctions.pop();
+      int frameSize = compiler.lowerFunction( address, compiler.functions.get( address ), false );
+      compiler.frameSizes.put( address, frameSize );
+    }
+    for( RegisterProgram.CallSite callSite : compiler.callSites ) {
+      callSite.frameSize = compiler.frameSizes.get( callSite.address );
+      callSite.address = compiler.addresses[ callSite.address ];
+    }
+    compiler.removeInstructions();
+    int[] constants = new int[ compiler.constants.size() ];
+    for( int i = 0; i < constants.length; i++ ) {
+      constants[ i ] = compiler.constants.get( i );
+    }
+    int size = compiler.size;
+    return new RegisterProgram( Arrays.copyOf( compiler.opcodes, size ), Arrays.copyOf( compiler.a, size ),
+        Arrays.copyOf( compiler.b, size ), Arrays.copyOf( compiler.c, size ), constants,
+        compiler.callSites.toArray( new RegisterProgram.CallSite[ 0 ] ),
+        compiler.switchTables.toArray( new RegisterProgram.SwitchTable[ 0 ] ), mainFrameSize );
+  }
+
+  /**
+   * Lowers the codes reachable from address, given the number of arguments,
+   * and allocates their registers.
+   * @return the size of the function's frame
+   */
+  private int lowerFunction( int address, int numArgs, boolean isMain ) throws UnsupportedCodeException {
+    int[] heights = StackHeights.compute( flatProgram, address, numArgs, isMain, functions, unloweredFunctions );
+    int maxHeight = numArgs;
+    boolean[] isJumpTarget = new boolean[ heights.length ];
+    isJumpTarget[ address ] = true;
+    for( int pc = 0; pc < heights.length; pc++ ) {
+      if( heights[ pc ] < 0 ) {
+        continue;
+      }
+      maxHeight = Math.max( maxHeight, heights[ pc ] + 1 );
+      switch( flatProgram.opcodes[ pc ] ) {
+        case FlatProgram.GOTO:
+        case FlatProgram.FALSEBRANCH:
+          isJumpTarget[ flatProgram.operands[ pc ] + 1 ] = true;
+          break;
+        case FlatProgram.SWITCH: {
+          SwitchByteCode switchCode = (SwitchByteCode) flatProgram.codes[ pc ];
+          isJumpTarget[ switchCode.getDefaultAddress() + 1 ] = true;
+          for( int caseAddress : switchCode.getCaseAddresses() ) {
+            isJumpTarget[ caseAddress + 1 ] = true;
+          }
+          break;
+        }
+      }
+    }
+    slots = new int[ maxHeight ];
+    resetSlots( 0 );
+    int start = size;
+    for( int pc = 0; pc < heights.length; pc++ ) {
+      if( heights[ pc ] < 0 ) {
+        continue;
+      }
+      if( isJumpTarget[ pc ] ) {
+        materialize( heights[ pc ] );
+        blockStart = size;
+      }
+      addresses[ pc ] = size;
+      lowerCode( pc, heights[ pc ] );
+    }
+    // jumps within the function still hold code addresses
+    for( int instruction = start; instruction < size; instruction++ ) {
+      if( opcodes[ instruction ] == RegisterProgram.JUMP || opcodes[ instruction ] == RegisterProgram.JUMPF ) {
+        a[ instruction ] = addresses[ a[ instruction ] ];
+      } else if( opcodes[ instruction ] == RegisterProgram.SWITCH ) {
+        RegisterProgram.SwitchTable table = switchTables.get( a[ instruction ] );
+        table.defaultAddress = addresses[ table.defaultAddress ];
+        for( int i = 0; i < table.caseAddresses.length; i++ ) {
+          table.caseAddresses[ i ] = addresses[ table.caseAddresses[ i ] ];
+        }
+      }
+    }
+    return new RegisterAllocator( opcodes, a, b, c, callSites, switchTables, start, size, maxHeight, numArgs )
+        .allocate();
+  }
+
+  /**
+   * Leaves out the instructions marked REMOVED and the jumps that only skip
+   * over those, and moves every jump, switch and call to the new addresses.
+   */
+  private void removeInstructions() {
+    for( int instruction = 0; instruction < size; instruction++ ) {
+      if( opcodes[ instruction ] == RegisterProgram.JUMP && a[ instruction ] > instruction ) {
+        int next = instruction + 1;
+        while( next < a[ instruction ] && opcodes[ next ] == REMOVED ) {
+          next++;
+        }
+        if( next == a[ instruction ] ) {
+          opcodes[ instruction ] = REMOVED;
+        }
+      }
+    }
+    // old address -> address of the first instruction kept at or after it
+    int[] newAddresses = new int[ size + 1 ];
+    int kept = 0;
+    for( int instruction = 0; instruction < size; instruction++ ) {
+      newAddresses[ instruction ] = kept;
+      if( opcodes[ instruction ] != REMOVED ) {
+        opcodes[ kept ] = opcodes[ instruction ];
+        a[ kept ] = a[ instruction ];
+        b[ kept ] = b[ instruction ];
+        c[ kept ] = c[ instruction ];
+        kept++;
+      }
+    }
+    newAddresses[ size ] = kept;
+    size = kept;
+    for( int instruction = 0; instruction < size; instruction++ ) {
+      if( opcodes[ instruction ] == RegisterProgram.JUMP || opcodes[ instruction ] == RegisterProgram.JUMPF ) {
+        a[ instruction ] = newAddresses[ a[ instruction ] ];
+      }
+    }
+    for( RegisterProgram.SwitchTable table : switchTables ) {
+      table.defaultAddress = newAddresses[ table.defaultAddress ];
+      for( int i = 0; i < table.caseAddresses.length; i++ ) {
+        table.caseAddresses[ i ] = newAddresses[ table.caseAddresses[ i ] ];
+      }
+    }
+    for( RegisterProgram.CallSite callSite : callSites ) {
+      callSite.address = newAddresses[ callSite.address ];
+    }
+  }
+
+  private void lowerCode( int pc, int height ) {
+    int operand = flatProgram.operands[ pc ];
+    switch( flatProgram.opcodes[ pc ] ) {
+      case FlatProgram.LIT:
+        slots[ height ] = constant( operand );
+        break;
+      case FlatProgram.LOAD:
+        slots[ height ] = slots[ operand ];
+        break;
+      case FlatProgram.STORE:
+        store( operand, height );
+        break;
+      case FlatProgram.POP:
+        resetSlots( height - operand );
+        break;
+      case FlatProgram.CALL: {
+        int numArgs = functions.get( operand );
+        emit( RegisterProgram.CALL, height - numArgs, callSite( operand, height - numArgs, height ), 0 );
+        resetSlots( height - numArgs );
+        break;
+      }
+      case FlatProgram.TAILCALL: {
+        int numArgs = functions.get( operand );
+        emit( RegisterProgram.TAILCALL, 0, callSite( operand, height - numArgs, height ), 0 );
+        resetSlots( 0 );
+        break;
+      }
+      case FlatProgram.RETURN:
+        emit( RegisterProgram.RET, 0, slots[ height - 1 ], 0 );
+        resetSlots( 0 );
+        break;
+      case FlatProgram.GOTO:
+        materialize( height );
+        emit( RegisterProgram.JUMP, operand + 1, 0, 0 );
+        break;
+      case FlatProgram.FALSEBRANCH: {
+        int condition = slots[ height - 1 ];
+        materialize( height - 1 );
+        emit( RegisterProgram.JUMPF, operand + 1, condition, 0 );
+        resetSlots( height - 1 );
+        break;
+      }
+      case FlatProgram.SWITCH: {
+        int value = slots[ height - 1 ];
+        materialize( height - 1 );
+        emit( RegisterProgram.SWITCH, switchTable( (SwitchByteCode) flatProgram.codes[ pc ] ), value, 0 );
+        resetSlots( 0 );
+        break;
+      }
+      case FlatProgram.ADD:
+        emitOperation( RegisterProgram.ADD, height );
+        break;
+      case FlatProgram.SUB:
+        emitOperation( RegisterProgram.SUB, height );
+        break;
+      case FlatProgram.MUL:
+        emitOperation( RegisterProgram.MUL, height );
+        break;
+      case FlatProgram.DIV:
+        emitOperation( RegisterProgram.DIV, height );
+        break;
+      case FlatProgram.EQ:
+        emitOperation( RegisterProgram.EQ, height );
+        break;
+      case FlatProgram.NE:
+        emitOperation( RegisterProgram.NE, height );
+        break;
+      case FlatProgram.GE:
+        emitOperation( RegisterProgram.GE, height );
+        break;
+      case FlatProgram.LE:
+        emitOperation( RegisterProgram.LE, height );
+        break;
+      case FlatProgram.GT:
+        emitOperation( RegisterProgram.GT, height );
+        break;
+      case FlatProgram.LT:
+        emitOperation( RegisterProgram.LT, height );
+        break;
+      case FlatProgram.OR:
+        emitOperation( RegisterProgram.OR, height );
+        break;
+      case FlatProgram.AND:
+        emitOperation( RegisterProgram.AND, height );
+        break;
+      case FlatProgram.READ:
+        emit( RegisterProgram.READ, height, 0, 0 );
+        slots[ height ] = height;
+        break;
+      case FlatProgram.WRITE:
+        emit( RegisterProgram.WRITE, 0, slots[ height - 1 ], 0 );
+        slots[ height - 1 ] = height - 1;
+        break;
+      case FlatProgram.HALT:
+        emit( RegisterProgram.HALT, 0, 0, 0 );
+        resetSlots( 0 );
+        break;
+      default:
+        // NOP, DUMP OFF and ARGS, whose arguments are taken by the CALL
+        break;
+    }
+  }
+
+  /**
+   * STORE offset: a value computed by the previous instruction is written
+   * straight into the stored register, anything else is moved there. Slots
+   * still referring to the old value of the register get it moved into
+   * their own registers first.
+   */
+  private void store( int offset, int height ) {
+    int value = slots[ height - 1 ];
+    for( int slot = 0; slot < height - 1; slot++ ) {
+      if( slot != offset && slots[ slot ] == offset ) {
+        emit( RegisterProgram.MOVE, slot, offset, 0 );
+        slots[ slot ] = slot;
+      }
+    }
+    int last = size - 1;
+    if( value == height - 1 && last >= blockStart && writesRegister( opcodes[ last ] ) && a[ last ] == value ) {
+      a[ last ] = offset;
+    } else if( value != offset ) {
+      emit( RegisterProgram.MOVE, offset, value, 0 );
+    }
+    slots[ offset ] = offset;
+    slots[ height - 1 ] = height - 1;
+  }
+
+  static boolean writesRegister( int opcode ) {
+    return opcode <= RegisterProgram.AND || opcode == RegisterProgram.CALL || opcode == RegisterProgram.READ;
+  }
+
+  private void emitOperation( int opcode, int height ) {
+    emit( opcode, height - 2, slots[ height - 2 ], slots[ height - 1 ] );
+    slots[ height - 2 ] = height - 2;
+    slots[ height - 1 ] = height - 1;
+  }
+
+  /**
+   * Moves the values of the slots below height that are only referred to
+   * into their registers. Slots only ever refer to registers below them,
+   * which hold their own values, so the order of the moves does not matter.
+   */
+  private void materialize( int height ) {
+    for( int slot = 0; slot < height; slot++ ) {
+      if( slots[ slot ] != slot ) {
+        emit( RegisterProgram.MOVE, slot, slots[ slot ], 0 );
+        slots[ slot ] = slot;
+      }
+    }
+  }
+
+  /**
+   * Forgets what the slots from height up referred to, for codes after which
+   * they are popped or not reached.
+   */
+  private void resetSlots( int height ) {
+    for( int slot = height; slot < slots.length; slot++ ) {
+      slots[ slot ] = slot;
+    }
+  }
+
+  private int constant( int value ) {
+    Integer operand = constantOperands.get( value );
+    if( operand == null ) {
+      operand = ~constants.size();
+      constants.add( value );
+      constantOperands.put( value, operand );
+    }
+    return operand;
+  }
+
+  /**
+   * @return the index of a new call site for the function at address, whose
+   * arguments are the values of the slots from firstSlot to height
+   */
+  private int callSite( int address, int firstSlot, int height ) {
+    callSites.add( new RegisterProgram.CallSite( address, Arrays.copyOfRange( slots, firstSlot, height ) ) );
+    return callSites.size() - 1;
+  }
+
+  private int switchTable( SwitchByteCode switchCode ) {
+    RegisterProgram.SwitchTable table = new RegisterProgram.SwitchTable( switchCode.getCaseValues().clone() );
+    table.defaultAddress = switchCode.getDefaultAddress() + 1;
+    for( int i = 0; i < table.caseAddresses.length; i++ ) {
+      table.caseAddresses[ i ] = switchCode.getCaseAddresses()[ i ] + 1;
+    }
+    switchTables.add( table );
+    return switchTables.size() - 1;
+  }
+
+  private void emit( int opcode, int a, int b, int c ) {
+    if( size == opcodes.length ) {
+      opcodes = Arrays.copyOf( opcodes, size * 2 );
+      this.a = Arrays.copyOf( this.a, size * 2 );
+      this.b = Arrays.copyOf( this.b, size * 2 );
+      this.c = Arrays.copyOf( this.c, size * 2 );
+    }
+    opcodes[ size ] = opcode;
+    this.a[ size ] = a;
+    this.b[ size ] = b;
+    this.c[ size ] = c;
+    size++;
+  }
+
+}
@@ -0,0 +1,164 @@
+package interpreter;
+
+/**
+ * A program for RegisterVirtualMachine: three-address instructions held in
+ * parallel arrays, where each instruction reads up to two source operands
+ * and writes a destination register of the current frame, e.g.
+ *   SUB r2, r0, #1
+ * replaces LOAD 0 n / LIT 1 / BOP - of the stack code.
+ *
+ * A destination is always a register. A source operand is a register when
+ * it is >= 0 and a constant otherwise, ~operand indexing the constants
+ * array. Calls are described by a CallSite each; the called function gets a
+ * fresh frame above the caller's, with its arguments copied into its first
+ * registers.
+ *
+ * Built from a loaded Program by RegisterCompiler.
+ */
+public class RegisterProgram {
+
+  public static final int MOVE = 0;
+  public static final int ADD = 1;
+  public static final int SUB = 2;
+  public static final int MUL = 3;
+  public static final int DIV = 4;
+  public static final int EQ = 5;
+  public static final int NE = 6;
+  public static final int GE = 7;
+  public static final int LE = 8;
+  public static final int GT = 9;
+  public static final int LT = 10;
+  public static final int OR = 11;
+  public static final int AND = 12;
+  public static final int JUMP = 13;
+  public static final int JUMPF = 14;
+  public static final int SWITCH = 15;
+  public static final int CALL = 16;
+  public static final int TAILCALL = 17;
+  public static final int RET = 18;
+  public static final int READ = 19;
+  public static final int WRITE = 20;
+  public static final int HALT = 21;
+
+  private static final String[] NAMES = {
+    "MOVE", "ADD", "SUB", "MUL", "DIV", "EQ", "NE", "GE", "LE", "GT", "LT", "OR", "AND",
+    "JUMP", "JUMPF", "SWITCH", "CALL", "TAILCALL", "RET", "READ", "WRITE", "HALT"
+  };
+
+  /**
+   * The function a CALL or TAILCALL enters and the operands of its
+   * arguments.
+   */
+  static class CallSite {
+
+    int address;
+    int frameSize;
+    final int[] arguments;
+
+    CallSite( int address, int[] arguments ) {
+      this.address = address;
+      this.arguments = arguments;
+    }
+
+  }
+
+  /**
+   * The targets of a SWITCH, with the case values sorted for a binary search.
+   */
+  static class SwitchTable {
+
+    int defaultAddress;
+    final int[] caseValues;
+    final int[] caseAddresses;
+
+    SwitchTable( int[] caseValues ) {
+      this.caseValues = caseValues;
+      caseAddresses = new int[ caseValues.length ];
+    }
+
+  }
+
+  // instruction i is opcodes[i] a[i], b[i], c[i]: JUMP a, JUMPF a if b,
+  // SWITCH on b through table a, CALL a = call site b, TAILCALL b, RET b,
+  // READ a, WRITE b and a = b op c for the others
+  final int[] opcodes;
+  final int[] a;
+  final int[] b;
+  final int[] c;
+  final int[] constants;
+  final CallSite[] callSites;
+  final SwitchTable[] switchTables;
+  final int mainFrameSize;
+
+  RegisterProgram( int[] opcodes, int[] a, int[] b, int[] c, int[] constants, CallSite[] callSites,
+      SwitchTable[] switchTables, int mainFrameSize ) {
+    this.opcodes = opcodes;
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    this.constants = constants;
+    this.callSites = callSites;
+    this.switchTables = switchTables;
+    this.mainFrameSize = mainFrameSize;
+  }
+
+  public int size() {
+    return opcodes.length;
+  }
+
+  private String operand( int operand ) {
+    return operand >= 0 ? "r" + operand : "#" + constants[ ~operand ];
+  }
+
+  public String instructionToString( int address ) {
+    String name = NAMES[ opcodes[ address ] ];
+    switch( opcodes[ address ] ) {
+      case MOVE:
+        return String.format( "%s r%d, %s", name, a[ address ], operand( b[ address ] ) );
+      case JUMP:
+        return String.format( "%s %d", name, a[ address ] );
+      case JUMPF:
+        return String.format( "%s %d, %s", name, a[ address ], operand( b[ address ] ) );
+      case SWITCH: {
+        SwitchTable table = switchTables[ a[ address ] ];
+        StringBuilder text = new StringBuilder( name ).append( " " ).append( operand( b[ address ] ) );
+        for( int i = 0; i < table.caseValues.length; i++ ) {
+          text.append( String.format( ", %d: %d", table.caseValues[ i ], table.caseAddresses[ i ] ) );
+        }
+        return text.append( ", default: " ).append( table.defaultAddress ).toString();
+      }
+      case CALL:
+      case TAILCALL: {
+        CallSite callSite = callSites[ b[ address ] ];
+        StringBuilder text = new StringBuilder( name ).append( " " );
+        if( opcodes[ address ] == CALL ) {
+          text.append( "r" ).append( a[ address ] ).append( ", " );
+        }
+        text.append( callSite.address ).append( "(" );
+        for( int i = 0; i < callSite.arguments.length; i++ ) {
+          text.append( i > 0 ? ", " : "" ).append( operand( callSite.arguments[ i ] ) );
+        }
+        return text.append( ")" ).toString();
+      }
+      case RET:
+      case WRITE:
+        return String.format( "%s %s", name, operand( b[ address ] ) );
+      case READ:
+        return String.format( "%s r%d", name, a[ address ] );
+      case HALT:
+        return name;
+      default:
+        return String.format( "%s r%d, %s, %s", name, a[ address ], operand( b[ address ] ), operand( c[ address ] ) );
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    for( int address = 0; address < opcodes.length; address++ ) {
+      text.append( String.format( "%4d  %s%n", address, instructionToString( address ) ) );
+    }
+    return text.toString();
+  }
+
+}
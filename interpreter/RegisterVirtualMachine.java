@@ -0,0 +1,197 @@
+package interpreter;
+
+import java.util.Arrays;
+
+/**
+ * Execution engine for a RegisterProgram, the register machine counterpart
+ * of VirtualMachine. The registers of all active frames live in one int
+ * array; a frame is the window starting at base, and a call opens the
+ * callee's frame just above the caller's, copying the arguments into its
+ * first registers. For each active call the address of the CALL, the
+ * caller's base and the caller's frame size are kept in a second int
+ * array, so returning writes the result into the CALL's destination
+ * register and continues after it.
+ */
+public class RegisterVirtualMachine {
+
+  protected RegisterProgram program;
+  protected int[] registers = new int[ 256 ];
+  // CALL address, caller base and caller frame size of each active call
+  protected int[] calls = new int[ 3 * 64 ];
+  // where WRITE goes and READ reads from, as in VirtualMachine
+  protected OutputSink output;
+  protected InputSource input;
+
+  public RegisterVirtualMachine( RegisterProgram program ) {
+    this.program = program;
+    output = OutputSink.toConsole();
+    input = InputSource.fromConsole();
+  }
+
+  public void setOutput( OutputSink output ) {
+    this.output = output;
+  }
+
+  public void setInput( InputSource input ) {
+    this.input = input;
+  }
+
+  public void executeProgram() {
+    try {
+      execute();
+    } finally {
+      output.flush();
+    }
+  }
+
+  private void execute() {
+    final int[] opcodes = program.opcodes;
+    final int[] a = program.a;
+    final int[] b = program.b;
+    final int[] c = program.c;
+    final int[] constants = program.constants;
+    int[] registers = ensureCapacity( program.mainFrameSize );
+    int[] calls = this.calls;
+    int callsTop = 0;
+    int base = 0;
+    int frameSize = program.mainFrameSize;
+    int pc = 0;
+    while ( true ) {
+      switch( opcodes[ pc ] ) {
+        case RegisterProgram.MOVE:
+          registers[ base + a[ pc ] ] = value( registers, base, constants, b[ pc ] );
+          break;
+        case RegisterProgram.ADD:
+          registers[ base + a[ pc ] ] = value( registers, base, constants, b[ pc ] )
+              + value( registers, base, constants, c[ pc ] );
+          break;
+        case RegisterProgram.SUB:
+          registers[ base + a[ pc ] ] = value( registers, base, constants, b[ pc ] )
+              - value( registers, base, constants, c[ pc ] );
+          break;
+        case RegisterProgram.MUL:
+          registers[ base + a[ pc ] ] = value( registers, base, constants, b[ pc ] )
+              * value( registers, base, constants, c[ pc ] );
+          break;
+        case RegisterProgram.DIV:
+          registers[ base + a[ pc ] ] = value( registers, base, constants, b[ pc ] )
+              / value( registers, base, constants, c[ pc ] );
+          break;
+        case RegisterProgram.EQ:
+          registers[ base + a[ pc ] ] = value( registers, base, constants, b[ pc ] )
+              == value( registers, base, constants, c[ pc ] ) ? 1 : 0;
+          break;
+        case RegisterProgram.NE:
+          registers[ base + a[ pc ] ] = value( registers, base, constants, b[ pc ] )
+              != value( registers, base, constants, c[ pc ] ) ? 1 : 0;
+          break;
+        case RegisterProgram.GE:
+          registers[ base + a[ pc ] ] = value( registers, base, constants, b[ pc ] )
+              >= value( registers, base, constants, c[ pc ] ) ? 1 : 0;
+          break;
+        case RegisterProgram.LE:
+          registers[ base + a[ pc ] ] = value( registers, base, constants, b[ pc ] )
+              <= value( registers, base, constants, c[ pc ] ) ? 1 : 0;
+          break;
+        case RegisterProgram.GT:
+          registers[ base + a[ pc ] ] = value( registers, base, constants, b[ pc ] )
+              > value( registers, base, constants, c[ pc ] ) ? 1 : 0;
+          break;
+        case RegisterProgram.LT:
+          registers[ base + a[ pc ] ] = value( registers, base, constants, b[ pc ] )
+              < value( registers, base, constants, c[ pc ] ) ? 1 : 0;
+          break;
+        case RegisterProgram.OR:
+          registers[ base + a[ pc ] ] = ( value( registers, base, constants, b[ pc ] )
+              + value( registers, base, constants, c[ pc ] ) ) >= 1 ? 1 : 0;
+          break;
+        case RegisterProgram.AND:
+          registers[ base + a[ pc ] ] = ( value( registers, base, constants, b[ pc ] )
+              * value( registers, base, constants, c[ pc ] ) ) >= 1 ? 1 : 0;
+          break;
+        case RegisterProgram.JUMP:
+          pc = a[ pc ];
+          continue;
+        case RegisterProgram.JUMPF:
+          if( value( registers, base, constants, b[ pc ] ) == 0 ) {
+            pc = a[ pc ];
+            continue;
+          }
+          break;
+        case RegisterProgram.SWITCH: {
+          RegisterProgram.SwitchTable table = program.switchTables[ a[ pc ] ];
+          int index = Arrays.binarySearch( table.caseValues, value( registers, base, constants, b[ pc ] ) );
+          pc = index >= 0 ? table.caseAddresses[ index ] : table.defaultAddress;
+          continue;
+        }
+        case RegisterProgram.CALL: {
+          RegisterProgram.CallSite callSite = program.callSites[ b[ pc ] ];
+          int calleeBase = base + frameSize;
+          registers = ensureCapacity( calleeBase + callSite.frameSize );
+          int[] arguments = callSite.arguments;
+          for( int i = 0; i < arguments.length; i++ ) {
+            registers[ calleeBase + i ] = value( registers, base, constants, arguments[ i ] );
+          }
+          if( callsTop == calls.length ) {
+            calls = this.calls = Arrays.copyOf( calls, calls.length * 2 );
+          }
+          calls[ callsTop++ ] = pc;
+          calls[ callsTop++ ] = base;
+          calls[ callsTop++ ] = frameSize;
+          base = calleeBase;
+          frameSize = callSite.frameSize;
+          pc = callSite.address;
+          continue;
+        }
+        case RegisterProgram.TAILCALL: {
+          RegisterProgram.CallSite callSite = program.callSites[ b[ pc ] ];
+          int[] arguments = callSite.arguments;
+          // the arguments are gathered above the frame first, as they may
+          // be read from the registers they are copied into
+          int scratch = base + frameSize;
+          registers = ensureCapacity( Math.max( scratch + arguments.length, base + callSite.frameSize ) );
+          for( int i = 0; i < arguments.length; i++ ) {
+            registers[ scratch + i ] = value( registers, base, constants, arguments[ i ] );
+          }
+          System.arraycopy( registers, scratch, registers, base, arguments.length );
+          frameSize = callSite.frameSize;
+          pc = callSite.address;
+          continue;
+        }
+        case RegisterProgram.RET: {
+          int result = value( registers, base, constants, b[ pc ] );
+          frameSize = calls[ --callsTop ];
+          base = calls[ --callsTop ];
+          pc = calls[ --callsTop ];
+          registers[ base + a[ pc ] ] = result;
+          break;
+        }
+        case RegisterProgram.READ:
+          output.beforeRead();
+          registers[ base + a[ pc ] ] = input.readInt();
+          break;
+        case RegisterProgram.WRITE:
+          output.write( value( registers, base, constants, b[ pc ] ) );
+          break;
+        case RegisterProgram.HALT:
+          return;
+      }
+      pc++;
+    }
+  }
+
+  private static int value( int[] registers, int base, int[] constants, int operand ) {
+    return operand >= 0 ? registers[ base + operand ] : constants[ ~operand ];
+  }
+
+  /**
+   * Grows the register file to hold at least size registers.
+   */
+  private int[] ensureCapacity( int size ) {
+    if( size > registers.length ) {
+      registers = Arrays.copyOf( registers, Math.max( size, registers.length * 2 ) );
+    }
+    return registers;
+  }
+
+}
@@ -1,22 +1,38 @@
 package interpreter;
 
-import java.util.Stack;
-import java.util.Vector;
+import java.util.Arrays;
 
 public class RunTimeStack {
 
-  private Stack<Integer> framePointers;
-  // This may not be the right parameterized type!!
-  private Vector<Object> runStack;
-  //private Stack<Object> runStack;
-  
+  private static final int INITIAL_CAPACITY = 64;
+
+  /* A record for each frame: where it starts, the address its CALL returns
+   * to and the address of the function it belongs to. The main program's
+   * frame is the first, which no CALL made.
+   */
+  private int[] framePointers;
+  private int[] returnAddresses;
+  private int[] functionAddresses;
+  private int frameCount;
+  private int[] runStack;
+  /* String and Character literals are the only values that are not ints;
+   * they are kept in this side table, parallel to runStack. A null entry
+   * means the slot holds the int found in runStack.
+   */
+  private Object[] references;
+  private int size;
+
   // framePointers  [0      3        7  ]
   // runStack       [1 2 0][3 4 7 1][0 0]
 
   public RunTimeStack() {
-    framePointers = new Stack<>();
-    framePointers.add( 0 );
-    runStack = new Vector<>();
+    framePointers = new int[ INITIAL_CAPACITY ];
+    returnAddresses = new int[ INITIAL_CAPACITY ];
+    functionAddresses = new int[ INITIAL_CAPACITY ];
+    frameCount = 1;
+    runStack = new int[ INITIAL_CAPACITY ];
+    references = new Object[ INITIAL_CAPACITY ];
+    size = 0;
   }
 
   /**
@@ -28,23 +44,23 @@ public class RunTimeStack {
   public String toString() {
     String result = "";
     // Loop through all frame pointers
-    for( int i=0; i<framePointers.size(); i++ ) {
+    for( int i=0; i<frameCount; i++ ) {
       // Get frame start index
-      int frameStart = framePointers.get( i );
+      int frameStart = framePointers[ i ];
       int frameEnd;
       boolean addFrameSeparator = false;
       /* Frame end index is either the end of the runStack or the
        * next frame start minus 1.
        */
-      if( i == framePointers.size() - 1 ) {
-        frameEnd = runStack.size() - 1;
+      if( i == frameCount - 1 ) {
+        frameEnd = size - 1;
       } else {
-        frameEnd = framePointers.get( i + 1 ) - 1;
+        frameEnd = framePointers[ i + 1 ] - 1;
         addFrameSeparator = true;
       }
       result += '[';
       for( int j=frameStart;j<=frameEnd;j++ ) {
-        result += runStack.get( j );
+        result += get( j );
         if( j!= frameEnd ) {
           result += ',';
         }
@@ -55,78 +71,216 @@ public class RunTimeStack {
     return result;
   }
 
+  private Object get( int index ) {
+    Object reference = references[ index ];
+    return reference != null ? reference : runStack[ index ];
+  }
+
+  private void ensureCapacity( int capacity ) {
+    if( capacity > runStack.length ) {
+      int newLength = Math.max( capacity, runStack.length * 2 );
+      runStack = Arrays.copyOf( runStack, newLength );
+      references = Arrays.copyOf( references, newLength );
+    }
+  }
+
+  private int frameStart() {
+    return framePointers[ frameCount - 1 ];
+  }
+
+  private int slot( int offset ) {
+    int location = frameStart() + offset;
+    if( location >= size ) {
+      throw new ArrayIndexOutOfBoundsException( "Array index out of range: " + location );
+    }
+    return location;
+  }
+
+  /**
+   * Returns a copy of the values in the top frame, or null when one of them
+   * is a String or Character rather than an int.
+   */
+  public int[] copyFrame() {
+    int frameStart = frameStart();
+    for( int i = frameStart; i < size; i++ ) {
+      if( references[ i ] != null ) {
+        return null;
+      }
+    }
+    return Arrays.copyOfRange( runStack, frameStart, size );
+  }
+
   /**
    * Returns the top item on the runtime stack.
    */
   public Object peek() {
-    return runStack.lastElement();
+    return get( size - 1 );
+  }
+
+  /**
+   * Returns the top item on the runtime stack as an int without boxing it.
+   */
+  public int peekInt() {
+    return runStack[ size - 1 ];
   }
 
   /**
    * Pops the top item from the runtime stack, returning the item.
    */
   public Object pop() {
-    Object result = runStack.lastElement();
-    runStack.remove( runStack.size() - 1 );
+    Object result = peek();
+    references[ --size ] = null;
     return result;
   }
 
+  /**
+   * Pops the top item from the runtime stack as an int without boxing it.
+   */
+  public int popInt() {
+    references[ --size ] = null;
+    return runStack[ size ];
+  }
+
   /**
    * Push an item on to the runtime stack, returning the item that was just 
    * pushed.
    */
   public Object push( Object item ) {
-    return runStack.add( item ) ? peek() : null;
+    if( item instanceof Integer ) {
+      push( ( (Integer) item ).intValue() );
+      return item;
+    }
+    ensureCapacity( size + 1 );
+    runStack[ size ] = 0;
+    references[ size ] = item;
+    size++;
+    return item;
   }
 
   /**
-   * This second form with an Integer parameter is used to load literals onto the
-   * stack.
+   * This second form with an int parameter is used to load literals and
+   * computed values onto the stack without boxing them.
    */
-//  public Integer push( Integer i ) {
-//    return push( i );
-//  }
+  public int push( int item ) {
+    ensureCapacity( size + 1 );
+    runStack[ size++ ] = item;
+    return item;
+  }
 
   /**
    * Start a new frame, where the parameter offset is the number of slots
    * down from the top of the RunTimeStack for starting the new frame.
    */
   public void newFrameAt( int offset ) {
-    framePointers.push( runStack.size() - offset );
+    if( frameCount == framePointers.length ) {
+      framePointers = Arrays.copyOf( framePointers, frameCount * 2 );
+      returnAddresses = Arrays.copyOf( returnAddresses, frameCount * 2 );
+      functionAddresses = Arrays.copyOf( functionAddresses, frameCount * 2 );
+    }
+    framePointers[ frameCount ] = size - offset;
+    returnAddresses[ frameCount ] = -1;
+    functionAddresses[ frameCount ] = -1;
+    frameCount++;
+  }
+
+  /**
+   * Records the CALL of the function at functionAddress in the frame that
+   * ARGS started for it, and the address to return to.
+   */
+  public void call( int returnAddress, int functionAddress ) {
+    returnAddresses[ frameCount - 1 ] = returnAddress;
+    functionAddresses[ frameCount - 1 ] = functionAddress;
+  }
+
+  /**
+   * The number of calls in progress, not counting the main program.
+   */
+  public int getCallDepth() {
+    return frameCount - 1;
+  }
+
+  /**
+   * The address the call at depth, from 1 for the outermost up to
+   * getCallDepth(), returns to.
+   */
+  public int getReturnAddress( int depth ) {
+    return returnAddresses[ depth ];
+  }
+
+  /**
+   * The address of the function called at depth, or -1 while the frame
+   * only holds the arguments of a CALL still to come.
+   */
+  public int getFunctionAddress( int depth ) {
+    return functionAddresses[ depth ];
   }
 
   /**
    * We pop the top frame when we return from a function; before popping, the
-   * functions’ return value is at the top of the stack so we’ll save the value,
+   * functions' return value is at the top of the stack so we'll save the value,
    * pop the top frame, and then push the return value.
+   * @return the address the frame's CALL returns to
    */
-  public void popFrame() {
-    Object value = runStack.lastElement();
-    while( runStack.size() != framePointers.peek() ) {
-      pop();
-    }
-    framePointers.pop();
-    push( value );
+  public int popFrame() {
+    int value = runStack[ size - 1 ];
+    Object reference = references[ size - 1 ];
+    int frameStart = framePointers[ --frameCount ];
+    Arrays.fill( references, frameStart, size, null );
+    size = frameStart;
+    ensureCapacity( size + 1 );
+    runStack[ size ] = value;
+    references[ size ] = reference;
+    size++;
+    return returnAddresses[ frameCount ];
+  }
+
+  /**
+   * Used by a tail call: the frame just started by ARGS, which holds the
+   * arguments, takes the place of the frame below it, so the called function
+   * returns straight to the caller of the function making the tail call.
+   * The frame keeps the caller's return address and now belongs to the
+   * function at functionAddress.
+   */
+  public void replaceFrame( int functionAddress ) {
+    int argsStart = framePointers[ --frameCount ];
+    functionAddresses[ frameCount - 1 ] = functionAddress;
+    int frameStart = frameStart();
+    int numArgs = size - argsStart;
+    System.arraycopy( runStack, argsStart, runStack, frameStart, numArgs );
+    System.arraycopy( references, argsStart, references, frameStart, numArgs );
+    Arrays.fill( references, frameStart + numArgs, size, null );
+    size = frameStart + numArgs;
   }
 
   /**
    * Used to store into variables.
    */
-  public Object store( int offset ) {
-    int frameStart = framePointers.peek();
-    int storeLocation = frameStart + offset;
-    Object value = pop();
-//    System.out.println( String.format("Storing value: %s at offset %d from frameStart %d. Length is %d", value, offset, frameStart, runStack.size()));
-//    System.out.println( toString() );
-    return runStack.set( storeLocation, value );
+  public int store( int offset ) {
+    int top = --size;
+    int storeLocation = slot( offset );
+    runStack[ storeLocation ] = runStack[ top ];
+    references[ storeLocation ] = references[ top ];
+    references[ top ] = null;
+    return runStack[ storeLocation ];
+  }
+
+  /**
+   * Returns the int in a variable without pushing it, for the
+   * superinstructions that use it as an operand straight away.
+   */
+  public int loadInt( int offset ) {
+    return runStack[ slot( offset ) ];
   }
 
   /**
    * Used to load variables onto the stack.
    */
-  public Object load( int offset ) {
-    int frameStart = framePointers.peek();
-    runStack.add( runStack.get( frameStart + offset ) );
-    return peek();
+  public int load( int offset ) {
+    int loadLocation = slot( offset );
+    ensureCapacity( size + 1 );
+    runStack[ size ] = runStack[ loadLocation ];
+    references[ size ] = references[ loadLocation ];
+    size++;
+    return runStack[ loadLocation ];
   }
-}
\ No newline at end of file
+}
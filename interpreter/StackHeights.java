@@ -0,0 +1,156 @@
+package interpreter;
+
+import interpreter.bytecode.SwitchByteCode;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Within a function the height of the runtime stack, counted from the start
+ * of its frame, is the same every time a given code is reached. JitCompiler
+ * and RegisterCompiler both work that height out for every code so they can
+ * map each frame slot onto a JVM local or a register.
+ *
+ * Codes they cannot translate make the analysis throw
+ * UnsupportedCodeException.
+ */
+class StackHeights {
+
+  /**
+   * Follows every path through the function and records the stack height
+   * before each code it reaches; -1 marks codes outside the function. Each
+   * function called is entered into functions with its number of arguments
+   * and pushed onto newFunctions the first time it is seen.
+   */
+  static int[] compute( FlatProgram flatProgram, int address, int numArgs, boolean isMain,
+      HashMap<Integer,Integer> functions, ArrayDeque<Integer> newFunctions ) throws UnsupportedCodeException {
+    final int[] opcodes = flatProgram.opcodes;
+    final int[] operands = flatProgram.operands;
+    int[] heights = new int[ opcodes.length ];
+    Arrays.fill( heights, -1 );
+    ArrayDeque<Integer> pending = new ArrayDeque<>();
+    setHeight( heights, pending, address, numArgs );
+    while( !pending.isEmpty() ) {
+      int pc = pending.pop();
+      int height = heights[ pc ];
+      int operand = operands[ pc ];
+      switch( opcodes[ pc ] ) {
+        case FlatProgram.DUMP:
+          if( operand != 0 ) {
+            throw new UnsupportedCodeException( pc, "dump output is only produced when interpreting" );
+          }
+          setHeight( heights, pending, pc + 1, height );
+          break;
+        case FlatProgram.NOP:
+          setHeight( heights, pending, pc + 1, height );
+          break;
+        case FlatProgram.LIT:
+        case FlatProgram.READ:
+          setHeight( heights, pending, pc + 1, height + 1 );
+          break;
+        case FlatProgram.LOAD:
+          requireSlot( pc, operand, height );
+          setHeight( heights, pending, pc + 1, height + 1 );
+          break;
+        case FlatProgram.STORE:
+          requireSlot( pc, operand, height - 1 );
+          setHeight( heights, pending, pc + 1, height - 1 );
+          break;
+        case FlatProgram.POP:
+          requireSlot( pc, operand - 1, height );
+          setHeight( heights, pending, pc + 1, height - operand );
+          break;
+        case FlatProgram.ARGS:
+          requireSlot( pc, operand - 1, height );
+          if( opcodes[ pc + 1 ] != FlatProgram.CALL && opcodes[ pc + 1 ] != FlatProgram.TAILCALL ) {
+            throw new UnsupportedCodeException( pc, "ARGS is not followed by CALL" );
+          }
+          setHeight( heights, pending, pc + 1, height );
+          break;
+        case FlatProgram.CALL:
+        case FlatProgram.TAILCALL: {
+          int callArgs = operands[ pc - 1 ];
+          Integer knownArgs = functions.putIfAbsent( operand, callArgs );
+          if( knownArgs == null ) {
+            newFunctions.push( operand );
+          } else if( knownArgs != callArgs ) {
+            throw new UnsupportedCodeException( pc, "function called with different numbers of arguments" );
+          }
+          if( opcodes[ pc ] == FlatProgram.CALL ) {
+            setHeight( heights, pending, pc + 1, height - callArgs + 1 );
+          } else if( isMain ) {
+            throw new UnsupportedCodeException( pc, "TAILCALL outside of a function" );
+          }
+          break;
+        }
+        case FlatProgram.RETURN:
+          if( isMain ) {
+            throw new UnsupportedCodeException( pc, "RETURN outside of a function" );
+          }
+          requireSlot( pc, 0, height );
+          break;
+        case FlatProgram.GOTO:
+          setHeight( heights, pending, operand + 1, height );
+          break;
+        case FlatProgram.FALSEBRANCH:
+          requireSlot( pc, 0, height );
+          setHeight( heights, pending, operand + 1, height - 1 );
+          setHeight( heights, pending, pc + 1, height - 1 );
+          break;
+        case FlatProgram.ADD:
+        case FlatProgram.SUB:
+        case FlatProgram.MUL:
+        case FlatProgram.DIV:
+        case FlatProgram.EQ:
+        case FlatProgram.NE:
+        case FlatProgram.GE:
+        case FlatProgram.LE:
+        case FlatProgram.GT:
+        case FlatProgram.LT:
+        case FlatProgram.OR:
+        case FlatProgram.AND:
+          requireSlot( pc, 1, height );
+          setHeight( heights, pending, pc + 1, height - 1 );
+          break;
+        case FlatProgram.WRITE:
+          requireSlot( pc, 0, height );
+          setHeight( heights, pending, pc + 1, height - 1 );
+          break;
+        case FlatProgram.SWITCH: {
+          requireSlot( pc, 0, height );
+          SwitchByteCode switchCode = (SwitchByteCode) flatProgram.codes[ pc ];
+          setHeight( heights, pending, switchCode.getDefaultAddress() + 1, height - 1 );
+          for( int caseAddress : switchCode.getCaseAddresses() ) {
+            setHeight( heights, pending, caseAddress + 1, height - 1 );
+          }
+          break;
+        }
+        case FlatProgram.HALT:
+          break;
+        default:
+          throw new UnsupportedCodeException( pc, "no translation" );
+      }
+    }
+    return heights;
+  }
+
+  private static void setHeight( int[] heights, ArrayDeque<Integer> pending, int pc, int height ) throws UnsupportedCodeException {
+    if( pc < 0 || pc >= heights.length ) {
+      throw new UnsupportedCodeException( pc, "control runs off the end of the program" );
+    }
+    if( heights[ pc ] < 0 ) {
+      heights[ pc ] = height;
+      pending.push( pc );
+    } else if( heights[ pc ] != height ) {
+      throw new UnsupportedCodeException( pc, "reached with different stack heights" );
+    }
+  }
+
+  private static void requireSlot( int pc, int slot, int height ) throws UnsupportedCodeException {
+    if( slot >= height ) {
+      throw new UnsupportedCodeException( pc, "refers to a slot outside of its frame" );
+    }
+  }
+
+}
@@ -0,0 +1,76 @@
+package interpreter;
+
+import interpreter.bytecode.*;
+
+import java.util.ArrayList;
+import java.util.Vector;
+
+/**
+ * Fuses the commonest runs of codes into superinstructions once a program is
+ * loaded, so the stack engines dispatch once where they dispatched two or
+ * three times:
+ * <pre>
+ *   LOAD n x; LIT k; BOP op   becomes   LOAD_LIT_BOP n k op
+ *   BOP cmp; FALSEBRANCH L    becomes   CMP_BRANCH cmp L
+ * </pre>
+ * Jumps only ever go to labels, which are codes of their own, so no jump can
+ * land inside a run. The runs are matched from the start of the program
+ * without overlapping.
+ */
+public class SuperinstructionFuser {
+
+  private ArrayList<String> fusions = new ArrayList<>();
+
+  /**
+   * Fuses the codes of program and resolves its addresses again.
+   * @return the number of superinstructions made
+   */
+  public int fuse( Program program ) {
+    int size = program.size();
+    Vector<ByteCode> codes = new Vector<>( size );
+    int[] newAddresses = new int[ size ];
+    int address = 0;
+    while( address < size ) {
+      ByteCode code = program.getCode( address );
+      ByteCode fused = null;
+      int length = 1;
+      if( address + 2 < size && code instanceof Load && program.getCode( address + 1 ) instanceof Lit
+          && program.getCode( address + 1 ).getOpcode() == FlatProgram.LIT
+          && program.getCode( address + 2 ) instanceof Bop
+          && program.getCode( address + 2 ).getOpcode() != FlatProgram.EXECUTE ) {
+        fused = new LoadLitBop( (Load) code, (Lit) program.getCode( address + 1 ), (Bop) program.getCode( address + 2 ) );
+        length = 3;
+      } else if( address + 1 < size && code instanceof Bop && CmpBranch.isComparison( code.getOpcode() )
+          && program.getCode( address + 1 ) instanceof FalseBranch ) {
+        fused = new CmpBranch( (Bop) code, (FalseBranch) program.getCode( address + 1 ) );
+        length = 2;
+      }
+      for( int i = 0; i < length; i++ ) {
+        newAddresses[ address + i ] = codes.size();
+      }
+      if( fused != null ) {
+        fusions.add( String.format( "%5d: %s", codes.size(), fused ) );
+        codes.add( fused );
+      } else {
+        codes.add( code );
+      }
+      address += length;
+    }
+    program.replaceCodes( codes, newAddresses );
+    program.resolveAddresses();
+    return fusions.size();
+  }
+
+  /**
+   * @return the superinstructions made, one per line with its address and
+   * the codes it stands for
+   */
+  public String getReport() {
+    StringBuilder report = new StringBuilder( String.format( "Fused %d superinstructions", fusions.size() ) );
+    for( String fusion : fusions ) {
+      report.append( '\n' ).append( fusion );
+    }
+    return report.toString();
+  }
+
+}
@@ -0,0 +1,189 @@
+package interpreter;
+
+import interpreter.bytecode.Bop;
+import interpreter.bytecode.ByteCode;
+
+/**
+ * Execution engine that runs a FlatProgram in a single switch based loop
+ * instead of making a virtual execute call per ByteCode, so the whole
+ * interpreter loop can be compiled as one method. While dumping is enabled
+ * the codes are executed one by one, exactly as VirtualMachine does, so the
+ * dump output is unchanged.
+ */
+public class SwitchVirtualMachine extends VirtualMachine {
+
+  protected FlatProgram flatProgram;
+
+  public SwitchVirtualMachine( Program program ) {
+    super( program );
+    flatProgram = new FlatProgram( program );
+  }
+
+  @Override
+  public void executeProgram() {
+    try {
+      while ( isRunning ) {
+        if( dumpEnabled ) {
+          executeDumping();
+        } else {
+          executeFlat();
+        }
+      }
+    } finally {
+      output.flush();
+    }
+  }
+
+  private void executeDumping() {
+    while ( isRunning && dumpEnabled ) {
+      ByteCode code = flatProgram.codes[ pc ];
+      code.execute( this );
+      if( dumpEnabled ) {
+        dump( code );
+      }
+      pc++;
+    }
+  }
+
+  /**
+   * Runs until a code that went through execute() enables dumping or stops
+   * the machine.
+   */
+  private void executeFlat() {
+    final int[] opcodes = flatProgram.opcodes;
+    final int[] operands = flatProgram.operands;
+    final int[] secondOperands = flatProgram.secondOperands;
+    final int[] thirdOperands = flatProgram.thirdOperands;
+    final RunTimeStack stack = runTimeStack;
+    int pc = this.pc;
+    while ( true ) {
+      int operand = operands[ pc ];
+      switch( opcodes[ pc ] ) {
+        case FlatProgram.NOP:
+          break;
+        case FlatProgram.LIT:
+          stack.push( operand );
+          break;
+        case FlatProgram.LOAD:
+          stack.load( operand );
+          break;
+        case FlatProgram.STORE:
+          stack.store( operand );
+          break;
+        case FlatProgram.POP:
+          for( int i = 0; i < operand; i++ ) {
+            stack.popInt();
+          }
+          break;
+        case FlatProgram.ARGS:
+          stack.newFrameAt( operand );
+          break;
+        case FlatProgram.CALL:
+          stack.call( pc, operand );
+          pc = operand - 1;
+          break;
+        case FlatProgram.RETURN:
+          pc = stack.popFrame();
+          break;
+        case FlatProgram.TAILCALL:
+          stack.replaceFrame( operand );
+          pc = operand - 1;
+          break;
+        case FlatProgram.GOTO:
+          pc = operand;
+          break;
+        case FlatProgram.FALSEBRANCH:
+          if( stack.popInt() == 0 ) {
+            pc = operand;
+          }
+          break;
+        case FlatProgram.ADD: {
+          int secondOperand = stack.popInt();
+          stack.push( stack.popInt() + secondOperand );
+          break;
+        }
+        case FlatProgram.SUB: {
+          int secondOperand = stack.popInt();
+          stack.push( stack.popInt() - secondOperand );
+          break;
+        }
+        case FlatProgram.MUL: {
+          int secondOperand = stack.popInt();
+          stack.push( stack.popInt() * secondOperand );
+          break;
+        }
+        case FlatProgram.DIV: {
+          int secondOperand = stack.popInt();
+          stack.push( stack.popInt() / secondOperand );
+          break;
+        }
+        case FlatProgram.EQ: {
+          int secondOperand = stack.popInt();
+          stack.push( stack.popInt() == secondOperand ? 1 : 0 );
+          break;
+        }
+        case FlatProgram.NE: {
+          int secondOperand = stack.popInt();
+          stack.push( stack.popInt() != secondOperand ? 1 : 0 );
+          break;
+        }
+        case FlatProgram.GE: {
+          int secondOperand = stack.popInt();
+          stack.push( stack.popInt() >= secondOperand ? 1 : 0 );
+          break;
+        }
+        case FlatProgram.LE: {
+          int secondOperand = stack.popInt();
+          stack.push( stack.popInt() <= secondOperand ? 1 : 0 );
+          break;
+        }
+        case FlatProgram.GT: {
+          int secondOperand = stack.popInt();
+          stack.push( stack.popInt() > secondOperand ? 1 : 0 );
+          break;
+        }
+        case FlatProgram.LT: {
+          int secondOperand = stack.popInt();
+          stack.push( stack.popInt() < secondOperand ? 1 : 0 );
+          break;
+        }
+        case FlatProgram.OR: {
+          int secondOperand = stack.popInt();
+          stack.push( ( stack.popInt() + secondOperand ) >= 1 ? 1 : 0 );
+          break;
+        }
+        case FlatProgram.AND: {
+          int secondOperand = stack.popInt();
+          stack.push( ( stack.popInt() * secondOperand ) >= 1 ? 1 : 0 );
+          break;
+        }
+        case FlatProgram.LOAD_LIT_BOP:
+          stack.push( Bop.apply( thirdOperands[ pc ], stack.loadInt( operand ), secondOperands[ pc ] ) );
+          break;
+        case FlatProgram.CMP_BRANCH: {
+          int secondOperand = stack.popInt();
+          if( Bop.apply( secondOperands[ pc ], stack.popInt(), secondOperand ) == 0 ) {
+            pc = operand;
+          }
+          break;
+        }
+        default: {
+          ByteCode code = flatProgram.codes[ pc ];
+          this.pc = pc;
+          code.execute( this );
+          if( dumpEnabled || !isRunning ) {
+            if( dumpEnabled ) {
+              dump( code );
+            }
+            this.pc++;
+            return;
+          }
+          pc = this.pc + 1;
+          continue;
+        }
+      }
+      pc++;
+    }
+  }
+
+}
@@ -0,0 +1,185 @@
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Execution engine that starts a program in the switch dispatch loop of
+ * SwitchVirtualMachine and moves its hot parts to JVM code compiled by
+ * JitCompiler, so short programs start at once and long running ones reach
+ * compiled speed.
+ *
+ * Every CALL counts the invocations of the function it calls and every
+ * backward GOTO, which closes a while loop, counts the iterations of the
+ * loop at its header. A function invoked INVOCATION_THRESHOLD times is
+ * compiled, and from then on CALLs to it run the compiled method. When a
+ * loop of the main program iterates BACK_EDGE_THRESHOLD times, the main
+ * program is compiled from the loop header onwards and execution continues
+ * in the compiled code with the current main frame (on-stack replacement).
+ * Whatever JitCompiler rejects simply stays interpreted, and nothing is
+ * promoted while dumping is enabled.
+ *
+ * Compiled functions call each other on the JVM stack, so the program runs
+ * on a DeepStack.
+ */
+public class TieredVirtualMachine extends SwitchVirtualMachine {
+
+  public static final int INVOCATION_THRESHOLD = 1000;
+  public static final int BACK_EDGE_THRESHOLD = 10000;
+
+  // the codes as loaded, for the compiler; flatProgram gets the counting codes
+  private FlatProgram loadedProgram;
+  // the following are indexed by the address of a function or loop header
+  private int[] invocationCounts;
+  private int[] backEdgeCounts;
+  private MethodHandle[] compiledFunctions;
+  private boolean[] notCompilable;
+
+  public TieredVirtualMachine( Program program ) {
+    super( program );
+    loadedProgram = new FlatProgram( program );
+    int size = program.size();
+    invocationCounts = new int[ size ];
+    backEdgeCounts = new int[ size ];
+    compiledFunctions = new MethodHandle[ size ];
+    notCompilable = new boolean[ size ];
+    for( int pc = 0; pc < size; pc++ ) {
+      int opcode = flatProgram.opcodes[ pc ];
+      int operand = flatProgram.operands[ pc ];
+      if( opcode == FlatProgram.CALL && pc > 0 && flatProgram.opcodes[ pc - 1 ] == FlatProgram.ARGS ) {
+        install( pc, new CountingCall( flatProgram.codes[ pc ], operand, flatProgram.operands[ pc - 1 ] ) );
+      } else if( opcode == FlatProgram.GOTO && operand < pc ) {
+        install( pc, new CountingGoTo( flatProgram.codes[ pc ], operand ) );
+      }
+    }
+  }
+
+  /**
+   * Runs the program on a DeepStack.
+   */
+  @Override
+  public void executeProgram() {
+    DeepStack.run( super::executeProgram );
+  }
+
+  /**
+   * Replaces the code at pc; the switch loop runs it through execute().
+   */
+  private void install( int pc, ByteCode code ) {
+    flatProgram.codes[ pc ] = code;
+    flatProgram.opcodes[ pc ] = FlatProgram.EXECUTE;
+  }
+
+  private MethodHandle promoteFunction( int address, int numArgs ) {
+    MethodHandle compiled = JitCompiler.compileFunction( loadedProgram, address, numArgs, output, input );
+    if( compiled == null ) {
+      notCompilable[ address ] = true;
+    } else {
+      compiledFunctions[ address ] = compiled;
+    }
+    return compiled;
+  }
+
+  /**
+   * Continues the main program in compiled code from the loop header at
+   * address, unless that part cannot be compiled.
+   */
+  private void replaceLoop( int address ) {
+    int[] frame = runTimeStack.copyFrame();
+    MethodHandle loop = frame == null ? null : JitCompiler.compileLoop( loadedProgram, address + 1, frame.length, output, input );
+    if( loop == null ) {
+      notCompilable[ address ] = true;
+      return;
+    }
+    try {
+      loop.invokeExact( frame );
+    } catch ( RuntimeException | Error e ) {
+      throw e;
+    } catch ( Throwable e ) {
+      throw new IllegalStateException( e );
+    }
+    isRunning = false;
+  }
+
+  private static int invokeFunction( MethodHandle function, int[] args ) {
+    try {
+      return (int) function.invokeExact( args );
+    } catch ( RuntimeException | Error e ) {
+      throw e;
+    } catch ( Throwable e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * Stands in for a CALL whose ARGS precedes it, running the called
+   * function's compiled method once there is one.
+   */
+  private class CountingCall extends ByteCode {
+
+    private ByteCode call;
+    private int address;
+    private int numArgs;
+
+    CountingCall( ByteCode call, int address, int numArgs ) {
+      this.call = call;
+      this.address = address;
+      this.numArgs = numArgs;
+    }
+
+    @Override
+    public void execute( VirtualMachine vm ) {
+      MethodHandle compiled = compiledFunctions[ address ];
+      if( compiled == null && !notCompilable[ address ] && !dumpEnabled
+          && ++invocationCounts[ address ] >= INVOCATION_THRESHOLD ) {
+        compiled = promoteFunction( address, numArgs );
+      }
+      // ARGS has already started the callee's frame, which holds the arguments
+      int[] args = compiled == null || dumpEnabled ? null : runTimeStack.copyFrame();
+      if( args == null ) {
+        call.execute( vm );
+        return;
+      }
+      runTimeStack.push( invokeFunction( compiled, args ) );
+      runTimeStack.popFrame();
+    }
+
+    @Override
+    public String toString() {
+      return call.toString();
+    }
+
+  }
+
+  /**
+   * Stands in for a GOTO jumping back to the header of a while loop.
+   */
+  private class CountingGoTo extends ByteCode {
+
+    private ByteCode goTo;
+    private int address;
+
+    CountingGoTo( ByteCode goTo, int address ) {
+      this.goTo = goTo;
+      this.address = address;
+    }
+
+    @Override
+    public void execute( VirtualMachine vm ) {
+      goTo.execute( vm );
+      // only loops of the main program are replaced
+      if( ++backEdgeCounts[ address ] >= BACK_EDGE_THRESHOLD && !notCompilable[ address ]
+          && !dumpEnabled && runTimeStack.getCallDepth() == 0 ) {
+        replaceLoop( address );
+      }
+    }
+
+    @Override
+    public String toString() {
+      return goTo.toString();
+    }
+
+  }
+
+}
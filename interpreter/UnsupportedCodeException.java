@@ -0,0 +1,15 @@
+package interpreter;
+
+/**
+ * Thrown by JitCompiler and RegisterCompiler for a code they cannot
+ * translate; the program is then interpreted instead.
+ */
+class UnsupportedCodeException extends Exception {
+
+  private static final long serialVersionUID = 1L;
+
+  UnsupportedCodeException( int pc, String reason ) {
+    super( String.format( "code %d: %s", pc, reason ) );
+  }
+
+}
@@ -23,8 +23,6 @@
  */
 package interpreter;
 
-import java.util.HashMap;
-import java.util.Stack;
 import interpreter.bytecode.ByteCode;
 import interpreter.bytecode.Dump;
 
@@ -32,42 +30,115 @@ public class VirtualMachine implements IRunTimeStackManager {
 
   protected int pc;
   protected RunTimeStack runTimeStack;
-  // This may not be the right parameterized type!!
-  protected Stack<Integer> returnAddresses;
   protected boolean isRunning;
   protected boolean dumpEnabled = false;
   protected Program program;
+  // printed when dumping is first enabled, see SuperinstructionFuser
+  protected String fusionReport;
+  // where WRITE goes, flushed before any other output and when execution ends
+  protected OutputSink output;
+  // where READ reads from
+  protected InputSource input;
 
   public VirtualMachine( Program program ) {
     pc = 0;
     runTimeStack = new RunTimeStack();
-    returnAddresses = new Stack<>();
     isRunning = true;
     this.program = program;
+    output = OutputSink.toConsole();
+    input = InputSource.fromConsole();
   }
 
   public void executeProgram() {
-    while ( isRunning ) {
-      ByteCode code = program.getCode( pc );
-      code.execute( this );
-      if( dumpEnabled && code.getClass() != Dump.class ) {
-        System.out.println( code );
-        System.out.println( runTimeStack );
+    try {
+      while ( isRunning ) {
+        ByteCode code = program.getCode( pc );
+        code.execute( this );
+        if( dumpEnabled ) {
+          dump( code );
+        }
+        pc++;
       }
-      pc++;
+    } finally {
+      output.flush();
+    }
+  }
+
+  protected void dump( ByteCode code ) {
+    if( code.getClass() != Dump.class ) {
+      output.flush();
+      System.out.println( code );
+      System.out.println( runTimeStack );
     }
   }
 
   public void setDumpEnabled( boolean value ) {
     dumpEnabled = value;
+    if( dumpEnabled && fusionReport != null ) {
+      output.flush();
+      System.out.println( fusionReport );
+      fusionReport = null;
+    }
+  }
+
+  public void setFusionReport( String report ) {
+    fusionReport = report;
+  }
+
+  public boolean isDumpEnabled() {
+    return dumpEnabled;
+  }
+
+  /**
+   * Sends the program's WRITEs to the sink, e.g. a file, instead of the
+   * System.out written by the VM.
+   */
+  public void setOutput( OutputSink output ) {
+    this.output = output;
   }
 
-  public void pushReturnAddress( int address ) {
-    returnAddresses.push( address );
+  public void writeOutput( int value ) {
+    output.write( value );
   }
 
-  public int popReturnAddress() {
-    return returnAddresses.pop();
+  public void writeOutput( Object value ) {
+    output.write( value );
+  }
+
+  public void flushOutput() {
+    output.flush();
+  }
+
+  /**
+   * Makes READ read from the source, e.g. a file, instead of the System.in
+   * read by the VM.
+   */
+  public void setInput( InputSource input ) {
+    this.input = input;
+  }
+
+  /**
+   * Reads a number for READ, after showing the output it follows.
+   */
+  public int readInput() {
+    output.beforeRead();
+    return input.readInt();
+  }
+
+  /**
+   * The calls in progress, innermost first, each with the function called
+   * and the address of the CALL, as recorded in the frames of the stack.
+   */
+  public String getCallStackTrace() {
+    StringBuilder trace = new StringBuilder();
+    for( int depth = runTimeStack.getCallDepth(); depth > 0; depth-- ) {
+      if( runTimeStack.getFunctionAddress( depth ) < 0 ) {
+        continue;
+      }
+      trace.append( String.format( "  %s called from %d%n",
+          program.getLabel( runTimeStack.getFunctionAddress( depth ) ), runTimeStack.getReturnAddress( depth ) ) );
+    }
+    return trace.append( "  main program" ).toString();
   }
 
   public int getProgramCounter() {
@@ -78,13 +149,14 @@ public class VirtualMachine implements IRunTimeStackManager {
     this.pc = pc;
   }
 
-  public int getJumpAddress( String label ) {
-    return program.getJumpAddress(label);
+  @Override
+  public int loadStack( int offset ) {
+    return runTimeStack.load( offset );
   }
 
   @Override
-  public Object loadStack( int offset ) {
-    return runTimeStack.load( offset );
+  public int loadIntStack( int offset ) {
+    return runTimeStack.loadInt( offset );
   }
 
   @Override
@@ -97,14 +169,34 @@ public class VirtualMachine implements IRunTimeStackManager {
     return runTimeStack.peek();
   }
 
+  @Override
+  public int peekIntStack() {
+    return runTimeStack.peekInt();
+  }
+
   @Override
   public Object popStack() {
     return runTimeStack.pop();
   }
 
   @Override
-  public void popStackFrame() {
-    runTimeStack.popFrame();
+  public int popIntStack() {
+    return runTimeStack.popInt();
+  }
+
+  @Override
+  public void callStackFrame( int returnAddress, int functionAddress ) {
+    runTimeStack.call( returnAddress, functionAddress );
+  }
+
+  @Override
+  public int popStackFrame() {
+    return runTimeStack.popFrame();
+  }
+
+  @Override
+  public void replaceStackFrame( int functionAddress ) {
+    runTimeStack.replaceFrame( functionAddress );
   }
 
   @Override
@@ -113,7 +205,12 @@ public class VirtualMachine implements IRunTimeStackManager {
   }
 
   @Override
-  public Object storeStack( int offset ) {
+  public int pushStack( int item ) {
+    return runTimeStack.push( item );
+  }
+
+  @Override
+  public int storeStack( int offset ) {
     return runTimeStack.store( offset );
   }
 
@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import java.util.Vector;
 
@@ -13,9 +14,25 @@ public class Args extends ByteCode {
     numArgs = Integer.parseInt( args.get( 1 ) );
   }
 
+  @Override
+  public void init( String name, Object[] operands ) {
+    setCodeLine( name, operands );
+    numArgs = intOperand( operands[ 0 ] );
+  }
+
   @Override
   public void execute( VirtualMachine vm ) {
     vm.newStackFrameAt( numArgs );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.ARGS;
+  }
+
+  @Override
+  public int getOperand() {
+    return numArgs;
+  }
+
 }
\ No newline at end of file
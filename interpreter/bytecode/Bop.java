@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -7,65 +8,66 @@ import java.util.Vector;
 public class Bop extends ByteCode {
 
     String operator;
+    int operatorCode;
 
     @Override
     public void init( Vector<String> args ) {
         super.init( args );
         operator = args.get( 1 );
+        operatorCode = getOperatorCode( operator );
     }
 
-    @Override
-    public void execute( VirtualMachine vm ) {
-        int secondOperand = (int)vm.popStack();
-        int firstOperand = (int)vm.popStack();
-        int result = 0;
+    /**
+     * Maps an operator to the FlatProgram opcode implementing it. This is done
+     * once when the code is loaded so executing a BOP never touches the
+     * operator string; unknown operators map to EXECUTE.
+     */
+    public static int getOperatorCode( String operator ) {
         switch( operator ) {
-            case "+": {
-                result = firstOperand + secondOperand;
-                break;
-            }
-            case "-": {
-                result = firstOperand - secondOperand;
-                break;
-            }
-            case "*": {
-                result = firstOperand * secondOperand;
-                break;
-            }
-            case "/": {
-                result = firstOperand / secondOperand;
-                break;
-            }
-            case "==": {
-                result = firstOperand == secondOperand ? 1 : 0;
-                break;
-            }
-            case ">=": {
-                result = firstOperand >= secondOperand ? 1 : 0;
-                break;
-            }
-            case "<=": {
-                result = firstOperand <= secondOperand ? 1 : 0;
-                break;
-            }
-            case ">": {
-                result = firstOperand > secondOperand ? 1 : 0;
-                break;
-            }
-            case "<": {
-                result = firstOperand < secondOperand ? 1 : 0;
-                break;
-            }
-            case "|": {
-                result = ( firstOperand + secondOperand ) >= 1 ? 1 : 0;
-                break;
-            }
-            case "&": {
-                result = ( firstOperand * secondOperand ) >= 1 ? 1 : 0;
-                break;
-            }
+            case "+": return FlatProgram.ADD;
+            case "-": return FlatProgram.SUB;
+            case "*": return FlatProgram.MUL;
+            case "/": return FlatProgram.DIV;
+            case "==": return FlatProgram.EQ;
+            case "!=": return FlatProgram.NE;
+            case ">=": return FlatProgram.GE;
+            case "<=": return FlatProgram.LE;
+            case ">": return FlatProgram.GT;
+            case "<": return FlatProgram.LT;
+            case "|": return FlatProgram.OR;
+            case "&": return FlatProgram.AND;
+            default: return FlatProgram.EXECUTE;
+        }
+    }
+
+    public static int apply( int operatorCode, int firstOperand, int secondOperand ) {
+        switch( operatorCode ) {
+            case FlatProgram.ADD: return firstOperand + secondOperand;
+            case FlatProgram.SUB: return firstOperand - secondOperand;
+            case FlatProgram.MUL: return firstOperand * secondOperand;
+            case FlatProgram.DIV: return firstOperand / secondOperand;
+            case FlatProgram.EQ: return firstOperand == secondOperand ? 1 : 0;
+            case FlatProgram.NE: return firstOperand != secondOperand ? 1 : 0;
+            case FlatProgram.GE: return firstOperand >= secondOperand ? 1 : 0;
+            case FlatProgram.LE: return firstOperand <= secondOperand ? 1 : 0;
+            case FlatProgram.GT: return firstOperand > secondOperand ? 1 : 0;
+            case FlatProgram.LT: return firstOperand < secondOperand ? 1 : 0;
+            case FlatProgram.OR: return ( firstOperand + secondOperand ) >= 1 ? 1 : 0;
+            case FlatProgram.AND: return ( firstOperand * secondOperand ) >= 1 ? 1 : 0;
+            default: return 0;
         }
-        vm.pushStack( result );
     }
 
-}
\ No newline at end of file
+    @Override
+    public void execute( VirtualMachine vm ) {
+        int secondOperand = vm.popIntStack();
+        int firstOperand = vm.popIntStack();
+        vm.pushStack( apply( operatorCode, firstOperand, secondOperand ) );
+    }
+
+    @Override
+    public int getOpcode() {
+        return operatorCode;
+    }
+
+}
@@ -20,6 +20,8 @@
  */
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
+import interpreter.Program;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -28,16 +30,101 @@ public abstract class ByteCode {
 
   protected String codeLine = "";
   protected String javaCode = "";
+  // the operands of a code loaded from a binary file, for its code line
+  private Object[] lineOperands;
 
   public void init( Vector<String> args ) {
     codeLine = args.firstElement();
   }
 
+  /**
+   * The init of codes loaded from a binary file, given the code's name and
+   * its operands as util.BinaryCodeFile holds them: an Integer for an int
+   * and a String for a constant. Codes with int operands override this to
+   * take the ints as they are; the others get their operands as text
+   * through init(Vector).
+   */
+  public void init( String name, Object[] operands ) {
+    Vector<String> args = new Vector<>( operands.length + 1 );
+    args.add( name );
+    for( Object operand : operands ) {
+      args.add( operand.toString() );
+    }
+    init( args );
+    setCodeLine( name, operands );
+  }
+
+  /**
+   * Sets the code line of a code loaded from a binary file, which is only
+   * put together from its operands when it is printed.
+   */
+  protected void setCodeLine( String name, Object[] operands ) {
+    codeLine = name;
+    lineOperands = operands;
+  }
+
+  /**
+   * @return the line of the .cod file the code was loaded from
+   */
+  protected String getCodeLine() {
+    if( lineOperands != null ) {
+      StringBuilder line = new StringBuilder( codeLine );
+      for( Object operand : lineOperands ) {
+        line.append( ' ' ).append( operand );
+      }
+      codeLine = line.toString();
+      lineOperands = null;
+    }
+    return codeLine;
+  }
+
+  /**
+   * @return an int operand given to init(String, Object[])
+   */
+  protected static int intOperand( Object operand ) {
+    return operand instanceof Integer ? (Integer) operand : Integer.parseInt( operand.toString() );
+  }
+
+  /**
+   * Called once after the whole program has been loaded; codes that refer to
+   * labels override this to bind them to code addresses ahead of execution.
+   */
+  public void resolveAddresses( Program program ) {
+  }
+
   public abstract void execute( VirtualMachine vm );
 
+  /**
+   * The opcode this code is flattened to for SwitchVirtualMachine; codes
+   * without a dedicated opcode are run through execute().
+   */
+  public int getOpcode() {
+    return FlatProgram.EXECUTE;
+  }
+
+  /**
+   * The int operand that goes with getOpcode(), e.g. a literal value, a
+   * frame offset or a resolved jump address.
+   */
+  public int getOperand() {
+    return 0;
+  }
+
+  /**
+   * The further int operands of a superinstruction, which stands for
+   * several codes, e.g. the literal and operator of LOAD_LIT_BOP.
+   */
+  public int getSecondOperand() {
+    return 0;
+  }
+
+  public int getThirdOperand() {
+    return 0;
+  }
+
   @Override
   public String toString() {
-    return String.format( "%-25s %s", codeLine, javaCode );
+    return String.format( "%-25s %s", getCodeLine(), javaCode );
   }
 
 }
\ No newline at end of file
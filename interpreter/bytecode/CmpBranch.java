@@ -0,0 +1,62 @@
+package interpreter.bytecode;
+
+import interpreter.FlatProgram;
+import interpreter.Program;
+import interpreter.VirtualMachine;
+
+/**
+ * The superinstruction for BOP op; FALSEBRANCH L where op is a comparison,
+ * the test of nearly every if and while: it compares the top two values
+ * and jumps to L unless the comparison holds, without pushing its result.
+ */
+public class CmpBranch extends ByteCode {
+
+  int operatorCode;
+  String targetLabel;
+  int jumpAddress;
+
+  public CmpBranch( Bop bop, FalseBranch falseBranch ) {
+    operatorCode = bop.operatorCode;
+    targetLabel = falseBranch.targetLabel;
+    codeLine = String.format( "CMP_BRANCH %s %s", bop.operator, targetLabel );
+    javaCode = String.format( "<fused %s; %s>", bop.getCodeLine().trim(), falseBranch.getCodeLine().trim() );
+  }
+
+  /**
+   * Whether a BOP with this operator can be fused with the FALSEBRANCH
+   * after it.
+   */
+  public static boolean isComparison( int operatorCode ) {
+    return operatorCode >= FlatProgram.EQ && operatorCode <= FlatProgram.LT || operatorCode == FlatProgram.NE;
+  }
+
+  @Override
+  public void resolveAddresses( Program program ) {
+    jumpAddress = program.getJumpAddress( targetLabel );
+  }
+
+  @Override
+  public void execute( VirtualMachine vm ) {
+    int secondOperand = vm.popIntStack();
+    int firstOperand = vm.popIntStack();
+    if( Bop.apply( operatorCode, firstOperand, secondOperand ) == 0 ) {
+      vm.setProgramCounter( jumpAddress );
+    }
+  }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.CMP_BRANCH;
+  }
+
+  @Override
+  public int getOperand() {
+    return jumpAddress;
+  }
+
+  @Override
+  public int getSecondOperand() {
+    return operatorCode;
+  }
+
+}
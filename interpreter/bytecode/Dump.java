@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -19,4 +20,15 @@ public class Dump extends ByteCode {
   public void execute( VirtualMachine vm ) {
     vm.setDumpEnabled( enableDump );
   }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.DUMP;
+  }
+
+  @Override
+  public int getOperand() {
+    return enableDump ? 1 : 0;
+  }
+
 }
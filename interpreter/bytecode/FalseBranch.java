@@ -1,5 +1,7 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
+import interpreter.Program;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -7,6 +9,7 @@ import java.util.Vector;
 public class FalseBranch extends ByteCode {
 
     String targetLabel;
+    int jumpAddress;
 
     @Override
     public void init( Vector<String> args ) {
@@ -14,14 +17,27 @@ public class FalseBranch extends ByteCode {
         targetLabel = args.get( 1 );
     }
 
+    @Override
+    public void resolveAddresses( Program program ) {
+        jumpAddress = program.getJumpAddress( targetLabel );
+    }
+
     @Override
     public void execute( VirtualMachine vm ) {
-        int val = (int)vm.popStack();
-        boolean b = (val==0) ? false : true;
-        if(!b) {
-            int jumpAddress = vm.getJumpAddress( targetLabel );
+        int val = vm.popIntStack();
+        if( val == 0 ) {
             vm.setProgramCounter( jumpAddress );
         }
     }
 
-}
\ No newline at end of file
+    @Override
+    public int getOpcode() {
+        return FlatProgram.FALSEBRANCH;
+    }
+
+    @Override
+    public int getOperand() {
+        return jumpAddress;
+    }
+
+}
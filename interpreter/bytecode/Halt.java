@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -13,7 +14,13 @@ public class Halt extends ByteCode {
 
   @Override
   public void execute( VirtualMachine vm ) {
+    vm.flushOutput();
     System.exit( 0 );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.HALT;
+  }
+
 }
\ No newline at end of file
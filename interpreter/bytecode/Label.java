@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -18,4 +19,9 @@ public class Label extends ByteCode {
   public void execute( VirtualMachine vm ) {
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.NOP;
+  }
+
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -39,9 +40,32 @@ public class Lit extends ByteCode {
     }
   }
 
+  @Override
+  public void init( String name, Object[] operands ) {
+    setCodeLine( name, operands );
+    if( operands[ 0 ] instanceof Integer ) {
+      value = operands[ 0 ];
+    } else {
+      parseValue( operands[ 0 ].toString() );
+    }
+    if( operands.length > 1 ) {
+      javaCode = String.format( "%s %s", "int", operands[ 1 ] );
+    }
+  }
+
   @Override
   public void execute( VirtualMachine vm ) {
     vm.pushStack( value );
   }
 
+  @Override
+  public int getOpcode() {
+    return value instanceof Integer ? FlatProgram.LIT : FlatProgram.EXECUTE;
+  }
+
+  @Override
+  public int getOperand() {
+    return value instanceof Integer ? (Integer) value : 0;
+  }
+
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -15,9 +16,26 @@ public class Load extends ByteCode {
     javaCode = String.format( "<load %s>", args.get( 2 ) );
   }
 
+  @Override
+  public void init( String name, Object[] operands ) {
+    setCodeLine( name, operands );
+    offset = intOperand( operands[ 0 ] );
+    javaCode = String.format( "<load %s>", operands[ 1 ] );
+  }
+
   @Override
   public void execute( VirtualMachine vm ) {
     vm.loadStack( offset );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.LOAD;
+  }
+
+  @Override
+  public int getOperand() {
+    return offset;
+  }
+
 }
\ No newline at end of file
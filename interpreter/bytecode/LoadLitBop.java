@@ -0,0 +1,50 @@
+package interpreter.bytecode;
+
+import interpreter.FlatProgram;
+import interpreter.VirtualMachine;
+
+/**
+ * The superinstruction for LOAD n x; LIT k; BOP op, e.g. the i + 1 of a loop
+ * counter: it applies op to the variable and the literal without pushing
+ * either of them.
+ */
+public class LoadLitBop extends ByteCode {
+
+  int offset;
+  int literal;
+  int operatorCode;
+
+  public LoadLitBop( Load load, Lit lit, Bop bop ) {
+    offset = load.offset;
+    literal = (Integer) lit.value;
+    operatorCode = bop.operatorCode;
+    codeLine = String.format( "LOAD_LIT_BOP %d %d %s", offset, literal, bop.operator );
+    javaCode = String.format( "<fused %s; %s; %s>", load.getCodeLine().trim(), lit.getCodeLine().trim(), bop.getCodeLine().trim() );
+  }
+
+  @Override
+  public void execute( VirtualMachine vm ) {
+    vm.pushStack( Bop.apply( operatorCode, vm.loadIntStack( offset ), literal ) );
+  }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.LOAD_LIT_BOP;
+  }
+
+  @Override
+  public int getOperand() {
+    return offset;
+  }
+
+  @Override
+  public int getSecondOperand() {
+    return literal;
+  }
+
+  @Override
+  public int getThirdOperand() {
+    return operatorCode;
+  }
+
+}
@@ -0,0 +1,47 @@
+package interpreter.bytecode;
+
+import interpreter.VirtualMachine;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * LOOKUPSWITCH default value label... finds the value by binary search
+ * among the sorted case values and jumps to its label, or to the default
+ * label when there is no such case.
+ */
+public class LookupSwitch extends SwitchByteCode {
+
+  @Override
+  public void init( Vector<String> args ) {
+    super.init( args );
+    defaultLabel = args.get( 1 );
+    int caseCount = ( args.size() - 2 ) / 2;
+    caseValues = new int[ caseCount ];
+    caseLabels = new String[ caseCount ];
+    for( int i = 0; i < caseCount; i++ ) {
+      caseValues[ i ] = Integer.parseInt( args.get( 2 + 2 * i ) );
+      caseLabels[ i ] = args.get( 3 + 2 * i );
+    }
+  }
+
+  @Override
+  public void init( String name, Object[] operands ) {
+    setCodeLine( name, operands );
+    defaultLabel = operands[ 0 ].toString();
+    int caseCount = ( operands.length - 1 ) / 2;
+    caseValues = new int[ caseCount ];
+    caseLabels = new String[ caseCount ];
+    for( int i = 0; i < caseCount; i++ ) {
+      caseValues[ i ] = intOperand( operands[ 1 + 2 * i ] );
+      caseLabels[ i ] = operands[ 2 + 2 * i ].toString();
+    }
+  }
+
+  @Override
+  public void execute( VirtualMachine vm ) {
+    int caseIndex = Arrays.binarySearch( caseValues, vm.popIntStack() );
+    vm.setProgramCounter( caseIndex >= 0 ? caseAddresses[ caseIndex ] : defaultAddress );
+  }
+
+}
@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -14,11 +15,27 @@ public class Pop extends ByteCode {
     n = Integer.parseInt( args.get( 1 ) );
   }
 
+  @Override
+  public void init( String name, Object[] operands ) {
+    setCodeLine( name, operands );
+    n = intOperand( operands[ 0 ] );
+  }
+
   @Override
   public void execute( VirtualMachine vm ) {
     for( int i=0;i<n;i++ ) {
-      vm.popStack();
+      vm.popIntStack();
     }
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.POP;
+  }
+
+  @Override
+  public int getOperand() {
+    return n;
+  }
+
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -14,8 +15,25 @@ public class Push extends ByteCode {
     value = Integer.parseInt( args.get( 1 ) );
   }
 
+  @Override
+  public void init( String name, Object[] operands ) {
+    setCodeLine( name, operands );
+    value = intOperand( operands[ 0 ] );
+  }
+
   @Override
   public void execute( VirtualMachine vm ) {
     vm.pushStack( value );
   }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.LIT;
+  }
+
+  @Override
+  public int getOperand() {
+    return value;
+  }
+
 }
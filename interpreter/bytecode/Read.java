@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.io.BufferedReader;
@@ -16,6 +17,15 @@ public class Read extends ByteCode {
 
   @Override
   public void execute( VirtualMachine vm ) {
+    vm.pushStack( vm.readInput() );
+  }
+
+  /**
+   * Prompts until a number is entered, reading through a new reader each
+   * time; used by the debugger, whose commands are read from System.in too.
+   * Programs read through the InputSource of their engine.
+   */
+  public static int readInt() {
     Integer input = null;
     while ( input == null ) {
       try {
@@ -26,7 +36,12 @@ public class Read extends ByteCode {
         /* Do nothing */
       }
     }
-    vm.pushStack( input );
+    return input;
+  }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.READ;
   }
 
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -14,9 +15,13 @@ public class Return extends ByteCode {
 
   @Override
   public void execute( VirtualMachine vm ) {
-    vm.popStackFrame();
-    int returnAddress = vm.popReturnAddress();
+    int returnAddress = vm.popStackFrame();
     vm.setProgramCounter( returnAddress );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.RETURN;
+  }
+
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -18,10 +19,29 @@ public class Store extends ByteCode {
     }
   }
 
+  @Override
+  public void init( String name, Object[] operands ) {
+    setCodeLine( name, operands );
+    offset = intOperand( operands[ 0 ] );
+    if( operands.length > 1 ) {
+      identifier = operands[ 1 ].toString();
+    }
+  }
+
   @Override
   public void execute( VirtualMachine vm ) {
     vm.storeStack( offset );
     javaCode = String.format( "%s = %s", identifier, vm.peekStack() );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.STORE;
+  }
+
+  @Override
+  public int getOperand() {
+    return offset;
+  }
+
 }
\ No newline at end of file
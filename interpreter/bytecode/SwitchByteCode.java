@@ -0,0 +1,47 @@
+package interpreter.bytecode;
+
+import interpreter.FlatProgram;
+import interpreter.Program;
+
+/**
+ * The jump of a switch statement to one of its cases, generated as a
+ * TABLESWITCH or LOOKUPSWITCH. Subclasses read their labels in init(); all
+ * of them are bound to code addresses at load time, so choosing a case needs
+ * no work on strings.
+ */
+public abstract class SwitchByteCode extends ByteCode {
+
+  protected String defaultLabel;
+  protected int defaultAddress;
+  // sorted case values, the label of each and the address of that label
+  protected int[] caseValues;
+  protected String[] caseLabels;
+  protected int[] caseAddresses;
+
+  @Override
+  public void resolveAddresses( Program program ) {
+    defaultAddress = program.getJumpAddress( defaultLabel );
+    caseAddresses = new int[ caseLabels.length ];
+    for( int i = 0; i < caseLabels.length; i++ ) {
+      caseAddresses[ i ] = program.getJumpAddress( caseLabels[ i ] );
+    }
+  }
+
+  public int getDefaultAddress() {
+    return defaultAddress;
+  }
+
+  public int[] getCaseValues() {
+    return caseValues;
+  }
+
+  public int[] getCaseAddresses() {
+    return caseAddresses;
+  }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.SWITCH;
+  }
+
+}
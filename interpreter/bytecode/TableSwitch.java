@@ -0,0 +1,80 @@
+package interpreter.bytecode;
+
+import interpreter.Program;
+import interpreter.VirtualMachine;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * TABLESWITCH default low label... jumps to the label at index value - low,
+ * or to the default label when the value is outside the table.
+ */
+public class TableSwitch extends SwitchByteCode {
+
+  int low;
+  int[] table;
+
+  @Override
+  public void init( Vector<String> args ) {
+    super.init( args );
+    String[] labels = new String[ args.size() - 3 ];
+    for( int i = 0; i < labels.length; i++ ) {
+      labels[ i ] = args.get( 3 + i );
+    }
+    setTable( args.get( 1 ), Integer.parseInt( args.get( 2 ) ), labels );
+  }
+
+  @Override
+  public void init( String name, Object[] operands ) {
+    setCodeLine( name, operands );
+    String[] labels = new String[ operands.length - 2 ];
+    for( int i = 0; i < labels.length; i++ ) {
+      labels[ i ] = operands[ 2 + i ].toString();
+    }
+    setTable( operands[ 0 ].toString(), intOperand( operands[ 1 ] ), labels );
+  }
+
+  /**
+   * @param labels the label of each value from low on
+   */
+  private void setTable( String defaultLabel, int low, String[] labels ) {
+    this.defaultLabel = defaultLabel;
+    this.low = low;
+    // entries holding the default label are no case of their own
+    int caseCount = 0;
+    for( String label : labels ) {
+      if( !label.equals( defaultLabel ) ) {
+        caseCount++;
+      }
+    }
+    caseValues = new int[ caseCount ];
+    caseLabels = new String[ caseCount ];
+    int caseIndex = 0;
+    for( int i = 0; i < labels.length; i++ ) {
+      if( !labels[ i ].equals( defaultLabel ) ) {
+        caseValues[ caseIndex ] = low + i;
+        caseLabels[ caseIndex ] = labels[ i ];
+        caseIndex++;
+      }
+    }
+    table = new int[ labels.length ];
+  }
+
+  @Override
+  public void resolveAddresses( Program program ) {
+    super.resolveAddresses( program );
+    Arrays.fill( table, defaultAddress );
+    for( int i = 0; i < caseValues.length; i++ ) {
+      table[ caseValues[ i ] - low ] = caseAddresses[ i ];
+    }
+  }
+
+  @Override
+  public void execute( VirtualMachine vm ) {
+    // a long, so that values far below low cannot overflow into the table
+    long index = (long) vm.popIntStack() - low;
+    vm.setProgramCounter( index >= 0 && index < table.length ? table[ (int) index ] : defaultAddress );
+  }
+
+}
@@ -0,0 +1,57 @@
+package interpreter.bytecode;
+
+import interpreter.FlatProgram;
+import interpreter.Program;
+import interpreter.VirtualMachine;
+
+import java.util.Vector;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * TAILCALL f follows ARGS like CALL does, but f takes the place of the
+ * function making the call: its frame replaces the caller's and no return
+ * address is pushed, so f returns straight to the caller's caller and the
+ * stack does not grow.
+ */
+public class TailCall extends ByteCode {
+
+  private static final Pattern FUNCTION_NAME = Pattern.compile( "\\w+" );
+
+  String functionLabel;
+  String functionName;
+  int jumpAddress;
+
+  @Override
+  public void init( Vector<String> args ) {
+    super.init( args );
+    functionLabel = args.get( 1 );
+    Matcher m = FUNCTION_NAME.matcher( functionLabel );
+    functionName = m.find() ? m.group( 0 ) : functionLabel;
+  }
+
+  @Override
+  public void resolveAddresses( Program program ) {
+    jumpAddress = program.getJumpAddress( functionLabel );
+  }
+
+  @Override
+  public void execute( VirtualMachine vm ) {
+    vm.replaceStackFrame( jumpAddress );
+    vm.setProgramCounter( jumpAddress - 1 );
+    if( vm.isDumpEnabled() ) {
+      javaCode = functionName + "(" + vm.peekStack() + ")";
+    }
+  }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.TAILCALL;
+  }
+
+  @Override
+  public int getOperand() {
+    return jumpAddress;
+  }
+
+}
@@ -1,5 +1,6 @@
 package interpreter.bytecode;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 
 import java.util.Vector;
@@ -14,7 +15,12 @@ public class Write extends ByteCode {
   @Override
   public void execute( VirtualMachine vm ) {
     Object value = vm.popStack();
-    System.out.println( value );
+    vm.writeOutput( value );
+  }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.WRITE;
   }
 
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 import interpreter.debugger.ui.DebuggerCommand;
@@ -26,4 +27,14 @@ public class Args extends DebuggerByteCode {
     execute( (VirtualMachine) vm );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.ARGS;
+  }
+
+  @Override
+  public int getOperand() {
+    return numArgs;
+  }
+
 }
\ No newline at end of file
@@ -8,65 +8,20 @@ import java.util.Vector;
 public class Bop extends DebuggerByteCode {
 
   String operator;
+  int operatorCode;
 
   @Override
   public void init( Vector<String> args ) {
     super.init( args );
     operator = args.get( 1 );
+    operatorCode = interpreter.bytecode.Bop.getOperatorCode( operator );
   }
 
   @Override
   public void execute( VirtualMachine vm ) {
-    int secondOperand = (int)vm.popStack();
-    int firstOperand = (int)vm.popStack();
-    int result = 0;
-    switch( operator ) {
-      case "+": {
-        result = firstOperand + secondOperand;
-        break;
-      }
-      case "-": {
-        result = firstOperand - secondOperand;
-        break;
-      }
-      case "*": {
-        result = firstOperand * secondOperand;
-        break;
-      }
-      case "/": {
-        result = firstOperand / secondOperand;
-        break;
-      }
-      case "==": {
-        result = firstOperand == secondOperand ? 1 : 0;
-        break;
-      }
-      case ">=": {
-        result = firstOperand >= secondOperand ? 1 : 0;
-        break;
-      }
-      case "<=": {
-        result = firstOperand <= secondOperand ? 1 : 0;
-        break;
-      }
-      case ">": {
-        result = firstOperand > secondOperand ? 1 : 0;
-        break;
-      }
-      case "<": {
-        result = firstOperand < secondOperand ? 1 : 0;
-        break;
-      }
-      case "|": {
-        result = ( firstOperand + secondOperand ) >= 1 ? 1 : 0;
-        break;
-      }
-      case "&": {
-        result = ( firstOperand * secondOperand ) >= 1 ? 1 : 0;
-        break;
-      }
-    }
-    vm.pushStack( result );
+    int secondOperand = vm.popIntStack();
+    int firstOperand = vm.popIntStack();
+    vm.pushStack( interpreter.bytecode.Bop.apply( operatorCode, firstOperand, secondOperand ) );
   }
 
   @Override
@@ -74,4 +29,9 @@ public class Bop extends DebuggerByteCode {
     execute( (VirtualMachine) vm );
   }
 
-}
\ No newline at end of file
+  @Override
+  public int getOpcode() {
+    return operatorCode;
+  }
+
+}
@@ -1,5 +1,7 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
+import interpreter.Program;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
@@ -9,22 +11,32 @@ import java.util.regex.Pattern;
 
 public class Call extends DebuggerByteCode {
 
+  private static final Pattern FUNCTION_NAME = Pattern.compile( "\\w+" );
+
   String functionLabel;
+  String functionName;
+  int jumpAddress;
 
   @Override
   public void init( Vector<String> args ) {
     super.init( args );
     functionLabel = args.get( 1 );
+    Matcher m = FUNCTION_NAME.matcher( functionLabel );
+    functionName = m.find() ? m.group( 0 ) : functionLabel;
+  }
+
+  @Override
+  public void resolveAddresses( Program program ) {
+    jumpAddress = program.getJumpAddress( functionLabel );
   }
 
   @Override
   public void execute( VirtualMachine vm ) {
-    vm.pushReturnAddress( vm.getProgramCounter() );
-    int jumpAddress = vm.getJumpAddress( functionLabel );
+    vm.callStackFrame( vm.getProgramCounter(), jumpAddress );
     vm.setProgramCounter( jumpAddress - 1 );
-    Matcher m = Pattern.compile( "\\w+" ).matcher( functionLabel );
-    m.find();
-    javaCode = String.format( "%s(%s)", m.group( 0 ), vm.peekStack() );
+    if( vm.isDumpEnabled() ) {
+      javaCode = functionName + "(" + vm.peekStack() + ")";
+    }
   }
 
   @Override
@@ -32,4 +44,14 @@ public class Call extends DebuggerByteCode {
     execute( (VirtualMachine) vm );
   }
 
-}
\ No newline at end of file
+  @Override
+  public int getOpcode() {
+    return FlatProgram.CALL;
+  }
+
+  @Override
+  public int getOperand() {
+    return jumpAddress;
+  }
+
+}
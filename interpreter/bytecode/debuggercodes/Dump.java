@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
@@ -25,4 +26,15 @@ public class Dump extends DebuggerByteCode {
   public void execute(DebuggerVirtualMachine vm) {
     execute( (VirtualMachine) vm );
   }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.DUMP;
+  }
+
+  @Override
+  public int getOperand() {
+    return enableDump ? 1 : 0;
+  }
+
 }
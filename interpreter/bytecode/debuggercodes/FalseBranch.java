@@ -1,5 +1,7 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
+import interpreter.Program;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
@@ -8,6 +10,7 @@ import java.util.Vector;
 public class FalseBranch extends DebuggerByteCode {
 
     String targetLabel;
+    int jumpAddress;
 
     @Override
     public void init( Vector<String> args ) {
@@ -15,12 +18,15 @@ public class FalseBranch extends DebuggerByteCode {
         targetLabel = args.get( 1 );
     }
 
+    @Override
+    public void resolveAddresses( Program program ) {
+        jumpAddress = program.getJumpAddress( targetLabel );
+    }
+
     @Override
     public void execute( VirtualMachine vm ) {
-        int val = (int)vm.popStack();
-        boolean b = (val==0) ? false : true;
-        if(!b) {
-            int jumpAddress = vm.getJumpAddress( targetLabel );
+        int val = vm.popIntStack();
+        if( val == 0 ) {
             vm.setProgramCounter( jumpAddress );
         }
     }
@@ -30,4 +36,14 @@ public class FalseBranch extends DebuggerByteCode {
         execute( (VirtualMachine) vm );
     }
 
-}
\ No newline at end of file
+    @Override
+    public int getOpcode() {
+        return FlatProgram.FALSEBRANCH;
+    }
+
+    @Override
+    public int getOperand() {
+        return jumpAddress;
+    }
+
+}
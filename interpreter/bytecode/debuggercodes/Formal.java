@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.debugger.DebuggerVirtualMachine;
 
 import java.util.Vector;
@@ -18,7 +19,12 @@ public class Formal extends DebuggerByteCode {
 
   @Override
   public void execute( DebuggerVirtualMachine vm ) {
-    vm.getDebugger().getCurrentFunctionEnvironmentRecord().enter( varName, (Integer) vm.loadStack( offset ) );
+    vm.getDebugger().getCurrentFunctionEnvironmentRecord().enter( varName, vm.loadStack( offset ) );
+  }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.NOP;
   }
 
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.debugger.DebuggerVirtualMachine;
 import interpreter.debugger.FunctionEnvironmentRecord;
 
@@ -27,4 +28,9 @@ public class Function extends DebuggerByteCode {
     vm.getDebugger().enterScope( functionEnvironmentRecord );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.NOP;
+  }
+
 }
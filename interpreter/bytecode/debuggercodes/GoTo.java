@@ -1,28 +1,55 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
+import interpreter.Program;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.Vector;
 
 public class GoTo extends DebuggerByteCode {
 
   String targetLabel;
+  int jumpAddress;
+  boolean isSwitch;
+  int[] caseValues;
+  int[] caseAddresses;
 
   @Override
   public void init( Vector<String> args ) {
     super.init( args );
     targetLabel = args.get( 1 );
+    isSwitch = targetLabel.startsWith( "switch_case" );
+  }
+
+  @Override
+  public void resolveAddresses( Program program ) {
+    jumpAddress = program.getJumpAddress( targetLabel );
+    if( isSwitch ) {
+      TreeMap<Integer,Integer> cases = program.getSwitchCaseAddresses( targetLabel );
+      caseValues = new int[ cases.size() ];
+      caseAddresses = new int[ cases.size() ];
+      int i = 0;
+      for( Map.Entry<Integer,Integer> switchCase : cases.entrySet() ) {
+        caseValues[ i ] = switchCase.getKey();
+        caseAddresses[ i ] = switchCase.getValue();
+        i++;
+      }
+    }
   }
 
   @Override
   public void execute( VirtualMachine vm ) {
-    if( targetLabel.startsWith("switch_case") ) {
-      Integer caseValue = (Integer)vm.popStack();
-      targetLabel += caseValue.toString() + ">>";
+    if( isSwitch ) {
+      int caseValue = vm.popIntStack();
+      int caseIndex = Arrays.binarySearch( caseValues, caseValue );
+      vm.setProgramCounter( caseIndex >= 0 ? caseAddresses[ caseIndex ] : jumpAddress );
+    } else {
+      vm.setProgramCounter( jumpAddress );
     }
-    int jumpAddress = vm.getJumpAddress( targetLabel );
-    vm.setProgramCounter( jumpAddress );
   }
 
   @Override
@@ -30,4 +57,14 @@ public class GoTo extends DebuggerByteCode {
     execute( (VirtualMachine) vm );
   }
 
-}
\ No newline at end of file
+  @Override
+  public int getOpcode() {
+    return isSwitch ? FlatProgram.EXECUTE : FlatProgram.GOTO;
+  }
+
+  @Override
+  public int getOperand() {
+    return jumpAddress;
+  }
+
+}
@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
@@ -22,4 +23,9 @@ public class Halt extends DebuggerByteCode {
     execute( (VirtualMachine) vm );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.HALT;
+  }
+
 }
\ No newline at end of file
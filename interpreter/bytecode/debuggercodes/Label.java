@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
@@ -24,4 +25,9 @@ public class Label extends DebuggerByteCode {
     execute( (VirtualMachine) vm );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.NOP;
+  }
+
 }
\ No newline at end of file
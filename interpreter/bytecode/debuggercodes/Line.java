@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.debugger.DebuggerVirtualMachine;
 
 import java.util.Vector;
@@ -19,4 +20,9 @@ public class Line extends DebuggerByteCode {
     vm.getDebugger().setCurrentLine( lineNumber );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.NOP;
+  }
+
 }
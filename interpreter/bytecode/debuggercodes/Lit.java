@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
@@ -40,7 +41,17 @@ public class Lit extends DebuggerByteCode {
   @Override
   public void execute(DebuggerVirtualMachine vm) {
     execute( (VirtualMachine) vm );
-    vm.getDebugger().getCurrentFunctionEnvironmentRecord().enter( identifier, (Integer) vm.peekStack() );
+    vm.getDebugger().getCurrentFunctionEnvironmentRecord().enter( identifier, vm.peekIntStack() );
+  }
+
+  @Override
+  public int getOpcode() {
+    return value instanceof Integer ? FlatProgram.LIT : FlatProgram.EXECUTE;
+  }
+
+  @Override
+  public int getOperand() {
+    return value != null ? value : 0;
   }
 
 }
\ No newline at end of file
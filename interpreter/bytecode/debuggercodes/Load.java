@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
@@ -26,4 +27,14 @@ public class Load extends DebuggerByteCode {
     execute( (VirtualMachine) vm );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.LOAD;
+  }
+
+  @Override
+  public int getOperand() {
+    return offset;
+  }
+
 }
\ No newline at end of file
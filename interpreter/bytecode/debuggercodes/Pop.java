@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
@@ -18,7 +19,7 @@ public class Pop extends DebuggerByteCode {
   @Override
   public void execute( VirtualMachine vm ) {
     for( int i=0;i<n;i++ ) {
-      vm.popStack();
+      vm.popIntStack();
     }
   }
 
@@ -27,4 +28,14 @@ public class Pop extends DebuggerByteCode {
     execute( (VirtualMachine) vm );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.POP;
+  }
+
+  @Override
+  public int getOperand() {
+    return n;
+  }
+
 }
\ No newline at end of file
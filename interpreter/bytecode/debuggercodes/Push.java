@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
@@ -24,4 +25,15 @@ public class Push extends DebuggerByteCode {
   public void execute(DebuggerVirtualMachine vm) {
     execute( (VirtualMachine) vm );
   }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.LIT;
+  }
+
+  @Override
+  public int getOperand() {
+    return value;
+  }
+
 }
@@ -1,12 +1,9 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
-import interpreter.debugger.ui.DebuggerCommand;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.Vector;
 
 public class Read extends DebuggerByteCode {
@@ -18,17 +15,7 @@ public class Read extends DebuggerByteCode {
 
   @Override
   public void execute( VirtualMachine vm ) {
-    Integer input = null;
-    while ( input == null ) {
-      try {
-        System.out.print("Please enter a number: ");
-        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-        input = Integer.parseInt( reader.readLine() );
-      } catch (IOException | NumberFormatException e) {
-        /* Do nothing */
-      }
-    }
-    vm.pushStack( input );
+    vm.pushStack( interpreter.bytecode.Read.readInt() );
   }
 
   @Override
@@ -36,4 +23,9 @@ public class Read extends DebuggerByteCode {
     execute( (VirtualMachine) vm );
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.READ;
+  }
+
 }
\ No newline at end of file
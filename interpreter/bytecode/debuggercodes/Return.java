@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
@@ -15,8 +16,7 @@ public class Return extends DebuggerByteCode {
 
   @Override
   public void execute( VirtualMachine vm ) {
-    vm.popStackFrame();
-    int returnAddress = vm.popReturnAddress();
+    int returnAddress = vm.popStackFrame();
     vm.setProgramCounter( returnAddress );
   }
 
@@ -26,4 +26,9 @@ public class Return extends DebuggerByteCode {
     vm.getDebugger().exitScope();
   }
 
+  @Override
+  public int getOpcode() {
+    return FlatProgram.RETURN;
+  }
+
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package interpreter.bytecode.debuggercodes;
 
+import interpreter.FlatProgram;
 import interpreter.VirtualMachine;
 import interpreter.debugger.DebuggerVirtualMachine;
 
@@ -28,7 +29,17 @@ public class Store extends DebuggerByteCode {
   @Override
   public void execute(DebuggerVirtualMachine vm) {
     execute( (VirtualMachine) vm );
-    vm.getDebugger().getCurrentFunctionEnvironmentRecord().enter( identifier, (Integer) vm.peekStack() );
+    vm.getDebugger().getCurrentFunctionEnvironmentRecord().enter( identifier, vm.peekIntStack() );
+  }
+
+  @Override
+  public int getOpcode() {
+    return FlatProgram.STORE;
+  }
+
+  @Override
+  public int getOperand() {
+    return offset;
   }
 
 }
\ No newline at end of file
@@ -22,7 +22,7 @@ public class Debugger extends Interpreter {
   private String baseFileName;
 
   public Debugger( String baseFileName ) {
-    super( String.format( "sample_files\\%s.x.cod", baseFileName ) );
+    super( String.format( "sample_files\\%s.x.cod", baseFileName ), DebuggerCodeTable::get );
     this.baseFileName = baseFileName;
     sourceLineProperties = new Vector<>();
     functionEnvironmentRecordStack = new Stack<>();
@@ -95,6 +95,10 @@ public class Debugger extends Interpreter {
     }
   }
 
+  public void displayCallStack() {
+    System.out.println( vm.getCallStackTrace() );
+  }
+
   public void displaySource() {
     if( mainFunctionInitialized() ) {
       FunctionEnvironmentRecord currentFunctionEnvironmentRecord = functionEnvironmentRecordStack.peek();
@@ -1,46 +1,48 @@
 package interpreter.debugger;
 
 import java.util.HashMap;
+import java.util.function.Supplier;
 
 import interpreter.CodeTable;
+import interpreter.bytecode.ByteCode;
 import interpreter.bytecode.debuggercodes.*;
 
 public class DebuggerCodeTable {
 
-  private static HashMap<String, Class> codeMap = new HashMap<>();
+  private static HashMap<String, Supplier<ByteCode>> codeMap = new HashMap<>();
 
   static {
-    codeMap.put( "ARGS", Args.class );
-    codeMap.put( "BOP", Bop.class );
-    codeMap.put( "CALL", Call.class );
-    codeMap.put( "DUMP", Dump.class );
-    codeMap.put( "FALSEBRANCH", FalseBranch.class );
-    codeMap.put( "FORMAL", Formal.class );
-    codeMap.put( "FUNCTION", Function.class );
-    codeMap.put( "GOTO", GoTo.class );
-    codeMap.put( "HALT", Halt.class );
-    codeMap.put( "LABEL", Label.class );
-    codeMap.put( "LINE", Line.class );
-    codeMap.put( "LIT", Lit.class );
-    codeMap.put( "LOAD", Load.class );
-    codeMap.put( "POP", Pop.class );
-    codeMap.put( "PUSH", Push.class );
-    codeMap.put( "READ", Read.class );
-    codeMap.put( "RETURN", Return.class );
-    codeMap.put( "STORE", Store.class );
-    codeMap.put( "WRITE", Write.class );
+    codeMap.put( "ARGS", Args::new );
+    codeMap.put( "BOP", Bop::new );
+    codeMap.put( "CALL", Call::new );
+    codeMap.put( "DUMP", Dump::new );
+    codeMap.put( "FALSEBRANCH", FalseBranch::new );
+    codeMap.put( "FORMAL", Formal::new );
+    codeMap.put( "FUNCTION", Function::new );
+    codeMap.put( "GOTO", GoTo::new );
+    codeMap.put( "HALT", Halt::new );
+    codeMap.put( "LABEL", Label::new );
+    codeMap.put( "LINE", Line::new );
+    codeMap.put( "LIT", Lit::new );
+    codeMap.put( "LOAD", Load::new );
+    codeMap.put( "POP", Pop::new );
+    codeMap.put( "PUSH", Push::new );
+    codeMap.put( "READ", Read::new );
+    codeMap.put( "RETURN", Return::new );
+    codeMap.put( "STORE", Store::new );
+    codeMap.put( "WRITE", Write::new );
   }
 
   public static void init() {
   }
 
-  public static String get( String code ) {
+  public static Supplier<ByteCode> get( String code ) {
     String codeString = code.trim().toUpperCase();
-    if( codeMap.keySet().contains( codeString ) ) {
-      return codeMap.get( codeString ).getName();
+    if( codeMap.containsKey( codeString ) ) {
+      return codeMap.get( codeString );
     } else {
       return CodeTable.get( codeString );
     }
   }
 
-}
\ No newline at end of file
+}
@@ -7,6 +7,7 @@ public class CommandTable {
   private static HashMap<String,DebuggerCommand> commands = new HashMap<>();
 
   static {
+    commands.put( "callstack",        new DisplayCallStackCommand() );
     commands.put( "currentline",      new PrintCurrentLineNumberCommand() );
     commands.put( "displaylocals",    new DisplayLocalsCommand() );
     commands.put( "displaysource",    new DisplaySourceCommand() );
@@ -0,0 +1,12 @@
+package interpreter.debugger.ui;
+
+import interpreter.debugger.Debugger;
+
+public class DisplayCallStackCommand extends DebuggerCommand {
+
+  @Override
+  public void execute( Debugger debugger ) {
+    debugger.displayCallStack();
+  }
+
+}
@@ -33,6 +33,7 @@ public class Lexer {
   public Lexer( String sourceFile ) throws IOException {
     this.debugOptions = new DebugOptions( Options.TOKENS, Options.SOURCECODE );
     new TokenStore();
+    Symbol.resetSymbols();
     source = new SourceReader( sourceFile, true );
     currentCharacter = source.read();
   }
@@ -40,6 +41,7 @@ public class Lexer {
   public Lexer( String sourceFile, DebugOptions debugOptions ) throws IOException {
     this.debugOptions = debugOptions;
     new TokenStore();
+    Symbol.resetSymbols();
     source = new SourceReader( sourceFile, debugOptions.contains( Options.TOKENS ) );
     currentCharacter = source.read();
   }
@@ -216,7 +218,6 @@ public class Lexer {
       }
     } else {
       try {
-        System.out.println();
         printSourceCode();
       } catch( IOException e ){ }
     }
@@ -229,6 +230,7 @@ public class Lexer {
 
   public void printSourceCode() throws IOException {
     if ( debugOptions.contains( Options.SOURCECODE ) ) {
+      System.out.println();
       source.reset();
       String sourceCodeLine;
       while( ( sourceCodeLine = source.readLine() ) != null ) {
@@ -15,15 +15,32 @@ public class Symbol {
     this.type = type;
   }
 
-  // symbols contains all strings in the source program
-  private static java.util.HashMap<String,Symbol> symbols = new java.util.HashMap<String,Symbol>();
+  // keywords contains the symbols TokenStore enters for the keywords and
+  // operators as it is loaded; there is a fixed number of them, shared by
+  // all compilations
+  private static final java.util.concurrent.ConcurrentHashMap<String,Symbol> keywords =
+    new java.util.concurrent.ConcurrentHashMap<String,Symbol>();
+  // symbols contains the identifiers and literals of the program compiled
+  // on a thread, so a long-running compiler does not keep those of every
+  // program it has compiled
+  private static final ThreadLocal<java.util.HashMap<String,Symbol>> symbols =
+    ThreadLocal.withInitial( () -> new java.util.HashMap<String,Symbol>() );
+
+  /**
+   *  Forget the identifiers and literals entered on this thread; the Lexer
+   *  calls this as it begins a program
+   */
+  public static void resetSymbols() {
+    symbols.get().clear();
+  }
 
   public static boolean isKeyword( String s ) {
-    return symbols.containsKey( s );
+    return getSymbolForKeywordString( s ) != null;
   }
 
   public static Symbol getSymbolForKeywordString( String keyword ) {
-    return symbols.get( keyword );
+    Symbol s = keywords.get( keyword );
+    return s != null ? s : symbols.get().get( keyword );
   }
 
   public String toString() {
@@ -36,19 +53,29 @@ public class Symbol {
 
   /**
    * Return the unique symbol associated with a string.
-   * Repeated calls to <tt>symbol("abc")</tt> will return the same Symbol.
+   * Repeated calls to <tt>symbol("abc")</tt> will return the same Symbol,
+   * for an identifier or literal as long as the same program is compiled.
    */
   public static Symbol put( String newTokenString, TokenType type ) {
-    Symbol s = symbols.get( newTokenString );
+    Symbol s = getSymbolForKeywordString( newTokenString );
     if( s == null ) {
       if( type.equals( TokenType.BogusToken ) ) {
         // bogus string so don't enter into symbols
         return null;
       }
       s = new Symbol( newTokenString, type );
-      symbols.put( newTokenString, s );
+      if( isProgramString( type ) ) {
+        symbols.get().put( newTokenString, s );
+      } else {
+        keywords.put( newTokenString, s );
+      }
     }
 
     return s;
   }
+
+  private static boolean isProgramString( TokenType type ) {
+    return type == TokenType.Identifier || type == TokenType.INTeger || type == TokenType.StringLit
+      || type == TokenType.CharLit;
+  }
 }
\ No newline at end of file
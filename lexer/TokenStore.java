@@ -6,9 +6,10 @@ package lexer;
  *  constants to their Symbols
 */
 public class TokenStore {
-  private static java.util.HashMap<TokenType,Symbol> tokens = new java.util.HashMap<TokenType,Symbol>();
+  private static final java.util.HashMap<TokenType,Symbol> tokens = new java.util.HashMap<TokenType,Symbol>();
   public static Symbol getSymbolByTokenType(TokenType type) { return tokens.get(type); }
-  public TokenStore() {
+  // filled once, as the class is loaded, and only read after that
+  static {
   tokens.put(TokenType.Program, Symbol.put("program",TokenType.Program));
   tokens.put(TokenType.Int, Symbol.put("int",TokenType.Int));
   tokens.put(TokenType.BOOLean, Symbol.put("boolean",TokenType.BOOLean));
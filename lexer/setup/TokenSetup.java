@@ -72,9 +72,10 @@ public class TokenSetup {
     table.println (" *  constants to their Symbols" );
     table.println ("*/" );
     table.println ("public class TokenStore {" );
-    table.println ("  private static java.util.HashMap<TokenType,Symbol> tokens = new java.util.HashMap<TokenType,Symbol>();" );
+    table.println ("  private static final java.util.HashMap<TokenType,Symbol> tokens = new java.util.HashMap<TokenType,Symbol>();" );
     table.println ("  public static Symbol getSymbolByTokenType(TokenType type) { return tokens.get(type); }" );
-    table.println ("  public TokenStore() {" );
+    table.println ("  // filled once, as the class is loaded, and only read after that" );
+    table.println ("  static {" );
     symbols.println ("package lexer;" );
     symbols.println (" " );
     symbols.println ("/**" );
@@ -63,6 +63,7 @@ public class Parser {
   public AST getProgramTree() throws LexicalException, SyntaxException {
     // note that rProgram actually returns a ProgramTree; we use the
     // principle of substitutability to indicate it returns an AST
+    AST.resetNodeCount();
     AST t = new ProgramTree();
     expect( TokenType.Program );
     scan();
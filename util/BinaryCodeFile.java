@@ -0,0 +1,173 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * The binary form of a bytecode program. The compiler writes it next to the
+ * text .cod file and interpreter.ByteCodeLoader loads it without tokenizing
+ * any text. Every name and non-numeric operand is stored once in a constant
+ * pool; numeric operands are stored as ints. Apart from the big endian
+ * header, numbers are variable length (7 bits per byte, low bits first), so
+ * most codes take a handful of bytes:
+ *
+ *   u4 magic "XBC1", u2 version
+ *   var constant count, then per constant: var length, UTF-8 bytes
+ *   var code count, then per code:
+ *     var constant index of the opcode, var operand count, then per operand
+ *     a var holding the constant index shifted left with CONSTANT_OPERAND
+ *     in the low bit, or the zigzag encoded int shifted left with INT_OPERAND
+ *
+ * Text .cod files stay the interchange format; running this class converts
+ * one to the binary form.
+ */
+public class BinaryCodeFile {
+
+  public static final int MAGIC = 0x58424331;
+  public static final int VERSION = 2;
+  public static final String EXTENSION = ".xbc";
+  public static final int INT_OPERAND = 0;
+  public static final int CONSTANT_OPERAND = 1;
+
+  public static boolean isBinary( ByteBuffer buffer ) {
+    return buffer.limit() >= 4 && buffer.getInt( 0 ) == MAGIC;
+  }
+
+  /**
+   * Reads a constant written by write(), starting at the buffer's position.
+   */
+  public static String readConstant( ByteBuffer buffer ) {
+    byte[] bytes = new byte[ (int) readVar( buffer ) ];
+    buffer.get( bytes );
+    return new String( bytes, StandardCharsets.UTF_8 );
+  }
+
+  /**
+   * Reads a variable length number starting at the buffer's position.
+   */
+  public static long readVar( ByteBuffer buffer ) {
+    long value = 0;
+    int shift = 0;
+    byte next;
+    do {
+      next = buffer.get();
+      value |= (long) ( next & 0x7F ) << shift;
+      shift += 7;
+    } while( next < 0 );
+    return value;
+  }
+
+  private static void writeVar( DataOutputStream out, long value ) throws IOException {
+    while( ( value & ~0x7FL ) != 0 ) {
+      out.writeByte( (int) ( value & 0x7F ) | 0x80 );
+      value >>>= 7;
+    }
+    out.writeByte( (int) value );
+  }
+
+  /**
+   * Decodes an operand read with readVar(): a constant index when
+   * isConstant() holds for it, an int otherwise.
+   */
+  public static int operandValue( long operand ) {
+    int value = (int) ( operand >>> 1 );
+    return ( operand & 1 ) == CONSTANT_OPERAND ? value : ( value >>> 1 ) ^ -( value & 1 );
+  }
+
+  public static boolean isConstant( long operand ) {
+    return ( operand & 1 ) == CONSTANT_OPERAND;
+  }
+
+  /**
+   * Writes the given codes, each in its .cod text form, e.g. "LOAD 0 n".
+   */
+  public static void write( List<String> codeLines, String outFile ) throws IOException {
+    ArrayList<String> constants = new ArrayList<>();
+    HashMap<String,Integer> constantIndexes = new HashMap<>();
+    ArrayList<String[]> codes = new ArrayList<>();
+    for( String codeLine : codeLines ) {
+      StringTokenizer tokenizer = new StringTokenizer( codeLine );
+      if( !tokenizer.hasMoreTokens() ) {
+        continue;
+      }
+      String[] code = new String[ tokenizer.countTokens() ];
+      code[ 0 ] = tokenizer.nextToken().toUpperCase();
+      for( int i = 1; i < code.length; i++ ) {
+        code[ i ] = tokenizer.nextToken();
+      }
+      for( int i = 0; i < code.length; i++ ) {
+        if( ( i == 0 || parseInt( code[ i ] ) == null ) && !constantIndexes.containsKey( code[ i ] ) ) {
+          constantIndexes.put( code[ i ], constants.size() );
+          constants.add( code[ i ] );
+        }
+      }
+      codes.add( code );
+    }
+
+    try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( outFile ) ) ) ) {
+      out.writeInt( MAGIC );
+      out.writeShort( VERSION );
+      writeVar( out, constants.size() );
+      for( String constant : constants ) {
+        byte[] bytes = constant.getBytes( StandardCharsets.UTF_8 );
+        writeVar( out, bytes.length );
+        out.write( bytes );
+      }
+      writeVar( out, codes.size() );
+      for( String[] code : codes ) {
+        writeVar( out, constantIndexes.get( code[ 0 ] ) );
+        writeVar( out, code.length - 1 );
+        for( int i = 1; i < code.length; i++ ) {
+          Integer value = parseInt( code[ i ] );
+          if( value != null ) {
+            long zigzag = ( ( value << 1 ) ^ ( value >> 31 ) ) & 0xFFFFFFFFL;
+            writeVar( out, zigzag << 1 | INT_OPERAND );
+          } else {
+            writeVar( out, (long) constantIndexes.get( code[ i ] ) << 1 | CONSTANT_OPERAND );
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the int an operand spells exactly, so that the text it was read
+   * from is restored when it is loaded, or null.
+   */
+  private static Integer parseInt( String operand ) {
+    try {
+      int value = Integer.parseInt( operand );
+      return Integer.toString( value ).equals( operand ) ? value : null;
+    } catch ( NumberFormatException e ) {
+      return null;
+    }
+  }
+
+  public static void main( String args[] ) throws IOException {
+    if( args.length != 1 || !args[0].endsWith( ".cod" ) ) {
+      System.out.println( "*** Incorrect usage, try: java util.BinaryCodeFile <file>.cod" );
+      System.exit( 1 );
+    }
+    ArrayList<String> codeLines = new ArrayList<>();
+    try( BufferedReader reader = new BufferedReader( new FileReader( args[0] ) ) ) {
+      String codeLine;
+      while( ( codeLine = reader.readLine() ) != null ) {
+        codeLines.add( codeLine );
+      }
+    }
+    String outFile = args[0].substring( 0, args[0].length() - ".cod".length() ) + EXTENSION;
+    write( codeLines, outFile );
+    System.out.println( "Wrote " + outFile );
+  }
+
+}
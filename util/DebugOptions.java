@@ -3,9 +3,18 @@ package util;
 import java.util.ArrayList;
 import java.util.Collections;
 
+/**
+ * The diagnostics a compilation prints or produces besides its codes. The
+ * lexer and parser print SOURCECODE, TOKENS and AST; the rest are the
+ * stages of compiler.Compiler: RENDER draws the AST into a PNG and opens it,
+ * DECORATED_AST prints it once constrained, OPTIMIZATIONS reports what -O
+ * did, CODEGEN_AST prints the AST after code generation, INTRINSICS the trees
+ * of the intrinsic functions and BYTECODE prints the codes as they are
+ * written.
+ */
 public class DebugOptions {
 
-    public enum Options { SOURCECODE, TOKENS, AST, BYTECODE }
+    public enum Options { SOURCECODE, TOKENS, AST, BYTECODE, RENDER, DECORATED_AST, OPTIMIZATIONS, CODEGEN_AST, INTRINSICS }
     private ArrayList<Options> options;
 
     public boolean contains( Options option ) {
@@ -17,4 +26,29 @@ public class DebugOptions {
         Collections.addAll( this.options, options );
     }
 
+    /**
+     * @param names a comma separated list of options, e.g. "ast,bytecode",
+     * in any case; empty for none
+     * @throws IllegalArgumentException for a name that is not an option
+     */
+    public static DebugOptions parse( String names ) {
+        DebugOptions debugOptions = new DebugOptions();
+        for ( String name : names.split( "," ) ) {
+            if ( !name.trim().isEmpty() ) {
+                debugOptions.options.add( Options.valueOf( name.trim().toUpperCase() ) );
+            }
+        }
+        return debugOptions;
+    }
+
+    /**
+     * @return these options but for option
+     */
+    public DebugOptions without( Options option ) {
+        DebugOptions debugOptions = new DebugOptions();
+        debugOptions.options.addAll( options );
+        debugOptions.options.remove( option );
+        return debugOptions;
+    }
+
 }
\ No newline at end of file
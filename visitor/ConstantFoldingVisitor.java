@@ -0,0 +1,305 @@
+package visitor;
+
+import ast.*;
+import codegen.PeepholeOptimizer;
+import lexer.Symbol;
+import lexer.Token;
+import lexer.TokenType;
+
+import java.util.ArrayList;
+
+/**
+ * Simplifies a constrained AST before Codegen sees it: operations on int
+ * literals are evaluated, identities such as n+0, n-0, n*1 and n/1 are
+ * reduced to n, and if, unless and while statements whose condition is a
+ * constant lose the branch that can never run.
+ *
+ * Each visit returns the tree that replaces the visited one in its parent,
+ * so a whole program is simplified with
+ *   t.accept( new ConstantFoldingVisitor() );
+ */
+public class ConstantFoldingVisitor extends ASTVisitor {
+
+  private int simplifiedCount = 0;
+
+  /**
+   * @return the number of trees replaced so far
+   */
+  public int getSimplifiedCount() {
+    return simplifiedCount;
+  }
+
+  /**
+   * Replaces each child of t with the tree its visit returns.
+   */
+  private AST simplifyChildren( AST t ) {
+    ArrayList<AST> children = t.getChildren();
+    for( int i = 0; i < children.size(); i++ ) {
+      children.set( i, (AST) children.get( i ).accept( this ) );
+    }
+    return t;
+  }
+
+  private AST replace( AST t ) {
+    simplifiedCount++;
+    return t;
+  }
+
+  /**
+   * @return the value of an IntTree, or null for any other tree
+   */
+  private static Integer intValue( AST t ) {
+    if( !( t instanceof IntTree ) ) {
+      return null;
+    }
+    return Integer.parseInt( ( (IntTree) t ).getSymbol().toString() );
+  }
+
+  /**
+   * A literal standing in for replaced, decorated with its type.
+   */
+  private AST literal( int value, AST replaced ) {
+    Symbol symbol = Symbol.put( Integer.toString( value ), TokenType.INTeger );
+    AST t = new IntTree( new Token( 0, 0, 0, symbol ) );
+    t.setDecoration( replaced.getDecoration() );
+    return replace( t );
+  }
+
+  /**
+   * Stands in for a statement that can never run.
+   */
+  private AST emptyBlock() {
+    return replace( new BlockTree() );
+  }
+
+  /**
+   * @return whether evaluating t can have no effect other than its value,
+   * i.e. it calls no function and divides by nothing but non-zero literals,
+   * as a division by zero traps
+   */
+  private static boolean isPure( AST t ) {
+    if( t instanceof CallTree ) {
+      return false;
+    }
+    if( t instanceof MultiplicationOperationTree
+        && ( (MultiplicationOperationTree) t ).getSymbol().toString().equals( "/" ) ) {
+      Integer divisor = intValue( t.getChild( 1 ) );
+      if( divisor == null || divisor == 0 ) {
+        return false;
+      }
+    }
+    for( AST child : t.getChildren() ) {
+      if( !isPure( child ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Folds an operation tree whose operator is given; the children have
+   * already been simplified.
+   */
+  private AST simplifyOperation( AST t, String operator ) {
+    AST left = t.getChild( 0 ), right = t.getChild( 1 );
+    Integer leftValue = intValue( left ), rightValue = intValue( right );
+    if( leftValue != null && rightValue != null ) {
+      Integer value = PeepholeOptimizer.applyOperator( operator, leftValue, rightValue );
+      // division by zero is left for run time
+      return value == null ? t : literal( value, t );
+    }
+    switch( operator ) {
+      case "+": {
+        if( isValue( leftValue, 0 ) ) {
+          return replace( right );
+        }
+        return isValue( rightValue, 0 ) ? replace( left ) : t;
+      }
+      case "-": {
+        return isValue( rightValue, 0 ) ? replace( left ) : t;
+      }
+      case "*": {
+        if( isValue( leftValue, 1 ) ) {
+          return replace( right );
+        }
+        if( isValue( rightValue, 1 ) ) {
+          return replace( left );
+        }
+        if( ( isValue( leftValue, 0 ) && isPure( right ) ) || ( isValue( rightValue, 0 ) && isPure( left ) ) ) {
+          return literal( 0, t );
+        }
+        return t;
+      }
+      case "/": {
+        return isValue( rightValue, 1 ) ? replace( left ) : t;
+      }
+      default: {
+        return t;
+      }
+    }
+  }
+
+  private static boolean isValue( Integer value, int expected ) {
+    return value != null && value == expected;
+  }
+
+  @Override
+  public Object visitProgramTree( AST t ) {
+    return simplifyChildren( t );
+  }
+
+  @Override
+  public Object visitBlockTree( AST t ) {
+    return simplifyChildren( t );
+  }
+
+  @Override
+  public Object visitFunctionDeclarationTree( AST t ) {
+    return simplifyChildren( t );
+  }
+
+  @Override
+  public Object visitCallTree( AST t ) {
+    return simplifyChildren( t );
+  }
+
+  @Override
+  public Object visitDeclarationTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitIntTypeTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitBoolTypeTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitStringTypeTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitCharTypeTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitStringTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitCharTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitFormalsTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitActualArgumentsTree( AST t ) {
+    return simplifyChildren( t );
+  }
+
+  /**
+   * if true then A else B becomes A, if false then A else B becomes B
+   */
+  @Override
+  public Object visitIfTree( AST t ) {
+    simplifyChildren( t );
+    Integer condition = intValue( t.getChild( 0 ) );
+    if( condition == null ) {
+      return t;
+    }
+    if( condition != 0 ) {
+      return replace( t.getChild( 1 ) );
+    }
+    return t.getChildCount() > 2 ? replace( t.getChild( 2 ) ) : emptyBlock();
+  }
+
+  /**
+   * unless true then A never runs A
+   */
+  @Override
+  public Object visitUnlessTree( AST t ) {
+    simplifyChildren( t );
+    Integer condition = intValue( t.getChild( 0 ) );
+    return condition != null && condition != 0 ? emptyBlock() : t;
+  }
+
+  /**
+   * while false A never runs A; while true A keeps its LIT 1 condition,
+   * which the PeepholeOptimizer removes from the loop
+   */
+  @Override
+  public Object visitWhileTree( AST t ) {
+    simplifyChildren( t );
+    Integer condition = intValue( t.getChild( 0 ) );
+    return condition != null && condition == 0 ? emptyBlock() : t;
+  }
+
+  @Override
+  public Object visitReturnTree( AST t ) {
+    return simplifyChildren( t );
+  }
+
+  @Override
+  public Object visitSwitchBlockTree( AST t ) {
+    return simplifyChildren( t );
+  }
+
+  @Override
+  public Object visitSwitchStatementTree( AST t ) {
+    return simplifyChildren( t );
+  }
+
+  @Override
+  public Object visitCaseStatementTree( AST t ) {
+    return simplifyChildren( t );
+  }
+
+  @Override
+  public Object visitDefaultStatementTree( AST t ) {
+    return simplifyChildren( t );
+  }
+
+  @Override
+  public Object visitAssignTree( AST t ) {
+    return simplifyChildren( t );
+  }
+
+  @Override
+  public Object visitIntTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitIdentifierTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitRelationalOperationTree( AST t ) {
+    simplifyChildren( t );
+    return simplifyOperation( t, ( (RelationalOperationTree) t ).getSymbol().toString() );
+  }
+
+  @Override
+  public Object visitAdditionOperationTree( AST t ) {
+    simplifyChildren( t );
+    return simplifyOperation( t, ( (AdditionOperationTree) t ).getSymbol().toString() );
+  }
+
+  @Override
+  public Object visitMultiplicationOperationTree( AST t ) {
+    simplifyChildren( t );
+    return simplifyOperation( t, ( (MultiplicationOperationTree) t ).getSymbol().toString() );
+  }
+}
@@ -0,0 +1,282 @@
+package visitor;
+
+import ast.*;
+import lexer.Token;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Replaces calls of small leaf functions with the functions' bodies, which
+ * saves the ARGS, CALL, new frame, RETURN and frame pop of each call. Runs
+ * on the constrained AST, before Codegen works out the frame offsets.
+ *
+ * A function can be inlined when its body is just
+ *   { return expression }
+ * where the expression has at most MAX_INLINED_SIZE nodes, calls no other
+ * function (the call graph is read from the CallTree decorations, and
+ * functions are declared before they are called, so a function's callees
+ * have been inlined into it before it is looked at) and refers to no
+ * variables but its formals. A call is replaced by a copy of the expression
+ * with each formal replaced by its argument, provided the arguments call
+ * nothing, so that evaluating them in a different order has no effect, and
+ * any argument dropped or substituted more than once is a variable or a
+ * literal, as only those cannot trap.
+ *
+ * Each visit returns the tree that replaces the visited one in its parent.
+ */
+public class InliningVisitor extends ASTVisitor {
+
+  public static final int MAX_INLINED_SIZE = 16;
+
+  // inlinable FunctionDeclTree -> the expression it returns
+  private HashMap<AST,AST> inlinableBodies = new HashMap<>();
+  private int inlinedCount = 0;
+
+  /**
+   * @return the number of calls replaced so far
+   */
+  public int getInlinedCount() {
+    return inlinedCount;
+  }
+
+  private AST inlineChildren( AST t ) {
+    ArrayList<AST> children = t.getChildren();
+    for( int i = 0; i < children.size(); i++ ) {
+      children.set( i, (AST) children.get( i ).accept( this ) );
+    }
+    return t;
+  }
+
+  private static int size( AST t ) {
+    int size = 1;
+    for( AST child : t.getChildren() ) {
+      size += size( child );
+    }
+    return size;
+  }
+
+  private static boolean callsNothing( AST t ) {
+    if( t instanceof CallTree ) {
+      return false;
+    }
+    for( AST child : t.getChildren() ) {
+      if( !callsNothing( child ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return whether every variable in t is one of the formals
+   */
+  private static boolean usesOnlyFormals( AST t, AST formals ) {
+    if( t instanceof IdentifierTree && !formals.getChildren().contains( t.getDecoration() ) ) {
+      return false;
+    }
+    for( AST child : t.getChildren() ) {
+      if( !usesOnlyFormals( child, formals ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int uses( AST t, AST decl ) {
+    int uses = t instanceof IdentifierTree && t.getDecoration() == decl ? 1 : 0;
+    for( AST child : t.getChildren() ) {
+      uses += uses( child, decl );
+    }
+    return uses;
+  }
+
+  /**
+   * Copies the expression t, replacing the variables that are keys of
+   * arguments with their values; literals are shared rather than copied.
+   */
+  private static AST copy( AST t, HashMap<AST,AST> arguments ) {
+    AST copy;
+    if( t instanceof IdentifierTree ) {
+      return arguments.get( t.getDecoration() );
+    } else if( t instanceof AdditionOperationTree ) {
+      copy = new AdditionOperationTree( new Token( 0, 0, 0, ( (AdditionOperationTree) t ).getSymbol() ) );
+    } else if( t instanceof MultiplicationOperationTree ) {
+      copy = new MultiplicationOperationTree( new Token( 0, 0, 0, ( (MultiplicationOperationTree) t ).getSymbol() ) );
+    } else if( t instanceof RelationalOperationTree ) {
+      copy = new RelationalOperationTree( new Token( 0, 0, 0, ( (RelationalOperationTree) t ).getSymbol() ) );
+    } else {
+      return t;
+    }
+    copy.setDecoration( t.getDecoration() );
+    for( AST child : t.getChildren() ) {
+      copy.addChild( copy( child, arguments ) );
+    }
+    return copy;
+  }
+
+  /**
+   * Records the function as inlinable if its body allows it; its own calls
+   * have been inlined already.
+   */
+  @Override
+  public Object visitFunctionDeclarationTree( AST t ) {
+    inlineChildren( t );
+    AST formals = t.getChild( 2 ), block = t.getChild( 3 );
+    if( block.getChildCount() == 1 && block.getChild( 0 ) instanceof ReturnTree ) {
+      AST expression = block.getChild( 0 ).getChild( 0 );
+      if( size( expression ) <= MAX_INLINED_SIZE && callsNothing( expression )
+          && usesOnlyFormals( expression, formals ) ) {
+        inlinableBodies.put( t, expression );
+      }
+    }
+    return t;
+  }
+
+  @Override
+  public Object visitCallTree( AST t ) {
+    inlineChildren( t );
+    AST function = t.getChild( 0 ).getDecoration();
+    AST expression = inlinableBodies.get( function );
+    if( expression == null ) {
+      return t;
+    }
+    AST formals = function.getChild( 2 );
+    HashMap<AST,AST> arguments = new HashMap<>();
+    for( int i = 0; i < formals.getChildCount(); i++ ) {
+      AST formal = formals.getChild( i ), argument = t.getChild( i + 1 );
+      boolean isSimple = argument instanceof IdentifierTree || argument instanceof IntTree;
+      if( !callsNothing( argument ) || ( !isSimple && uses( expression, formal ) != 1 ) ) {
+        return t;
+      }
+      arguments.put( formal, argument );
+    }
+    inlinedCount++;
+    return copy( expression, arguments );
+  }
+
+  @Override
+  public Object visitProgramTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitBlockTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitDeclarationTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitIntTypeTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitBoolTypeTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitStringTypeTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitCharTypeTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitStringTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitCharTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitFormalsTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitActualArgumentsTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitIfTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitUnlessTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitWhileTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitReturnTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitSwitchBlockTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitSwitchStatementTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitCaseStatementTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitDefaultStatementTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitAssignTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitIntTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitIdentifierTree( AST t ) {
+    return t;
+  }
+
+  @Override
+  public Object visitRelationalOperationTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitAdditionOperationTree( AST t ) {
+    return inlineChildren( t );
+  }
+
+  @Override
+  public Object visitMultiplicationOperationTree( AST t ) {
+    return inlineChildren( t );
+  }
+}